@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// An AhoCorasick automaton finds the first occurrence of any of a set of
+// literal strings in a single pass over the input.  RE2 uses it in place
+// of a single literal prefix when every match must begin with one of
+// several strings, to skip the parts of the input where no match can
+// start.
+//
+// The automaton is a trie of the strings with its failure links resolved,
+// so that every state has one successor per rune class, where the runes
+// of the strings each have a class and all other runes share class 0.
+// It is built on the first search, so that patterns that are never
+// searched, or only matched anchored, keep just the strings.
+//
+// Called by MachineInput.index.
+class AhoCorasick {
+
+  // Largest transition table, in entries.
+  private static final int MAX_TABLE = 1 << 18;
+
+  private final int[][] strings;
+  private final int[] runes; // the distinct runes of the strings, sorted
+  private final int maxStates;
+
+  // Classes of ASCII runes; those of other runes are one more than their
+  // index in |runes|.
+  private char[] asciiClasses;
+
+  // depth[s] is the length in runes of the string that leads to state s
+  // in the trie, and match[s] whether a suffix of it is one of the strings.
+  private int[] depth;
+  private boolean[] match;
+
+  // next[s * numClasses + c] is the successor of state s on class c.  The
+  // start state is 0.  Set last by build(), which publishes the fields
+  // above with it.
+  private volatile int[] next;
+
+  private AhoCorasick(int[][] strings, int[] runes, int maxStates) {
+    this.strings = strings;
+    this.runes = runes;
+    this.maxStates = maxStates;
+  }
+
+  // compile() returns an automaton for |strings|, or null if there are none,
+  // it would be too large, or every string is a single rune, which a
+  // FirstSet finds as well with a fraction of the memory.
+  static AhoCorasick compile(int[][] strings) {
+    if (strings == null) {
+      return null;
+    }
+    int size = 1;
+    boolean selective = false;
+    for (int[] s : strings) {
+      size += s.length;
+      selective |= s.length > 1;
+    }
+    if (!selective) {
+      return null;
+    }
+    int[] runes = new int[size - 1];
+    int n = 0;
+    for (int[] s : strings) {
+      System.arraycopy(s, 0, runes, n, s.length);
+      n += s.length;
+    }
+    Arrays.sort(runes);
+    int numRunes = 0;
+    for (int i = 0; i < n; i++) {
+      if (numRunes == 0 || runes[i] != runes[numRunes - 1]) {
+        runes[numRunes++] = runes[i];
+      }
+    }
+    if ((long) size * (numRunes + 1) > MAX_TABLE) {
+      return null;
+    }
+    return new AhoCorasick(strings, Arrays.copyOf(runes, numRunes), size);
+  }
+
+  private int classOf(int r) {
+    if (r < 128) {
+      return asciiClasses[r];
+    }
+    int i = Arrays.binarySearch(runes, r);
+    return i < 0 ? 0 : i + 1;
+  }
+
+  // build() makes the trie, then fills in the missing transitions in
+  // breadth-first order from those of the failure states.  It returns
+  // |next|.
+  private synchronized int[] build() {
+    if (next != null) {
+      return next;
+    }
+    int numClasses = runes.length + 1;
+    asciiClasses = new char[128];
+    for (int i = 0; i < runes.length && runes[i] < 128; i++) {
+      asciiClasses[runes[i]] = (char) (i + 1);
+    }
+    int[] next = new int[maxStates * numClasses];
+    int[] depth = new int[maxStates];
+    boolean[] match = new boolean[maxStates];
+    int numStates = 1;
+    // In the trie, 0 is also "no transition": nothing leads back to the
+    // start state.
+    for (int[] s : strings) {
+      int state = 0;
+      for (int r : s) {
+        int i = state * numClasses + classOf(r);
+        if (next[i] == 0) {
+          depth[numStates] = depth[state] + 1;
+          next[i] = numStates++;
+        }
+        state = next[i];
+      }
+      match[state] = true;
+    }
+    int[] fail = new int[numStates];
+    int[] queue = new int[numStates];
+    int head = 0;
+    int tail = 0;
+    for (int c = 0; c < numClasses; c++) {
+      int t = next[c];
+      if (t != 0) {
+        queue[tail++] = t;
+      }
+    }
+    while (head < tail) {
+      int s = queue[head++];
+      match[s] |= match[fail[s]];
+      for (int c = 0; c < numClasses; c++) {
+        int i = s * numClasses + c;
+        int t = next[i];
+        if (t != 0 && depth[t] == depth[s] + 1) {
+          fail[t] = next[fail[s] * numClasses + c];
+          queue[tail++] = t;
+        } else {
+          next[i] = next[fail[s] * numClasses + c];
+        }
+      }
+    }
+    // Strings that share a prefix share states, so fewer than |maxStates|
+    // are usually made.
+    this.depth = Arrays.copyOf(depth, numStates);
+    this.match = Arrays.copyOf(match, numStates);
+    this.next = next = Arrays.copyOf(next, numStates * numClasses);
+    return next;
+  }
+
+  // index() returns how far past |pos| a search of |in| can safely skip:
+  // to a position at or before the start of the first occurrence of any
+  // of the strings.  It returns -1 if none occurs.
+  int index(MachineInput in, int pos) {
+    int[] next = this.next;
+    if (next == null) {
+      next = build();
+    }
+    int numClasses = runes.length + 1;
+    int state = 0;
+    for (int p = pos; ; ) {
+      int r = in.step(p);
+      if (r == MachineInput.EOF) {
+        return -1;
+      }
+      p += r & 7;
+      state = next[state * numClasses + classOf(r >> 3)];
+      if (match[state]) {
+        // An occurrence that starts earlier but ends later must begin
+        // with the depth[state] runes just read.
+        for (int i = depth[state]; i > 0 && p > pos; i--) {
+          p -= in.stepBack(p) & 7;
+        }
+        return p - pos;
+      }
+    }
+  }
+}
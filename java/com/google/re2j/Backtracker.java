@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+// Original Go source here:
+// https://github.com/golang/go/blob/master/src/regexp/backtrack.go
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// A Backtracker matches an input string of Unicode characters against an
+// RE2 instance by backtracking, like Perl or PCRE, but remembers which
+// (instruction, position) pairs it has already explored so that it never
+// explores one twice.  That keeps it linear in the size of the input and
+// program, but the bitmap needs numInst * (input length + 1) bits, so it
+// is only used for small programs on short inputs, where it avoids the
+// fixed costs of a Machine: thread queues sized to the program, and a
+// capture array per thread.
+//
+// Called by RE2.doExecute.
+class Backtracker {
+
+  // Programs longer than this are not run by a Backtracker.
+  private static final int MAX_PROG = 500;
+
+  // Maximum size of the visited bitmap, in bits.
+  private static final int MAX_VISITED = 256 * 1024;
+
+  // maxBitStateLen() returns the input length below which a Backtracker is
+  // used to run |prog|, or 0 if the program is too long.
+  static int maxBitStateLen(Prog prog) {
+    int n = prog.numInst();
+    return n <= MAX_PROG ? MAX_VISITED / n : 0;
+  }
+
+  // Corresponding compiled regexp.
+  private final RE2 re2;
+
+  // Compiled program.
+  private final Prog prog;
+
+  // The job stack: pending instructions and the positions at which to run
+  // them.  Each job is pc << 1 | arg, where arg means that the instruction
+  // at pc has already run once and must now undo its work or try its
+  // other branch.
+  private int[] jobs = new int[256];
+  private int[] jobPos = new int[256];
+  private int njobs;
+
+  // Bitmap of visited (pc, position) pairs.
+  private int[] visited = Utils.EMPTY_INTS;
+
+  // The input and search bounds.
+  private MachineInput in;
+  private int begin;
+  private int end;
+  private int anchor;
+
+  // Capture registers of the current path, and of the best match so far.
+  private int[] cap = Utils.EMPTY_INTS;
+  private int[] matchcap = Utils.EMPTY_INTS;
+
+  Backtracker(RE2 re2) {
+    this.re2 = re2;
+    this.prog = re2.prog;
+  }
+
+  // match() runs a backtracking search of the program on the input |in|
+  // starting at |pos| with the RE2 Anchor |anchor|.  It returns the |ncap|
+  // submatch positions of the leftmost match, or null if there is none.
+  int[] match(MachineInput in, int pos, int anchor, int ncap) {
+    int startCond = re2.cond;
+    if (startCond == Utils.EMPTY_ALL) { // impossible
+      return null;
+    }
+    boolean anchored = anchor == RE2.ANCHOR_START || anchor == RE2.ANCHOR_BOTH;
+    if ((startCond & Utils.EMPTY_BEGIN_TEXT) != 0) {
+      anchored = true;
+    }
+    if (anchored && pos != 0) {
+      // Anchored match, past beginning of text.
+      return null;
+    }
+    reset(in, pos, anchor, ncap);
+    try {
+      if (anchored) {
+        // Anchored search must start at the beginning of the input.
+        if (ncap > 0) {
+          cap[0] = pos;
+        }
+        return tryBacktrack(prog.start, pos) ? submatches(ncap) : null;
+      }
+      // Unanchored search, starting from each possible text position.
+      // Notice that we have to try the empty string at the end of the
+      // text, so the loop condition is pos <= end, not pos < end.  This
+      // looks like it's quadratic in the size of the text, but we are not
+      // clearing visited between calls to tryBacktrack, so no work is
+      // duplicated and it ends up still being linear.
+      boolean checkPrefix = re2.hasPrefix() && in.canCheckPrefix();
+      for (int width = -1; pos <= end && width != 0; pos += width) {
+        if (checkPrefix) {
+          // Match requires literal prefix; fast search for it.
+          int advance = in.index(re2, pos);
+          if (advance < 0) {
+            return null;
+          }
+          pos += advance;
+        }
+        if (ncap > 0) {
+          cap[0] = pos;
+        }
+        if (tryBacktrack(prog.start, pos)) {
+          // Match must be leftmost; done.
+          return submatches(ncap);
+        }
+        width = in.step(pos) & 7;
+      }
+      return null;
+    } finally {
+      this.in = null;
+    }
+  }
+
+  // reset() prepares for a search of |in| from |pos|.
+  private void reset(MachineInput in, int pos, int anchor, int ncap) {
+    this.in = in;
+    this.begin = pos;
+    this.end = in.endPos();
+    this.anchor = anchor;
+    njobs = 0;
+    int visitedSize = (prog.numInst() * (end - begin + 1) + 31) >> 5;
+    if (visited.length < visitedSize) {
+      visited = new int[Math.max(visitedSize, Math.min(2 * visited.length, MAX_VISITED >> 5))];
+    } else {
+      Arrays.fill(visited, 0, visitedSize, 0);
+    }
+    if (cap.length != ncap) {
+      cap = new int[ncap];
+      matchcap = new int[ncap];
+    }
+    Arrays.fill(cap, -1);
+    Arrays.fill(matchcap, -1);
+  }
+
+  private int[] submatches(int ncap) {
+    if (ncap == 0) {
+      return Utils.EMPTY_INTS;
+    }
+    return Arrays.copyOf(matchcap, ncap);
+  }
+
+  // shouldVisit() reports whether the combination of (pc, pos) has not been
+  // visited yet, and marks it visited.
+  private boolean shouldVisit(int pc, int pos) {
+    int n = pc * (end - begin + 1) + (pos - begin);
+    int bit = 1 << (n & 31);
+    if ((visited[n >>> 5] & bit) != 0) {
+      return false;
+    }
+    visited[n >>> 5] |= bit;
+    return true;
+  }
+
+  // push() pushes (pc, pos, arg) onto the job stack if it should be
+  // visited.  Only checks shouldVisit when arg is false: when arg is true,
+  // we are continuing a previous operation.
+  private void push(int pc, int pos, boolean arg) {
+    if (prog.ops[pc] != Inst.FAIL && (arg || shouldVisit(pc, pos))) {
+      if (njobs == jobs.length) {
+        jobs = Arrays.copyOf(jobs, 2 * njobs);
+        jobPos = Arrays.copyOf(jobPos, 2 * njobs);
+      }
+      jobs[njobs] = pc << 1 | (arg ? 1 : 0);
+      jobPos[njobs] = pos;
+      njobs++;
+    }
+  }
+
+  // tryBacktrack() runs a backtracking search starting at |pos|.
+  private boolean tryBacktrack(int startPc, int startPos) {
+    boolean longest = re2.longest;
+    int ncap = cap.length;
+    int[] ops = prog.ops;
+    int[] outs = prog.outs;
+    int[] args = prog.args;
+    push(startPc, startPos, false);
+    pop:
+    while (njobs > 0) {
+      // Pop job off the stack.
+      njobs--;
+      int pc = jobs[njobs] >> 1;
+      boolean arg = (jobs[njobs] & 1) != 0;
+      int pos = jobPos[njobs];
+
+      // Rather than push and pop, code that is going to push and continue
+      // the loop simply updates pc, pos and arg and goes round this loop,
+      // which does the shouldVisit check that push would have, but avoids
+      // the stack manipulation.  The popped job was checked when pushed.
+      // A rune that straddles the end of the input leaves pos past it, off
+      // the visited bitmap's row; such a thread cannot match.
+      for (boolean check = false; ; check = true) {
+        if (check && (pos > end || !shouldVisit(pc, pos))) {
+          continue pop;
+        }
+        switch (ops[pc]) {
+          default:
+            throw new IllegalStateException("bad inst");
+
+          case Inst.FAIL:
+            continue pop;
+
+          case Inst.ALT:
+          case Inst.ALT_MATCH:
+            // Cannot just push inst.out and inst.arg: if during the
+            // processing of inst.out, we encounter inst.arg via another
+            // path, we want to process it then.  Pushing it here will
+            // inhibit that.  Instead, re-push inst with arg==true as a
+            // reminder to push inst.arg later.
+            if (arg) {
+              // Finished inst.out; try inst.arg.
+              arg = false;
+              pc = args[pc];
+            } else {
+              push(pc, pos, true);
+              pc = outs[pc];
+            }
+            continue;
+
+          case Inst.RUNE:
+            {
+              int r = in.step(pos);
+              if (!prog.matchRune(pc, r >> 3)) {
+                continue pop;
+              }
+              pos += r & 7;
+              pc = outs[pc];
+              continue;
+            }
+
+          case Inst.RUNE1:
+            {
+              int r = in.step(pos);
+              if ((r >> 3) != prog.runePool[prog.runeStart[pc]]) {
+                continue pop;
+              }
+              pos += r & 7;
+              pc = outs[pc];
+              continue;
+            }
+
+          case Inst.RUNE_ANY_NOT_NL:
+            {
+              int r = in.step(pos);
+              if (r == MachineInput.EOF || (r >> 3) == '\n') {
+                continue pop;
+              }
+              pos += r & 7;
+              pc = outs[pc];
+              continue;
+            }
+
+          case Inst.RUNE_ANY:
+            {
+              int r = in.step(pos);
+              if (r == MachineInput.EOF) {
+                continue pop;
+              }
+              pos += r & 7;
+              pc = outs[pc];
+              continue;
+            }
+
+          case Inst.CAPTURE:
+            if (arg) {
+              // Finished inst.out; restore the old value.
+              cap[args[pc]] = pos;
+              continue pop;
+            }
+            if (args[pc] < ncap) {
+              // Capture pos to register, but save old value.
+              push(pc, cap[args[pc]], true); // come back when we're done.
+              cap[args[pc]] = pos;
+            }
+            pc = outs[pc];
+            continue;
+
+          case Inst.EMPTY_WIDTH:
+            if ((args[pc] & ~in.context(pos)) != 0) {
+              continue pop;
+            }
+            pc = outs[pc];
+            continue;
+
+          case Inst.NOP:
+            pc = outs[pc];
+            continue;
+
+          case Inst.MATCH:
+            if (anchor == RE2.ANCHOR_BOTH && pos != end) {
+              // Don't match if we anchor at both start and end and those
+              // expectations aren't met.
+              continue pop;
+            }
+            // We found a match.  If the caller doesn't care where the match
+            // is, no point going further.
+            if (ncap == 0) {
+              return true;
+            }
+            // Record best match so far.  Only need to check end point,
+            // because this entire call is only considering one start
+            // position.
+            cap[1] = pos;
+            int old = matchcap[1];
+            if (old == -1 || (longest && pos > 0 && pos > old)) {
+              System.arraycopy(cap, 0, matchcap, 0, ncap);
+            }
+            // If going for first match, we're done.
+            if (!longest) {
+              return true;
+            }
+            // If we used the entire text, no longer match is possible.
+            if (pos == end) {
+              return true;
+            }
+            // Otherwise, continue on in hope of a longer match.
+            continue pop;
+        }
+      }
+    }
+    return longest && ncap > 1 && matchcap[1] >= 0;
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// Closures holds the epsilon closures of the instructions at which a
+// Machine adds threads: the start of the program and the successor of
+// each rune instruction.  The closure of pc is the list, in priority
+// order, of the rune and MATCH instructions reachable from pc through
+// ALT, NOP, CAPTURE and EMPTY_WIDTH instructions, each with the capture
+// slots set on the way to it, so that Machine.add copies threads from a
+// list instead of walking the program.
+//
+// A closure depends only on the empty-width conditions tested on the way,
+// so each pc has one closure for each combination of the bits of its
+// mask, the union of those conditions.
+//
+// Built by RE2.compileImpl; used by Machine.
+final class Closures {
+
+  // Largest total size of the closures of a program, in ints.
+  private static final int MAX_SIZE = 1 << 18;
+
+  private final int[] masks; // EMPTY_* conditions tested from each pc
+  private final int[][][] lists; // closures of each pc by cond & masks[pc], if computed
+
+  private Closures(int n) {
+    this.masks = new int[n];
+    this.lists = new int[n][][];
+  }
+
+  // compute() returns the closures of |prog|, or null if they would be
+  // too large.
+  static Closures compute(Prog prog) {
+    int n = prog.numInst();
+    Closures closures = new Closures(n);
+    Walker walker = new Walker(prog);
+    int size = 0;
+    for (int pc = -1; pc < n; pc++) {
+      int target;
+      if (pc < 0) {
+        target = prog.start;
+      } else if (Inst.isRuneOp(prog.inst[pc].op)) {
+        target = prog.inst[pc].out;
+      } else {
+        continue;
+      }
+      if (target == 0 || closures.lists[target] != null) {
+        continue;
+      }
+      int mask = walker.mask(target);
+      int[][] lists = new int[mask + 1][];
+      for (int cond = mask; ; cond = (cond - 1) & mask) {
+        lists[cond] = walker.closure(target, cond);
+        size += lists[cond].length;
+        if (size > MAX_SIZE) {
+          return null;
+        }
+        if (cond == 0) {
+          break;
+        }
+      }
+      closures.masks[target] = mask;
+      closures.lists[target] = lists;
+    }
+    return closures;
+  }
+
+  // get() returns the closure of |pc| when the empty-width conditions
+  // |cond| hold, or null if it was not computed.
+  int[] get(int pc, int cond) {
+    int[][] l = lists[pc];
+    return l == null ? null : l[cond & masks[pc]];
+  }
+
+  // A Walker computes closures, with scratch space for one at a time.
+  static final class Walker {
+    private final Prog prog;
+    private final int[] mark; // mark[pc] == gen iff pc was visited
+    private int gen;
+    private final int[] stack; // pc, capture node pairs
+    private final int[] nodes; // arg, parent pairs: the captures of a path
+    private int[] out = new int[16];
+
+    Walker(Prog prog) {
+      int n = prog.numInst();
+      this.prog = prog;
+      this.mark = new int[n];
+      this.stack = new int[2 * (2 * n + 2)];
+      this.nodes = new int[2 * n];
+    }
+
+    private void visitAll() {
+      if (++gen == 0) {
+        Arrays.fill(mark, 0);
+        gen = 1;
+      }
+    }
+
+    // mask() returns the union of the empty-width conditions of the
+    // EMPTY_WIDTH instructions in the closure of |pc| under any conditions.
+    int mask(int pc) {
+      visitAll();
+      int mask = 0;
+      int sp = 0;
+      stack[sp++] = pc;
+      while (sp > 0) {
+        int p = stack[--sp];
+        if (p == 0 || mark[p] == gen) {
+          continue;
+        }
+        mark[p] = gen;
+        Inst inst = prog.inst[p];
+        switch (inst.op) {
+          case Inst.ALT:
+          case Inst.ALT_MATCH:
+            stack[sp++] = inst.arg;
+            stack[sp++] = inst.out;
+            break;
+          case Inst.EMPTY_WIDTH:
+            mask |= inst.arg;
+            stack[sp++] = inst.out;
+            break;
+          case Inst.NOP:
+          case Inst.CAPTURE:
+            stack[sp++] = inst.out;
+            break;
+          default:
+            break;
+        }
+      }
+      return mask;
+    }
+
+    // closure() returns the closure of |pc| when the empty-width
+    // conditions |cond| hold: for each instruction in it, its pc, the
+    // number k of capture slots set on the way and the k slots.  It visits
+    // the instructions depth-first, following out before arg, and skips
+    // those already visited, so the captures are those of the first path.
+    int[] closure(int pc, int cond) {
+      visitAll();
+      int n = 0;
+      int numNodes = 0;
+      int sp = 0;
+      stack[sp++] = pc;
+      stack[sp++] = -1;
+      while (sp > 0) {
+        int node = stack[--sp];
+        int p = stack[--sp];
+        if (p == 0 || mark[p] == gen) {
+          continue;
+        }
+        mark[p] = gen;
+        Inst inst = prog.inst[p];
+        switch (inst.op) {
+          case Inst.ALT:
+          case Inst.ALT_MATCH:
+            stack[sp++] = inst.arg;
+            stack[sp++] = node;
+            stack[sp++] = inst.out;
+            stack[sp++] = node;
+            break;
+
+          case Inst.EMPTY_WIDTH:
+            if ((inst.arg & ~cond) == 0) {
+              stack[sp++] = inst.out;
+              stack[sp++] = node;
+            }
+            break;
+
+          case Inst.NOP:
+            stack[sp++] = inst.out;
+            stack[sp++] = node;
+            break;
+
+          case Inst.CAPTURE:
+            nodes[2 * numNodes] = inst.arg;
+            nodes[2 * numNodes + 1] = node;
+            stack[sp++] = inst.out;
+            stack[sp++] = numNodes++;
+            break;
+
+          case Inst.FAIL:
+            break;
+
+          default:
+            {
+              int k = 0;
+              for (int c = node; c >= 0; c = nodes[2 * c + 1]) {
+                k++;
+              }
+              if (n + 2 + k > out.length) {
+                out = Arrays.copyOf(out, Math.max(2 * out.length, n + 2 + k));
+              }
+              out[n++] = p;
+              out[n++] = k;
+              for (int c = node; c >= 0; c = nodes[2 * c + 1]) {
+                out[n++] = nodes[2 * c];
+              }
+              break;
+            }
+        }
+      }
+      return Arrays.copyOf(out, n);
+    }
+  }
+}
@@ -9,6 +9,12 @@
 
 package com.google.re2j;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Compiler from {@code Regexp} (RE2 abstract syntax) to {@code RE2} (compiled regular expression).
  *
@@ -40,17 +46,264 @@ class Compiler {
   }
 
   private final Prog prog = new Prog(); // Program being built
+  private final boolean reversed; // whether to compile the reversed regexp
 
-  private Compiler() {
+  private Compiler(boolean reversed) {
+    this.reversed = reversed;
     newInst(Inst.FAIL); // always the first instruction
   }
 
   static Prog compileRegexp(Regexp re) {
-    Compiler c = new Compiler();
-    Frag f = c.compile(re);
-    c.prog.patch(f.out, c.newInst(Inst.MATCH).i);
-    c.prog.start = f.i;
-    return c.prog;
+    return new Compiler(false).compileProg(re);
+  }
+
+  // compileReversed() returns a program that matches the reverse of each
+  // string matched by |re|, read from right to left: concatenations and
+  // literals run backwards, and the beginning and end of line and text
+  // trade places.  Only the match boundaries are of interest, so it has no
+  // capture instructions.
+  static Prog compileReversed(Regexp re) {
+    return new Compiler(true).compileProg(re);
+  }
+
+  // compileUTF8() returns a copy of |prog| that reads UTF-8 text a byte at
+  // a time.  Each rune instruction becomes an automaton of BYTE
+  // instructions over the encodings of its runes, which share their
+  // common suffixes as in RE2's compiler.  The other instructions keep
+  // their pcs, so the start is unchanged.
+  static Prog compileUTF8(Prog prog) {
+    Prog p = new Prog();
+    int n = prog.numInst();
+    for (int pc = 0; pc < n; pc++) {
+      Inst inst = prog.getInst(pc);
+      p.addInst(inst.op);
+      Inst copy = p.getInst(pc);
+      copy.out = inst.out;
+      copy.arg = inst.arg;
+      copy.runes = prog.runes(pc);
+      copy.folds = inst.folds;
+    }
+    p.start = prog.start;
+    p.numCap = prog.numCap;
+    // The BYTE instruction for each (lo, hi, out), for sharing suffixes.
+    Map<Long, Integer> cache = new HashMap<Long, Integer>();
+    List<int[]> seqs = new ArrayList<int[]>();
+    for (int pc = 0; pc < n; pc++) {
+      Inst inst = prog.getInst(pc);
+      if (!Inst.isRuneOp(inst.op)) {
+        continue;
+      }
+      seqs.clear();
+      int[] ranges = runeRanges(prog, pc);
+      for (int i = 0; i < ranges.length; i += 2) {
+        splitUTF8(ranges[i], ranges[i + 1], seqs);
+      }
+      // Each sequence is built from its last byte back; the first bytes of
+      // the sequences hang off a chain of ALTs at |pc|.
+      Inst at = p.getInst(pc);
+      for (int k = 0; k < seqs.size(); k++) {
+        int[] seq = seqs.get(k);
+        int next = inst.out;
+        for (int j = seq.length - 2; j > 0; j -= 2) {
+          next = byteInst(p, cache, seq[j], seq[j + 1], next);
+        }
+        if (k == seqs.size() - 1) {
+          at.op = Inst.BYTE;
+          at.runes = new int[] {seq[0], seq[1]};
+          at.out = next;
+          at.arg = 0;
+        } else {
+          at.op = Inst.ALT;
+          at.runes = null;
+          at.out = byteInst(p, cache, seq[0], seq[1], next);
+          p.addInst(Inst.NOP);
+          at.arg = p.numInst() - 1;
+          at = p.getInst(at.arg);
+        }
+      }
+    }
+    return p;
+  }
+
+  // compileSet() returns a program that runs the programs |progs| side by
+  // side: its start is a chain of ALTs over their starts, in order, and
+  // the MATCH instruction of |progs[i]| has arg i, so that a search can
+  // tell which of them matched.  The instructions are copied, as RE2
+  // annotates those of each program it compiles.
+  static Prog compileSet(Prog[] progs) {
+    Prog p = new Prog();
+    p.addInst(Inst.FAIL);
+    int[] starts = new int[progs.length];
+    for (int id = 0; id < progs.length; id++) {
+      Prog prog = progs[id];
+      int offset = p.numInst() - 1; // pc 0 of each program is its FAIL
+      for (int pc = 1; pc < prog.numInst(); pc++) {
+        Inst inst = prog.getInst(pc);
+        p.addInst(inst.op);
+        Inst copy = p.getInst(p.numInst() - 1);
+        copy.out = inst.out == 0 ? 0 : inst.out + offset;
+        copy.arg = inst.arg;
+        copy.runes = prog.runes(pc);
+        copy.folds = inst.folds;
+        copy.bitmap = inst.bitmap; // if kept; RuneBitmap.compute makes the rest
+        switch (inst.op) {
+          case Inst.ALT:
+          case Inst.ALT_MATCH:
+            copy.arg = inst.arg == 0 ? 0 : inst.arg + offset;
+            break;
+          case Inst.MATCH:
+            copy.arg = id;
+            break;
+          default:
+            break;
+        }
+      }
+      starts[id] = prog.start + offset;
+    }
+    int start = progs.length > 0 ? starts[progs.length - 1] : 0;
+    for (int id = progs.length - 2; id >= 0; id--) {
+      p.addInst(Inst.ALT);
+      Inst alt = p.getInst(p.numInst() - 1);
+      alt.out = starts[id];
+      alt.arg = start;
+      start = p.numInst() - 1;
+    }
+    p.start = start;
+    p.numCap = 2;
+    return p;
+  }
+
+  private static int byteInst(Prog p, Map<Long, Integer> cache, int lo, int hi, int out) {
+    Long key = (long) out << 16 | lo << 8 | hi;
+    Integer pc = cache.get(key);
+    if (pc == null) {
+      p.addInst(Inst.BYTE);
+      pc = p.numInst() - 1;
+      Inst inst = p.getInst(pc);
+      inst.runes = new int[] {lo, hi};
+      inst.out = out;
+      cache.put(key, pc);
+    }
+    return pc;
+  }
+
+  // runeRanges() returns the runes matched by the rune instruction at |pc|
+  // of |prog|, as [lo, hi] pairs.
+  static int[] runeRanges(Prog prog, int pc) {
+    Inst inst = prog.getInst(pc);
+    int[] runes = prog.runes(pc);
+    switch (inst.op) {
+      case Inst.RUNE_ANY:
+        return new int[] {0, Unicode.MAX_RUNE};
+      case Inst.RUNE_ANY_NOT_NL:
+        return new int[] {0, '\n' - 1, '\n' + 1, Unicode.MAX_RUNE};
+      case Inst.RUNE1:
+        return new int[] {runes[0], runes[0]};
+      default:
+        if (inst.folds != null) {
+          return inst.folds;
+        }
+        if (runes.length != 1) {
+          return runes;
+        }
+        return new int[] {runes[0], runes[0]};
+    }
+  }
+
+  // foldRanges() returns the case-fold orbit of |r0|, the runes equal to
+  // it when case is ignored, as sorted [r, r] pairs.
+  static int[] foldRanges(int r0) {
+    int n = 1;
+    for (int r = Unicode.simpleFold(r0); r != r0; r = Unicode.simpleFold(r)) {
+      n++;
+    }
+    int[] folds = new int[n];
+    folds[0] = r0;
+    n = 1;
+    for (int r = Unicode.simpleFold(r0); r != r0; r = Unicode.simpleFold(r)) {
+      folds[n++] = r;
+    }
+    Arrays.sort(folds);
+    int[] ranges = new int[2 * n];
+    for (int j = 0; j < n; j++) {
+      ranges[2 * j] = ranges[2 * j + 1] = folds[j];
+    }
+    return ranges;
+  }
+
+  // splitUTF8() appends to |seqs| the byte sequences that encode the runes
+  // in [lo, hi], each as [lo, hi] pairs of byte ranges, one per byte.
+  private static void splitUTF8(int lo, int hi, List<int[]> seqs) {
+    // Split at the changes of encoded length.
+    int[] maxes = {0x7f, 0x7ff, 0xffff};
+    for (int max : maxes) {
+      if (lo <= max && max < hi) {
+        splitUTF8(lo, max, seqs);
+        splitUTF8(max + 1, hi, seqs);
+        return;
+      }
+    }
+    if (hi < 0x80) {
+      seqs.add(new int[] {lo, hi});
+      return;
+    }
+    // Split until the encodings of lo and hi differ in each byte by a
+    // range that every byte in between can take.
+    for (int i = 1; i < 4; i++) {
+      int m = (1 << (6 * i)) - 1;
+      if ((lo & ~m) != (hi & ~m)) {
+        if ((lo & m) != 0) {
+          splitUTF8(lo, lo | m, seqs);
+          splitUTF8((lo | m) + 1, hi, seqs);
+          return;
+        }
+        if ((hi & m) != m) {
+          splitUTF8(lo, (hi & ~m) - 1, seqs);
+          splitUTF8(hi & ~m, hi, seqs);
+          return;
+        }
+      }
+    }
+    byte[] a = new byte[4];
+    byte[] b = new byte[4];
+    int len = encodeUTF8(lo, a);
+    encodeUTF8(hi, b);
+    int[] seq = new int[2 * len];
+    for (int i = 0; i < len; i++) {
+      seq[2 * i] = a[i] & 0xff;
+      seq[2 * i + 1] = b[i] & 0xff;
+    }
+    seqs.add(seq);
+  }
+
+  // encodeUTF8() stores the UTF-8 encoding of |r| in |b| and returns its
+  // length.
+  private static int encodeUTF8(int r, byte[] b) {
+    if (r < 0x80) {
+      b[0] = (byte) r;
+      return 1;
+    } else if (r < 0x800) {
+      b[0] = (byte) (0xc0 | r >> 6);
+      b[1] = (byte) (0x80 | r & 0x3f);
+      return 2;
+    } else if (r < 0x10000) {
+      b[0] = (byte) (0xe0 | r >> 12);
+      b[1] = (byte) (0x80 | r >> 6 & 0x3f);
+      b[2] = (byte) (0x80 | r & 0x3f);
+      return 3;
+    }
+    b[0] = (byte) (0xf0 | r >> 18);
+    b[1] = (byte) (0x80 | r >> 12 & 0x3f);
+    b[2] = (byte) (0x80 | r >> 6 & 0x3f);
+    b[3] = (byte) (0x80 | r & 0x3f);
+    return 4;
+  }
+
+  private Prog compileProg(Regexp re) {
+    Frag f = compile(re);
+    prog.patch(f.out, newInst(Inst.MATCH).i);
+    prog.start = f.i;
+    return prog;
   }
 
   private Frag newInst(int op) {
@@ -167,6 +420,10 @@ class Compiler {
       flags &= ~RE2.FOLD_CASE; // and sometimes not even that
     }
     i.arg = flags;
+    if ((flags & RE2.FOLD_CASE) != 0) {
+      // Resolve the orbit now rather than in every test of a rune.
+      i.folds = foldRanges(runes[0]);
+    }
     f.out = f.i << 1;
     // Special cases for exec machine.
     if (((flags & RE2.FOLD_CASE) == 0 && runes.length == 1)
@@ -198,8 +455,8 @@ class Compiler {
           return nop();
         } else {
           Frag f = null;
-          for (int r : re.runes) {
-            Frag f1 = rune(r, re.flags);
+          for (int j = 0; j < re.runes.length; j++) {
+            Frag f1 = rune(re.runes[reversed ? re.runes.length - 1 - j : j], re.flags);
             f = (f == null) ? f1 : cat(f, f1);
           }
           return f;
@@ -211,19 +468,22 @@ class Compiler {
       case ANY_CHAR:
         return rune(ANY_RUNE, 0);
       case BEGIN_LINE:
-        return empty(Utils.EMPTY_BEGIN_LINE);
+        return empty(reversed ? Utils.EMPTY_END_LINE : Utils.EMPTY_BEGIN_LINE);
       case END_LINE:
-        return empty(Utils.EMPTY_END_LINE);
+        return empty(reversed ? Utils.EMPTY_BEGIN_LINE : Utils.EMPTY_END_LINE);
       case BEGIN_TEXT:
-        return empty(Utils.EMPTY_BEGIN_TEXT);
+        return empty(reversed ? Utils.EMPTY_END_TEXT : Utils.EMPTY_BEGIN_TEXT);
       case END_TEXT:
-        return empty(Utils.EMPTY_END_TEXT);
+        return empty(reversed ? Utils.EMPTY_BEGIN_TEXT : Utils.EMPTY_END_TEXT);
       case WORD_BOUNDARY:
         return empty(Utils.EMPTY_WORD_BOUNDARY);
       case NO_WORD_BOUNDARY:
         return empty(Utils.EMPTY_NO_WORD_BOUNDARY);
       case CAPTURE:
         {
+          if (reversed) {
+            return compile(re.subs[0]);
+          }
           Frag bra = cap(re.cap << 1), sub = compile(re.subs[0]), ket = cap(re.cap << 1 | 1);
           return cat(cat(bra, sub), ket);
         }
@@ -238,8 +498,8 @@ class Compiler {
           return nop();
         } else {
           Frag f = null;
-          for (Regexp sub : re.subs) {
-            Frag f1 = compile(sub);
+          for (int j = 0; j < re.subs.length; j++) {
+            Frag f1 = compile(re.subs[reversed ? re.subs.length - 1 - j : j]);
             f = (f == null) ? f1 : cat(f, f1);
           }
           return f;
@@ -0,0 +1,934 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+// Modelled on RE2's lazily-built DFA:
+// https://github.com/google/re2/blob/master/re2/dfa.cc
+
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A DFA matches an input string of Unicode characters against an RE2
+// instance using a deterministic automaton that is built lazily, one state
+// at a time, as the input is scanned.
+//
+// A DFA state is the ordered set of instructions that the Machine would be
+// running at some input position, so that a transition does in one table
+// lookup what Machine.step does by walking the whole thread list.  States
+// are kept in a cache bounded by a memory budget.  When the budget is
+// exhausted the cache is flushed; if that happens too often the search
+// gives up and returns FAILED, and the caller falls back to the Machine.
+//
+// A DFA reports whether there is a match and where it ends, never the
+// position of submatches.
+//
+// A DFA for UTF-8 input runs the program made by Compiler.compileUTF8 and
+// reads one byte per step, with no decoding; every byte has a slot in a
+// state's transition table.
+//
+// Transitions are stored by equivalence class rather than by rune or byte:
+// a state's table has one slot per class of the ASCII runes (or bytes),
+// and the successors on other runes are keyed by their RuneClasses class,
+// so text in a script the program does not tell apart shares one entry.
+//
+// A DFA for a PatternSet runs the program made by Compiler.compileSet in
+// many-match mode, as RE2's DFA does for RE2::Set: threads go on after a
+// match, and a state records the MATCH instructions reached before its
+// rune (as pc + numInst, apart from the instructions still to run), so
+// that a single scan tells which of the programs match.
+//
+// Called by RE2.doExecute and PatternSet.  A DFA is safe for concurrent
+// use.
+class DFA {
+
+  // search() result when there is no match.
+  static final int NO_MATCH = -1;
+
+  // search() result when the state cache was too small for the input.
+  static final int FAILED = -2;
+
+  // Memory budget of the state cache of each DFA, in bytes.
+  static final int DEFAULT_MAX_MEM = 2 << 20;
+
+  //// State flags.
+
+  // A match ended just before the rune that led to this state.
+  private static final int FLAG_MATCH = 0x01;
+  // Unanchored search with no match yet: new threads start at every position.
+  private static final int FLAG_START = 0x02;
+  // EMPTY_BEGIN_TEXT holds at this position.
+  private static final int FLAG_BEGIN_TEXT = 0x04;
+  // EMPTY_BEGIN_LINE holds at this position.
+  private static final int FLAG_BEGIN_LINE = 0x08;
+  // The rune before this position is a word rune.
+  private static final int FLAG_PREV_WORD = 0x10;
+
+  // Separates the instructions of threads that started at different
+  // positions in leftmost-longest states.
+  private static final int MARK = -1;
+
+  // Runes below TABLE_SIZE, and all bytes of UTF-8 input, have a lock-free
+  // transition table in every state.
+  private static final int TABLE_SIZE = 128;
+  private static final int BYTE_TABLE_SIZE = 256;
+
+  // Approximate memory cost in bytes of a transition stored in a state's
+  // map.
+  private static final int MAP_ENTRY_COST = 64;
+
+  // A State is a list of instructions waiting for the next rune, in
+  // priority order and not yet expanded through empty-width instructions,
+  // plus flags.  Only its transitions change once it is cached: next[] is
+  // read without locking, which is safe because all the other fields
+  // reachable from a State are final.
+  private static final class State {
+    final int[] pcs;
+    final int flag;
+    final State[] next; // successors by class of runes < tableSize; null in probes
+
+    // Successors on other runes, and at end of text.
+    // @GuardedBy("DFA.this")
+    Map<Integer, State> other;
+
+    State(int[] pcs, int flag, int numClasses) {
+      this.pcs = pcs;
+      this.flag = flag;
+      this.next = numClasses > 0 ? new State[numClasses] : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof State)) {
+        return false;
+      }
+      State that = (State) o;
+      return flag == that.flag && Arrays.equals(pcs, that.pcs);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(pcs) * 31 + flag;
+    }
+  }
+
+  // States from which no match can follow.
+  private static final State DEAD = new State(Utils.EMPTY_INTS, 0, 0);
+  private static final State DEAD_MATCH = new State(Utils.EMPTY_INTS, FLAG_MATCH, 0);
+
+  // A set of pcs that can be cleared in constant time; see Machine.Queue.
+  private static final class SparseSet {
+    final int[] sparse;
+    final int[] dense;
+    int size;
+
+    SparseSet(int n) {
+      sparse = new int[n];
+      dense = new int[n];
+    }
+
+    boolean contains(int pc) {
+      int j = sparse[pc];
+      return j < size && dense[j] == pc;
+    }
+
+    void add(int pc) {
+      sparse[pc] = size;
+      dense[size++] = pc;
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+
+  // Corresponding compiled regexp.
+  private final RE2 re2;
+
+  // Compiled program.
+  private final Prog prog;
+
+  // Whether the program reads UTF-8 bytes rather than runes.
+  private final boolean utf8;
+
+  // Runes (or bytes) below |tableSize| are looked up in |classes|, which
+  // holds the class of each as an unsigned byte, and a state's table has
+  // a slot for each of the |numClasses| classes.  Other runes are keyed by
+  // the class in |runeClasses|, if any, and otherwise by the rune.
+  private final int tableSize;
+  private final byte[] classes;
+  private final int numClasses;
+  private final RuneClasses runeClasses;
+
+  // Approximate memory cost in bytes of a cached state with no
+  // instructions.
+  private final int stateCost;
+
+  // Leftmost-longest rather than leftmost-first semantics.
+  private final boolean longest;
+
+  // Matches count only at the end of the input (RE2.ANCHOR_BOTH).
+  private final boolean matchAtEnd;
+
+  // Whether this DFA finds the set of programs that match, for searchMany.
+  private final boolean manyMatch;
+
+  // Whether the program has empty-width instructions, and so whether
+  // states need to record the context of their position.
+  private final boolean needContext;
+
+  // Memory budget of the state cache, in bytes.
+  private final int maxMem;
+
+  // Whether maxMem is too small to hold a reasonable number of states.
+  private final boolean tooBig;
+
+  // Start states, indexed by startIndex().  Read without locking.
+  private volatile State[] starts = new State[16];
+
+  // Complete tables for searches of the whole text, unanchored and
+  // anchored, or null if the program has too many states.
+  private final DFATable[] tables = new DFATable[2];
+
+  // The state cache.
+  // @GuardedBy("this")
+  private final Map<State, State> cache = new HashMap<State, State>();
+  private int mem; // approximate size of the cache, in bytes
+
+  // Scratch space for computing transitions.
+  // @GuardedBy("this")
+  private final SparseSet visited;
+  private final SparseSet added;
+  private final int[] stack;
+  private final int[] buf;
+  private int bufSize;
+
+  DFA(RE2 re2, boolean longest, boolean matchAtEnd) {
+    this(re2, longest, matchAtEnd, DEFAULT_MAX_MEM);
+  }
+
+  // This is visible for testing.
+  DFA(RE2 re2, boolean longest, boolean matchAtEnd, int maxMem) {
+    this(re2, longest, matchAtEnd, maxMem, DFATable.maxStates(re2.prog));
+  }
+
+  // |maxTableStates| limits the number of states of the complete tables
+  // built for searches of the whole text, if any; see DFATable.
+  DFA(RE2 re2, boolean longest, boolean matchAtEnd, int maxMem, int maxTableStates) {
+    this(re2, longest, matchAtEnd, maxMem, maxTableStates, false);
+  }
+
+  // If |utf8|, the DFA searches only UTF-8 input, a byte at a time.
+  DFA(
+      RE2 re2,
+      boolean longest,
+      boolean matchAtEnd,
+      int maxMem,
+      int maxTableStates,
+      boolean utf8) {
+    this(re2, longest, matchAtEnd, maxMem, maxTableStates, utf8, false);
+  }
+
+  // If |manyMatch|, the DFA is for searchMany() of the program of a
+  // PatternSet; it is unanchored, leftmost-first and has no tables.
+  DFA(
+      RE2 re2,
+      boolean longest,
+      boolean matchAtEnd,
+      int maxMem,
+      int maxTableStates,
+      boolean utf8,
+      boolean manyMatch) {
+    this.re2 = re2;
+    this.manyMatch = manyMatch;
+    this.prog = utf8 ? re2.progUTF8() : re2.prog;
+    this.utf8 = utf8;
+    this.tableSize = utf8 ? BYTE_TABLE_SIZE : TABLE_SIZE;
+    this.runeClasses = utf8 ? null : re2.classes;
+    this.longest = longest;
+    this.matchAtEnd = matchAtEnd;
+    this.maxMem = maxMem;
+    int n = prog.numInst();
+    boolean needContext = false;
+    for (int pc = 0; pc < n; pc++) {
+      if (prog.inst[pc].op == Inst.EMPTY_WIDTH) {
+        needContext = true;
+        break;
+      }
+    }
+    this.needContext = needContext;
+    this.classes = new byte[tableSize];
+    this.numClasses = classes(classes);
+    this.stateCost = 48 + 16 + 4 * numClasses + 48;
+    this.tooBig = maxMem < 20 * (stateCost + 8 * n);
+    this.visited = new SparseSet(n);
+    this.added = new SparseSet(manyMatch ? 2 * n : n);
+    this.stack = new int[2 * n + 2];
+    this.buf = new int[2 * n + 2];
+    if (!tooBig && re2.cond != Utils.EMPTY_ALL && maxTableStates > 0 && !manyMatch) {
+      if (!matchAtEnd) { // (RE2.ANCHOR_BOTH is anchored)
+        tables[0] = buildTable(false, maxTableStates);
+      }
+      tables[1] = buildTable(true, maxTableStates);
+    }
+  }
+
+  // This is visible for testing.
+  DFATable[] tables() {
+    return tables;
+  }
+
+  // search() runs the DFA over the input |in| starting at |pos| with the
+  // RE2 Anchor |anchor|.  It returns the end position of the match that
+  // Machine.match would find, NO_MATCH if there is none, or FAILED if the
+  // state cache is too small to make progress on this input.  If |anyMatch|
+  // is set, it returns as soon as it sees that some match exists, and the
+  // position returned is not necessarily where the leftmost match ends.
+  int search(MachineInput in, int pos, int anchor, boolean anyMatch) {
+    int startCond = re2.cond;
+    if (startCond == Utils.EMPTY_ALL) { // impossible
+      return NO_MATCH;
+    }
+    boolean anchored = anchor == RE2.ANCHOR_START || anchor == RE2.ANCHOR_BOTH;
+    if ((startCond & Utils.EMPTY_BEGIN_TEXT) != 0) {
+      // Every thread but the first dies at once.
+      anchored = true;
+    }
+    if (anchored && pos != 0) {
+      return NO_MATCH;
+    }
+    if (tooBig) {
+      return FAILED;
+    }
+    boolean checkPrefix = !anchored && re2.hasPrefix() && in.canCheckPrefix();
+    DFATable table = tables[anchored ? 1 : 0];
+    if (table != null && !(checkPrefix && re2.hasLiteralPrefix(in.isUTF8()))) {
+      // A table reads every unit of the text, where the loop below skips
+      // through it to each occurrence of a literal prefix.
+      int end = in.search(table, pos, anyMatch);
+      if (end != FAILED) {
+        return end;
+      }
+    }
+    int lastMatch = NO_MATCH;
+    int resetPos = -1; // position of the last flush of the cache
+    State s = start(in, pos, anchored);
+    if (s == null) {
+      if (!resetCache(Integer.MAX_VALUE)) {
+        return FAILED;
+      }
+      resetPos = pos;
+      if ((s = start(in, pos, anchored)) == null) {
+        return FAILED;
+      }
+    }
+    for (; ; ) {
+      int r = utf8 ? in.stepByte(pos) : in.step(pos);
+      if (checkPrefix
+          && s.pcs.length == 0
+          && (utf8 ? (r >> 3 & 0xc0) != 0x80 : (r >> 3) != re2.prefixRune)) {
+        // No threads are running, so a match must start with the literal
+        // prefix; fast search for it.  (Only start states have no threads.)
+        // In UTF-8 mode r is a byte, which the search can only start from
+        // if it begins a rune, and which is never the prefix rune itself.
+        int advance = in.index(re2, pos);
+        if (advance < 0) {
+          return lastMatch;
+        }
+        if (advance > 0) {
+          pos += advance;
+          r = utf8 ? in.stepByte(pos) : in.step(pos);
+          State t = start(in, pos, false);
+          if (t == null) {
+            if (!resetCache(resetPos < 0 ? Integer.MAX_VALUE : pos - resetPos)) {
+              return FAILED;
+            }
+            resetPos = pos;
+            if ((t = start(in, pos, false)) == null) {
+              return FAILED;
+            }
+          }
+          s = t;
+        }
+      }
+      if (r == MachineInput.EOF) {
+        if ((endOfText(s, in.context(pos), pos == in.endPos()).flag & FLAG_MATCH) != 0) {
+          lastMatch = pos;
+        }
+        return lastMatch;
+      }
+      int c = r >> 3;
+      State next = c < tableSize ? s.next[classes[c] & 0xff] : null;
+      if (next == null) {
+        next = next(s, c);
+        if (next == null) {
+          // The cache is full: flush it, unless it was flushed so recently
+          // that the DFA is no faster than the Machine on this input.
+          if (!resetCache(resetPos < 0 ? Integer.MAX_VALUE : pos - resetPos)) {
+            return FAILED;
+          }
+          resetPos = pos;
+          if ((next = next(s, c)) == null) {
+            return FAILED;
+          }
+        }
+      }
+      if ((next.flag & FLAG_MATCH) != 0) {
+        lastMatch = pos;
+        if (anyMatch) {
+          return lastMatch;
+        }
+      }
+      if (next.pcs.length == 0 && (next.flag & FLAG_START) == 0) {
+        return lastMatch;
+      }
+      s = next;
+      pos += r & 7;
+    }
+  }
+
+  // searchMany() runs a many-match DFA over the whole of the input |in|
+  // and sets matched[i] for each program i of the set that matches
+  // somewhere in it.  It returns false if the state cache is too small to
+  // make progress on this input, in which case |matched| may be
+  // incomplete.
+  boolean searchMany(MachineInput in, boolean[] matched) {
+    if (re2.cond == Utils.EMPTY_ALL) { // impossible
+      return true;
+    }
+    if (tooBig) {
+      return false;
+    }
+    boolean checkPrefix = re2.hasPrefix() && in.canCheckPrefix();
+    int left = matched.length; // programs not yet known to match
+    for (boolean m : matched) {
+      if (m) {
+        left--;
+      }
+    }
+    int pos = 0;
+    int resetPos = -1; // position of the last flush of the cache
+    State s = start(in, pos, false);
+    if (s == null) {
+      if (!resetCache(Integer.MAX_VALUE)) {
+        return false;
+      }
+      resetPos = pos;
+      if ((s = start(in, pos, false)) == null) {
+        return false;
+      }
+    }
+    for (; ; ) {
+      if (left == 0) {
+        return true;
+      }
+      if (checkPrefix && s.pcs.length == 0) {
+        // No threads are running; skip to a rune that can begin a match.
+        int advance = in.index(re2, pos);
+        if (advance < 0) {
+          return true;
+        }
+        if (advance > 0) {
+          pos += advance;
+          State t = start(in, pos, false);
+          if (t == null) {
+            if (!resetCache(resetPos < 0 ? Integer.MAX_VALUE : pos - resetPos)) {
+              return false;
+            }
+            resetPos = pos;
+            if ((t = start(in, pos, false)) == null) {
+              return false;
+            }
+          }
+          s = t;
+        }
+      }
+      int r = utf8 ? in.stepByte(pos) : in.step(pos);
+      if (r == MachineInput.EOF) {
+        State end = endOfText(s, in.context(pos), pos == in.endPos());
+        if (end == null) {
+          return false;
+        }
+        recordMatches(end, matched);
+        return true;
+      }
+      int c = r >> 3;
+      State next = c < tableSize ? s.next[classes[c] & 0xff] : null;
+      if (next == null) {
+        next = next(s, c);
+        if (next == null) {
+          if (!resetCache(resetPos < 0 ? Integer.MAX_VALUE : pos - resetPos)) {
+            return false;
+          }
+          resetPos = pos;
+          if ((next = next(s, c)) == null) {
+            return false;
+          }
+        }
+      }
+      if ((next.flag & FLAG_MATCH) != 0) {
+        left -= recordMatches(next, matched);
+      }
+      s = next;
+      pos += r & 7;
+    }
+  }
+
+  // recordMatches() sets matched[i] for the matches recorded in |s| and
+  // returns how many were not already set.
+  private int recordMatches(State s, boolean[] matched) {
+    int n = 0;
+    for (int pc : s.pcs) {
+      if (pc < prog.numInst()) {
+        continue;
+      }
+      Inst inst = prog.inst[pc - prog.numInst()];
+      if (!matched[inst.arg]) {
+        matched[inst.arg] = true;
+        n++;
+      }
+    }
+    return n;
+  }
+
+  // start() returns the start state for a search at |pos|, or null if the
+  // state cache is full.
+  private State start(MachineInput in, int pos, boolean anchored) {
+    int flag = 0;
+    if (needContext) {
+      int context = in.context(pos);
+      int r = in.step(pos);
+      boolean nextWord = r != MachineInput.EOF && Utils.isWordRune(r >> 3);
+      if ((context & Utils.EMPTY_BEGIN_TEXT) != 0) {
+        flag |= FLAG_BEGIN_TEXT;
+      }
+      if ((context & Utils.EMPTY_BEGIN_LINE) != 0) {
+        flag |= FLAG_BEGIN_LINE;
+      }
+      if (((context & Utils.EMPTY_WORD_BOUNDARY) != 0) != nextWord) {
+        flag |= FLAG_PREV_WORD;
+      }
+    }
+    return start(flag, anchored);
+  }
+
+  private State start(int flag, boolean anchored) {
+    int i = flag >> 2 | (anchored ? 8 : 0);
+    State s = starts[i];
+    return s != null ? s : newStart(i, flag, anchored);
+  }
+
+  private synchronized State newStart(int i, int flag, boolean anchored) {
+    State s = starts[i];
+    if (s == null) {
+      s = anchored ? intern(new int[] {prog.start}, flag) : intern(Utils.EMPTY_INTS, flag | FLAG_START);
+      starts[i] = s;
+    }
+    return s;
+  }
+
+  // next() returns the successor of |s| on rune |c|, computing and caching
+  // it if need be, or null if the state cache is full.
+  private synchronized State next(State s, int c) {
+    State next;
+    int key = 0;
+    if (c < tableSize) {
+      if ((next = s.next[classes[c] & 0xff]) != null) {
+        return next;
+      }
+    } else {
+      key = runeClasses != null ? runeClasses.classOf(c) : c;
+      if (s.other != null && (next = s.other.get(key)) != null) {
+        return next;
+      }
+    }
+    next = step(s, c, cond(s.flag, c), false);
+    if (next == null) {
+      return null;
+    }
+    if (c < tableSize) {
+      s.next[classes[c] & 0xff] = next;
+    } else {
+      if (mem + MAP_ENTRY_COST > maxMem) {
+        return null;
+      }
+      mem += MAP_ENTRY_COST;
+      if (s.other == null) {
+        s.other = new HashMap<Integer, State>();
+      }
+      s.other.put(key, next);
+    }
+    return next;
+  }
+
+  // endOfText() returns the successor of |s| at the end of the input, where
+  // the empty-width conditions |cond| hold.  |atEnd| tells whether this is
+  // the end of the whole input, as opposed to an invalid UTF-8 sequence.
+  private synchronized State endOfText(State s, int cond, boolean atEnd) {
+    Integer key = ~(cond << 1 | (atEnd ? 1 : 0));
+    State next = s.other != null ? s.other.get(key) : null;
+    if (next == null) {
+      next = step(s, -1, cond, atEnd);
+      if (s.next != null && mem + MAP_ENTRY_COST <= maxMem) {
+        mem += MAP_ENTRY_COST;
+        if (s.other == null) {
+          s.other = new HashMap<Integer, State>();
+        }
+        s.other.put(key, next);
+      }
+    }
+    return next;
+  }
+
+  // cond() returns the empty-width conditions that hold before rune |c|
+  // at the position of a state with flags |flag|.
+  private int cond(int flag, int c) {
+    if (!needContext) {
+      return 0;
+    }
+    int cond = 0;
+    if ((flag & FLAG_BEGIN_TEXT) != 0) {
+      cond |= Utils.EMPTY_BEGIN_TEXT;
+    }
+    if ((flag & FLAG_BEGIN_LINE) != 0) {
+      cond |= Utils.EMPTY_BEGIN_LINE;
+    }
+    if (c == '\n') {
+      cond |= Utils.EMPTY_END_LINE;
+    }
+    if (((flag & FLAG_PREV_WORD) != 0) != Utils.isWordRune(c)) {
+      cond |= Utils.EMPTY_WORD_BOUNDARY;
+    } else {
+      cond |= Utils.EMPTY_NO_WORD_BOUNDARY;
+    }
+    return cond;
+  }
+
+  // step() computes the successor of |s| on rune |c| (-1 at end of text)
+  // when the empty-width conditions |cond| hold before |c|, the way
+  // Machine.step and Machine.add would.  It returns null if the state cache
+  // is full.
+  private State step(State s, int c, int cond, boolean atEnd) {
+    visited.clear();
+    added.clear();
+    bufSize = 0;
+    boolean started = (s.flag & FLAG_START) != 0;
+    boolean matched = false;
+    int n = s.pcs.length;
+    // The threads of |s|, then (at lowest priority) a new thread at the
+    // start of the program, unless this is the middle of a UTF-8 sequence.
+    int roots = started && !(utf8 && (c & 0xc0) == 0x80) ? n + 2 : n;
+    int group = 0; // start of the current thread group in buf
+    loop:
+    for (int i = 0; i < roots; i++) {
+      int root = i < n ? s.pcs[i] : i == n ? MARK : prog.start;
+      if (root >= prog.numInst()) {
+        // A match reported when |s| was reached.
+        continue;
+      }
+      if (root == MARK) {
+        if (longest) {
+          if (matched) {
+            // Threads that started later than the match are ignored.
+            break;
+          }
+          group = endGroup(group);
+        }
+        continue;
+      }
+      // Depth-first, in the same order as Machine.add.
+      int sp = 0;
+      stack[sp++] = root;
+      while (sp > 0) {
+        int pc = stack[--sp];
+        if (pc == 0 || visited.contains(pc)) {
+          continue;
+        }
+        visited.add(pc);
+        Inst inst = prog.inst[pc];
+        switch (inst.op) {
+          case Inst.ALT:
+          case Inst.ALT_MATCH:
+            stack[sp++] = inst.arg;
+            stack[sp++] = inst.out;
+            break;
+
+          case Inst.EMPTY_WIDTH:
+            if ((inst.arg & ~cond) == 0) {
+              stack[sp++] = inst.out;
+            }
+            break;
+
+          case Inst.NOP:
+          case Inst.CAPTURE:
+            stack[sp++] = inst.out;
+            break;
+
+          case Inst.FAIL:
+            break;
+
+          case Inst.MATCH:
+            if (matchAtEnd && !atEnd) {
+              break;
+            }
+            matched = true;
+            if (manyMatch) {
+              // Kept in the state, apart from the instructions still to
+              // run, to tell which program matched; the threads of lower
+              // priority go on.
+              addNext(prog.numInst() + pc);
+              break;
+            }
+            if (!longest) {
+              // Lower-priority threads are cut off.
+              break loop;
+            }
+            break;
+
+          case Inst.RUNE:
+            if (c >= 0 && prog.matchRune(pc, c)) {
+              addNext(inst.out);
+            }
+            break;
+
+          case Inst.RUNE1:
+            if (c >= 0 && c == prog.runePool[prog.runeStart[pc]]) {
+              addNext(inst.out);
+            }
+            break;
+
+          case Inst.RUNE_ANY:
+            if (c >= 0) {
+              addNext(inst.out);
+            }
+            break;
+
+          case Inst.RUNE_ANY_NOT_NL:
+            if (c >= 0 && c != '\n') {
+              addNext(inst.out);
+            }
+            break;
+
+          case Inst.BYTE:
+            int b = prog.runeStart[pc];
+            if (prog.runePool[b] <= c && c <= prog.runePool[b + 1]) {
+              addNext(inst.out);
+            }
+            break;
+
+          default:
+            throw new IllegalStateException("bad inst");
+        }
+      }
+    }
+    if (longest) {
+      endGroup(group);
+      if (bufSize > 0 && buf[bufSize - 1] == MARK) {
+        bufSize--;
+      }
+    }
+
+    if (manyMatch) {
+      // Priority does not matter, so states that differ only in the order
+      // of their threads are the same.
+      Arrays.sort(buf, 0, bufSize);
+    }
+    int flag = 0;
+    if (started && (manyMatch || !matched)) {
+      flag |= FLAG_START;
+    }
+    if (bufSize == 0 && flag == 0) {
+      return matched ? DEAD_MATCH : DEAD;
+    }
+    if (matched) {
+      flag |= FLAG_MATCH;
+    }
+    if (needContext) {
+      if (c == '\n') {
+        flag |= FLAG_BEGIN_LINE;
+      }
+      if (Utils.isWordRune(c)) {
+        flag |= FLAG_PREV_WORD;
+      }
+    }
+    return intern(Arrays.copyOf(buf, bufSize), flag);
+  }
+
+  private void addNext(int pc) {
+    if (!added.contains(pc)) {
+      added.add(pc);
+      buf[bufSize++] = pc;
+    }
+  }
+
+  // endGroup() ends the group of threads that begins at buf[group].  The
+  // order of threads that started at the same position does not affect the
+  // end of a leftmost-longest match, so they are sorted to share states.
+  private int endGroup(int group) {
+    if (bufSize == group) {
+      return group;
+    }
+    Arrays.sort(buf, group, bufSize);
+    buf[bufSize++] = MARK;
+    return bufSize;
+  }
+
+  // intern() returns the cached state with instructions |pcs| and flags
+  // |flag|, adding it to the cache if need be, or null if the cache is full.
+  private State intern(int[] pcs, int flag) {
+    State s = cache.get(new State(pcs, flag, 0));
+    if (s == null) {
+      int cost = stateCost + 4 * pcs.length;
+      if (mem + cost > maxMem) {
+        return null;
+      }
+      mem += cost;
+      s = new State(pcs, flag, numClasses);
+      cache.put(s, s);
+    }
+    return s;
+  }
+
+  // classes() divides the ASCII runes, or the bytes of UTF-8 input, into
+  // classes that every instruction treats alike, stores the class of each
+  // in |classes| and returns the number of classes.
+  private int classes(byte[] classes) {
+    boolean[] split = new boolean[tableSize + 1]; // a class begins at c
+    if (needContext) {
+      split(split, '\n', '\n');
+      split(split, '0', '9');
+      split(split, 'A', 'Z');
+      split(split, '_', '_');
+      split(split, 'a', 'z');
+    }
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.inst[pc];
+      int[] runes = prog.runes(pc);
+      switch (inst.op) {
+        case Inst.RUNE:
+          if (runes.length == 1) {
+            int r = runes[0];
+            split(split, r, r);
+            if (inst.folds != null) {
+              for (int j = 0; j < inst.folds.length; j += 2) {
+                split(split, inst.folds[j], inst.folds[j]);
+              }
+            }
+          } else {
+            for (int j = 0; j < runes.length; j += 2) {
+              split(split, runes[j], runes[j + 1]);
+            }
+          }
+          break;
+        case Inst.RUNE1:
+          split(split, runes[0], runes[0]);
+          break;
+        case Inst.RUNE_ANY_NOT_NL:
+          split(split, '\n', '\n');
+          break;
+        case Inst.BYTE:
+          split(split, runes[0], runes[1]);
+          break;
+        default:
+          break;
+      }
+    }
+    if (utf8) {
+      // Only lead bytes start new threads.
+      split(split, 0x80, 0xbf);
+    }
+    int n = 0;
+    for (int c = 0; c < tableSize; c++) {
+      if (c > 0 && split[c]) {
+        n++;
+      }
+      classes[c] = (byte) n;
+    }
+    return n + 1;
+  }
+
+  private static void split(boolean[] split, int lo, int hi) {
+    if (lo < split.length - 1) {
+      split[lo] = true;
+      if (hi < split.length - 1) {
+        split[hi + 1] = true;
+      }
+    }
+  }
+
+  // buildTable() explores every state reachable from the start state of
+  // a search from the beginning of the text, and returns their transitions
+  // as a DFATable, or null if there are more than |maxStates| of them.
+  private DFATable buildTable(boolean anchored, int maxStates) {
+    int flag = needContext ? FLAG_BEGIN_TEXT | FLAG_BEGIN_LINE : 0;
+    State start = start(flag, anchored);
+    if (start == null) {
+      return null;
+    }
+    int[] rep = new int[numClasses]; // a rune of each class
+    for (int c = tableSize - 1; c >= 0; c--) {
+      rep[classes[c] & 0xff] = c;
+    }
+    List<State> states = new ArrayList<State>();
+    Map<State, Integer> rows = new HashMap<State, Integer>();
+    states.add(start);
+    rows.put(start, 0);
+    int[] next = new int[maxStates * numClasses];
+    boolean[] eof = new boolean[maxStates];
+    for (int i = 0; i < states.size(); i++) {
+      State s = states.get(i);
+      for (int k = 0; k < numClasses; k++) {
+        State t = next(s, rep[k]);
+        if (t == null) {
+          return null;
+        }
+        int v;
+        if (t.pcs.length == 0 && (t.flag & FLAG_START) == 0) {
+          v = DFATable.STOP;
+        } else {
+          Integer row = rows.get(t);
+          if (row == null) {
+            if (states.size() == maxStates) {
+              return null;
+            }
+            row = states.size() * numClasses;
+            states.add(t);
+            rows.put(t, row);
+          }
+          v = row << 2;
+        }
+        if ((t.flag & FLAG_MATCH) != 0) {
+          v |= DFATable.MATCH;
+        }
+        next[i * numClasses + k] = v;
+      }
+      int cond = cond(s.flag, -1);
+      if (needContext) {
+        cond |= Utils.EMPTY_END_TEXT | Utils.EMPTY_END_LINE;
+      }
+      eof[i] = (endOfText(s, cond, true).flag & FLAG_MATCH) != 0;
+    }
+    int n = states.size();
+    return new DFATable(
+        classes, numClasses, Arrays.copyOf(next, n * numClasses), Arrays.copyOf(eof, n));
+  }
+
+  // resetCache() empties the state cache, unless fewer than ten units of
+  // input per cached state were scanned since it was last emptied, in which
+  // case it returns false.  States already in use remain valid.
+  private synchronized boolean resetCache(int progress) {
+    if (progress / 10 < cache.size()) {
+      return false;
+    }
+    cache.clear();
+    mem = 0;
+    starts = new State[starts.length];
+    return true;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+// A DFATable is the complete transition table of a DFA over ASCII input,
+// built in full for programs with few states when their DFA is created.  A search is then a loop of
+// array lookups, with no state cache, no locking and no virtual calls.
+//
+// The ASCII runes are divided into classes that no instruction tells
+// apart, and the table is a flat array indexed by state and class.  Each
+// entry holds the offset of the successor's row, shifted left by two, and
+// two flags: MATCH if a match ended just before the rune, and STOP if no
+// match can follow.
+//
+// A table covers only searches from the beginning of the text to its end;
+// it returns DFA.FAILED when it meets a rune outside ASCII, and the caller
+// carries on with the lazily-built DFA.  The table of a DFA for UTF-8
+// input has a class for every byte, and never fails.
+//
+// Built and called by DFA.
+class DFATable {
+
+  // Largest program for which tables are built by default.
+  static final int MAX_INST = 100;
+
+  // Largest number of states for which a table is built, by default.
+  static final int DEFAULT_MAX_STATES = 64;
+
+  // Largest number of states for which a table is built for a pattern
+  // compiled with Pattern.PRECOMPILE_DFA, whatever the size of its program.
+  static final int PRECOMPILED_MAX_STATES = 1024;
+
+  // maxStates() returns the default state limit of the tables for |prog|:
+  // none for programs too long to be worth exploring in full.
+  static int maxStates(Prog prog) {
+    return prog.numInst() <= MAX_INST ? DEFAULT_MAX_STATES : 0;
+  }
+
+  // Flags of a table entry.
+  static final int MATCH = 0x01;
+  static final int STOP = 0x02;
+
+  // The class of each ASCII rune, or of each byte, as an unsigned byte.
+  private final byte[] classes;
+
+  // Number of classes, and so the length of a row.
+  private final int numClasses;
+
+  // The transitions: next[row + classes[c]] for the state whose row
+  // starts at |row|.  The start state's row starts at 0.
+  private final int[] next;
+
+  // Whether there is a match at the end of the text, by state number.
+  private final boolean[] eof;
+
+  DFATable(byte[] classes, int numClasses, int[] next, boolean[] eof) {
+    this.classes = classes;
+    this.numClasses = numClasses;
+    this.next = next;
+    this.eof = eof;
+  }
+
+  // Returns the number of states.
+  int numStates() {
+    return eof.length;
+  }
+
+  // search() runs the table over str[start:end], which must be the whole
+  // text.  It returns the end of the match relative to |start|, as
+  // DFA.search does, or DFA.FAILED if the text is not ASCII.
+  int search(CharSequence str, int start, int end, boolean anyMatch) {
+    int lastMatch = DFA.NO_MATCH;
+    int row = 0;
+    for (int i = start; i < end; i++) {
+      char c = str.charAt(i);
+      if (c >= classes.length) {
+        return DFA.FAILED;
+      }
+      int v = next[row + (classes[c] & 0xff)];
+      if ((v & (MATCH | STOP)) != 0) {
+        if ((v & MATCH) != 0) {
+          lastMatch = i - start;
+          if (anyMatch) {
+            return lastMatch;
+          }
+        }
+        if ((v & STOP) != 0) {
+          return lastMatch;
+        }
+      }
+      row = v >> 2;
+    }
+    return eof[row / numClasses] ? end - start : lastMatch;
+  }
+
+  // search() is like the above for UTF-8 text b[start:end].
+  int search(byte[] b, int start, int end, boolean anyMatch) {
+    int lastMatch = DFA.NO_MATCH;
+    int row = 0;
+    for (int i = start; i < end; i++) {
+      int c = b[i] & 0xff;
+      if (c >= classes.length) {
+        return DFA.FAILED;
+      }
+      int v = next[row + (classes[c] & 0xff)];
+      if ((v & (MATCH | STOP)) != 0) {
+        if ((v & MATCH) != 0) {
+          lastMatch = i - start;
+          if (anyMatch) {
+            return lastMatch;
+          }
+        }
+        if ((v & STOP) != 0) {
+          return lastMatch;
+        }
+      }
+      row = v >> 2;
+    }
+    return eof[row / numClasses] ? end - start : lastMatch;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An explanation of a regular expression that is being edited: the {@link Track}s of its parts, or
+ * the syntax error that keeps it from parsing.
+ *
+ * <p>
+ * Unlike {@link Pattern#explain}, an {@code Explanation} only parses the pattern and never compiles
+ * it, so that an editor can explain the pattern again on every change. An explanation and those
+ * derived from it by {@link #edit} also share the results for the last 16 patterns they explained,
+ * so undoing an edit, or retyping what was just deleted, does not parse again.
+ *
+ * <p>
+ * The explanation is not incremental: an edit that gives a pattern not among those recent ones
+ * parses the whole edited pattern again, and no tracks of the unedited parts are reused. The
+ * parse depends on the whole pattern (flag groups, group numbering, and literals and classes that
+ * merge across the edit), so the cost of an edit is that of parsing the pattern once.
+ *
+ * <p>
+ * Explanations are immutable and safe for use by multiple concurrent threads. The {@link Track}s
+ * they return have public fields, so each call of {@link #tracks} returns new copies.
+ */
+public final class Explanation {
+
+  // Number of recent patterns whose explanations a chain of edits keeps.
+  private static final int MAX_RECENT = 16;
+
+  private final String pattern;
+  private final int flags;
+  private final List<Track> tracks;
+  private final PatternSyntaxException error;
+
+  // The explanations of recent patterns, by pattern; shared by all the explanations derived from
+  // one another by edit(), which all have the same flags.  Guarded by itself.
+  private final Map<String, Explanation> recent;
+
+  private Explanation(
+      String pattern,
+      int flags,
+      List<Track> tracks,
+      PatternSyntaxException error,
+      Map<String, Explanation> recent) {
+    this.pattern = pattern;
+    this.flags = flags;
+    this.tracks = tracks;
+    this.error = error;
+    this.recent = recent;
+  }
+
+  /**
+   * Explains {@code regex} as {@link Pattern#compile(String, int)} would parse it with the given
+   * {@code flags}.
+   *
+   * @param regex the regular expression
+   * @param flags bitwise OR of the {@link Pattern} flag constants
+   * @throws IllegalArgumentException if an unknown flag is given
+   */
+  public static Explanation of(String regex, int flags) {
+    if (regex == null) {
+      throw new NullPointerException("regex is null");
+    }
+    Pattern.checkFlags(flags);
+    Map<String, Explanation> recent =
+        new LinkedHashMap<String, Explanation>(MAX_RECENT, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Explanation> eldest) {
+            return size() > MAX_RECENT;
+          }
+        };
+    return parse(regex, flags, recent);
+  }
+
+  /**
+   * Returns the explanation of the pattern with the characters from {@code start} (inclusive) to
+   * {@code end} (exclusive) replaced by {@code replacement}, as they are by
+   * {@link StringBuilder#replace}. The edited pattern is parsed in full, unless it is one of the
+   * recently explained patterns; see the class comment.
+   *
+   * @param start the index of the first character replaced
+   * @param end the index after the last character replaced
+   * @param replacement the replacement text, empty for a deletion
+   * @throws IndexOutOfBoundsException if {@code start} is negative, or greater than {@code end}, or
+   * {@code end} is greater than the length of the pattern
+   */
+  public Explanation edit(int start, int end, String replacement) {
+    if (start < 0 || start > end || end > pattern.length()) {
+      throw new IndexOutOfBoundsException(
+          "edit [" + start + ", " + end + ") of pattern of length " + pattern.length());
+    }
+    String edited = pattern.substring(0, start) + replacement + pattern.substring(end);
+    if (edited.equals(pattern)) {
+      return this;
+    }
+    Explanation e;
+    synchronized (recent) {
+      e = recent.get(edited);
+    }
+    return e != null ? e : parse(edited, flags, recent);
+  }
+
+  private static Explanation parse(String pattern, int flags, Map<String, Explanation> recent) {
+    List<Track> tracks;
+    PatternSyntaxException error = null;
+    try {
+      Regexp re = Parser.parseWithTracks(pattern, Pattern.explainFlags(flags));
+      tracks = re.GetAllTracks();
+    } catch (PatternSyntaxException e) {
+      tracks = Collections.emptyList();
+      error = e;
+    }
+    Explanation e = new Explanation(pattern, flags, tracks, error, recent);
+    synchronized (recent) {
+      recent.put(pattern, e);
+    }
+    return e;
+  }
+
+  /**
+   * Returns the explained pattern.
+   */
+  public String pattern() {
+    return pattern;
+  }
+
+  /**
+   * Returns the flags the pattern is explained with.
+   */
+  public int flags() {
+    return flags;
+  }
+
+  /**
+   * Returns the tracks of the pattern, as {@link Pattern#explain} does, or an empty list if it is
+   * malformed.
+   *
+   * @return a new list of copies of the tracks of the pattern
+   */
+  public List<Track> tracks() {
+    return Track.CopyAll(tracks);
+  }
+
+  /**
+   * Returns the syntax error in the pattern, or null if it is well-formed.
+   */
+  public PatternSyntaxException error() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return pattern;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// A FirstSet is the set of runes that can begin a match of a program,
+// used to skip the positions of an unanchored search where no match can
+// start when the program has no literal prefix, as in [A-Z][a-z]+Error.
+//
+// Runes below 256 are held in a bitmap and the others in sorted ranges.
+// For UTF-8 input there is a second bitmap of the bytes that can begin
+// those runes, so that a scan tests one byte at a time.
+//
+// Built by RE2.compileImpl; called by MachineInput.index.
+final class FirstSet {
+
+  // Most ASCII runes in a set worth scanning for; with more, nearly every
+  // position is a candidate.
+  private static final int MAX_ASCII = 64;
+
+  private final long[] latin1 = new long[4];
+  private final long[] bytes = new long[4];
+  private final int[] ranges; // lo, hi pairs of runes above Latin-1
+
+  private FirstSet(int[] ranges) {
+    this.ranges = ranges;
+  }
+
+  // compute() returns the set of runes that can begin a match of |prog|,
+  // or null if it can match the empty string, begins with any rune, or
+  // the set is too large to be useful.
+  static FirstSet compute(Prog prog) {
+    int[] ranges = new int[16];
+    int n = 0;
+    boolean[] seen = new boolean[prog.numInst()];
+    int[] stack = new int[prog.numInst()];
+    int top = 0;
+    stack[top++] = prog.start;
+    while (top > 0) {
+      int pc = stack[--top];
+      if (seen[pc]) {
+        continue;
+      }
+      seen[pc] = true;
+      Inst inst = prog.getInst(pc);
+      switch (inst.op) {
+        case Inst.MATCH:
+        case Inst.RUNE_ANY:
+        case Inst.RUNE_ANY_NOT_NL:
+          return null;
+        case Inst.FAIL:
+          break;
+        case Inst.ALT:
+        case Inst.ALT_MATCH:
+          stack[top++] = inst.arg;
+          stack[top++] = inst.out;
+          break;
+        case Inst.CAPTURE:
+        case Inst.EMPTY_WIDTH:
+        case Inst.NOP:
+          stack[top++] = inst.out;
+          break;
+        case Inst.RUNE:
+        case Inst.RUNE1:
+          {
+            int[] runes = prog.runes(pc);
+            if (runes.length == 1) {
+              int r0 = runes[0];
+              runes = new int[] {r0, r0};
+              if (inst.op == Inst.RUNE && (inst.arg & RE2.FOLD_CASE) != 0) {
+                for (int r = Unicode.simpleFold(r0); r != r0; r = Unicode.simpleFold(r)) {
+                  runes = Arrays.copyOf(runes, runes.length + 2);
+                  runes[runes.length - 2] = r;
+                  runes[runes.length - 1] = r;
+                }
+              }
+            }
+            if (n + runes.length > ranges.length) {
+              ranges = Arrays.copyOf(ranges, Math.max(2 * ranges.length, n + runes.length));
+            }
+            System.arraycopy(runes, 0, ranges, n, runes.length);
+            n += runes.length;
+            break;
+          }
+        default:
+          throw new IllegalStateException("unhandled " + inst.op);
+      }
+    }
+    if (n == 0) {
+      return null;
+    }
+    FirstSet set = build(ranges, n);
+    int ascii = Long.bitCount(set.latin1[0]) + Long.bitCount(set.latin1[1]);
+    return ascii > MAX_ASCII ? null : set;
+  }
+
+  // build() returns the set of the |n| / 2 rune ranges in |ranges|.
+  private static FirstSet build(int[] ranges, int n) {
+    // Sort the ranges above Latin-1 by their low end and merge them.
+    long[] keys = new long[n / 2];
+    int k = 0;
+    for (int i = 0; i < n; i += 2) {
+      if (ranges[i + 1] > 0xff) {
+        keys[k++] = (long) Math.max(ranges[i], 0x100) << 32 | ranges[i + 1];
+      }
+    }
+    Arrays.sort(keys, 0, k);
+    int[] high = new int[2 * k];
+    int m = 0;
+    for (int i = 0; i < k; i++) {
+      int lo = (int) (keys[i] >> 32);
+      int hi = (int) keys[i];
+      if (m > 0 && lo <= high[m - 1] + 1) {
+        high[m - 1] = Math.max(high[m - 1], hi);
+      } else {
+        high[m++] = lo;
+        high[m++] = hi;
+      }
+    }
+    FirstSet set = new FirstSet(Arrays.copyOf(high, m));
+    for (int i = 0; i < n; i += 2) {
+      int lo = ranges[i];
+      int hi = ranges[i + 1];
+      for (int r = lo; r <= Math.min(hi, 0xff); r++) {
+        set.latin1[r >> 6] |= 1L << r;
+      }
+      for (int b = leadByte(lo); b <= leadByte(hi); b++) {
+        set.bytes[b >> 6] |= 1L << b;
+      }
+    }
+    // No rune begins with a continuation byte.
+    set.bytes[2] = 0;
+    return set;
+  }
+
+  // leadByte() returns the first byte of the UTF-8 encoding of |r|, which
+  // increases with |r|.
+  private static int leadByte(int r) {
+    if (r < 0x80) {
+      return r;
+    } else if (r < 0x800) {
+      return 0xc0 | r >> 6;
+    } else if (r < 0x10000) {
+      return 0xe0 | r >> 12;
+    }
+    return 0xf0 | Math.min(r, Unicode.MAX_RUNE) >> 18;
+  }
+
+  // contains() reports whether |r| can begin a match.
+  boolean contains(int r) {
+    if (r <= 0xff) {
+      return (latin1[r >> 6] & 1L << r) != 0;
+    }
+    for (int lo = 0, hi = ranges.length / 2; lo < hi; ) {
+      int m = lo + (hi - lo) / 2;
+      if (ranges[2 * m] <= r) {
+        if (r <= ranges[2 * m + 1]) {
+          return true;
+        }
+        lo = m + 1;
+      } else {
+        hi = m;
+      }
+    }
+    return false;
+  }
+
+  // index() returns the index relative to |pos| of the first rune of
+  // s[pos:end] that can begin a match, or -1 if there is none.
+  int index(CharSequence s, int pos, int end) {
+    for (int i = pos; i < end; i++) {
+      char c = s.charAt(i);
+      if (c <= 0xff) {
+        if ((latin1[c >> 6] & 1L << c) != 0) {
+          return i - pos;
+        }
+      } else if (ranges.length > 0) {
+        int r = c;
+        if (Character.isHighSurrogate(c) && i + 1 < end) {
+          r = Character.codePointAt(s, i);
+        }
+        if (contains(r)) {
+          return i - pos;
+        }
+      }
+    }
+    return -1;
+  }
+
+  // index() is like the above for UTF-8 text b[pos:end].  It returns the
+  // first byte that can begin such a rune.
+  int index(byte[] b, int pos, int end) {
+    for (int i = pos; i < end; i++) {
+      int c = b[i] & 0xff;
+      if ((bytes[c >> 6] & 1L << c) != 0) {
+        return i - pos;
+      }
+    }
+    return -1;
+  }
+}
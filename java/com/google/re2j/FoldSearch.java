@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+// A FoldSearch finds a literal in UTF-16 text when case is ignored, as
+// StringSearch does for an exact one: each position of the literal is a
+// small set of units, the case-fold orbit of its rune, and the
+// Boyer-Moore-Horspool shift of a unit is the least over the positions
+// whose set holds it.  So (?i)keyword is found in about n/m steps, where
+// searching for each of its case variants would take n.
+//
+// Only runes whose whole orbit is in the Basic Multilingual Plane are
+// searched for, so that each is one unit; the literal ends before the
+// first other one.
+//
+// Built by RE2.compileImpl from Prog.foldPrefix; called by MachineInput.
+final class FoldSearch {
+
+  private final char[][] sets; // the units that may be at each position
+  private final int[] shift = new int[256];
+
+  private FoldSearch(char[][] sets) {
+    this.sets = sets;
+    int m = sets.length;
+    for (int i = 0; i < shift.length; i++) {
+      shift[i] = m;
+    }
+    for (int i = 0; i < m - 1; i++) {
+      for (char c : sets[i]) {
+        shift[c & 0xff] = m - 1 - i;
+      }
+    }
+  }
+
+  // of() returns a searcher for the literal whose runes are in |orbits|,
+  // or null if fewer than two of them can be searched for.
+  static FoldSearch of(int[][] orbits) {
+    int m = 0;
+    loop:
+    for (; m < orbits.length; m++) {
+      for (int r : orbits[m]) {
+        if (Character.charCount(r) > 1 || (r >= 0xd800 && r <= 0xdfff)) {
+          break loop;
+        }
+      }
+    }
+    if (m < 2) {
+      return null;
+    }
+    char[][] sets = new char[m][];
+    for (int i = 0; i < m; i++) {
+      sets[i] = new char[orbits[i].length];
+      for (int j = 0; j < sets[i].length; j++) {
+        sets[i][j] = (char) orbits[i][j];
+      }
+    }
+    return new FoldSearch(sets);
+  }
+
+  // Returns the length of the literal in UTF-16 units.
+  int length() {
+    return sets.length;
+  }
+
+  private static boolean in(char[] set, char c) {
+    for (char d : set) {
+      if (d == c) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // indexOf() returns the index of the first occurrence of the literal in
+  // s[from:to], or -1 if there is none.
+  int indexOf(CharSequence s, int from, int to) {
+    int m = sets.length;
+    int last = m - 1;
+    char[] lastSet = sets[last];
+    for (int i = from; i <= to - m; ) {
+      char d = s.charAt(i + last);
+      if (in(lastSet, d)) {
+        int j = 0;
+        while (j < last && in(sets[j], s.charAt(i + j))) {
+          j++;
+        }
+        if (j == last) {
+          return i;
+        }
+      }
+      i += shift[d & 0xff];
+    }
+    return -1;
+  }
+}
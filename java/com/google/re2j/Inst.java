@@ -27,13 +27,19 @@ final class Inst {
   public static final int RUNE1 = 9;
   public static final int RUNE_ANY = 10;
   public static final int RUNE_ANY_NOT_NL = 11;
+  // A byte of UTF-8 text in [runes[0], runes[1]]; only in programs made
+  // by Compiler.compileUTF8.
+  public static final int BYTE = 12;
 
   int op;
   int out; // all but MATCH, FAIL
   int arg; // ALT, ALT_MATCH, CAPTURE, EMPTY_WIDTH
-  int[] runes; // length==1 => exact match
+  int[] runes; // length==1 => exact match; null once in Prog's pool
   // otherwise a list of [lo,hi] pairs.  hi is *inclusive*.
   // REVIEWERS: why not half-open intervals?
+  long[] classes; // RUNE: the RuneClasses it matches, until flattened
+  RuneBitmap bitmap; // RUNE: its runes as bitmaps, if computed; see Prog.flatten
+  int[] folds; // RUNE of one rune with FOLD_CASE: its case-fold orbit, as sorted [r, r] pairs
 
   Inst(int op) {
     this.op = op;
@@ -43,13 +49,13 @@ final class Inst {
     return RUNE <= op && op <= RUNE_ANY_NOT_NL;
   }
 
-  // MatchRune returns true if the instruction matches (and consumes) r.
-  // It should only be called when op == InstRune.
-  boolean matchRune(int r) {
+  // matchRune() reports whether a RUNE instruction with runes[from:to]
+  // and flags |arg| matches r; see Prog.matchRune.
+  static boolean matchRune(int[] runes, int from, int to, int arg, int r) {
     // Special case: single-rune slice is from literal string, not char
     // class.
-    if (runes.length == 1) {
-      int r0 = runes[0];
+    if (to - from == 1) {
+      int r0 = runes[from];
       if (r == r0) {
         return true;
       }
@@ -65,7 +71,7 @@ final class Inst {
 
     // Peek at the first few pairs.
     // Should handle ASCII well.
-    for (int j = 0; j < runes.length && j <= 8; j += 2) {
+    for (int j = from; j < to && j <= from + 8; j += 2) {
       if (r < runes[j]) {
         return false;
       }
@@ -75,11 +81,11 @@ final class Inst {
     }
 
     // Otherwise binary search.
-    for (int lo = 0, hi = runes.length / 2; lo < hi; ) {
+    for (int lo = 0, hi = (to - from) / 2; lo < hi; ) {
       int m = lo + (hi - lo) / 2;
-      int c = runes[2 * m];
+      int c = runes[from + 2 * m];
       if (c <= r) {
-        if (r <= runes[2 * m + 1]) {
+        if (r <= runes[from + 2 * m + 1]) {
           return true;
         }
         lo = m + 1;
@@ -92,6 +98,12 @@ final class Inst {
 
   @Override
   public String toString() {
+    return toString(runes);
+  }
+
+  // toString() returns the text of this instruction with runes |runes|,
+  // which Prog passes once they are in its pool.
+  String toString(int[] runes) {
     switch (op) {
       case ALT:
         return "alt -> " + out + ", " + arg;
@@ -122,6 +134,13 @@ final class Inst {
         return "any -> " + out;
       case RUNE_ANY_NOT_NL:
         return "anynotnl -> " + out;
+      case BYTE:
+        return "byte "
+            + Integer.toHexString(runes[0])
+            + "-"
+            + Integer.toHexString(runes[1])
+            + " -> "
+            + out;
       default:
         throw new IllegalStateException("unhandled case in Inst.toString");
     }
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Literals extracts from a simplified Regexp the literal strings that its
+// matches must begin with, so that a search can skip to places where one
+// of them occurs.  Prog.prefix finds a single common prefix; this also
+// handles alternations such as 12345|123123|qwerty, which the parser
+// factors into a tree of literals, concatenations and character classes.
+//
+// It also finds a literal that every match contains somewhere, as
+// " ERROR " in \d+ ERROR [a-z]+, and a bound on the length of a match, so
+// that a search can reject inputs without the literal and start near its
+// first occurrence.
+//
+// Called by RE2.compileImpl.
+class Literals {
+
+  // Most strings in a set.
+  private static final int MAX_STRINGS = 1000;
+
+  // Most runes in a character class expanded into strings.
+  private static final int MAX_CLASS = 16;
+
+  // Longest match, in runes, that maxLength() reports as bounded.
+  static final int MAX_LENGTH = 1000;
+
+  // A set of strings, as rune arrays.  If |exact|, every string matched
+  // by the regexp is in the set; otherwise each begins with a member.
+  private static final class Set {
+    final List<int[]> strings;
+    final boolean exact;
+
+    Set(List<int[]> strings, boolean exact) {
+      this.strings = strings;
+      this.exact = exact;
+    }
+  }
+
+  private static final Set ANY = new Set(single(Utils.EMPTY_INTS), false);
+  private static final Set EMPTY = new Set(single(Utils.EMPTY_INTS), true);
+
+  private static List<int[]> single(int[] s) {
+    List<int[]> list = new ArrayList<int[]>();
+    list.add(s);
+    return list;
+  }
+
+  private Literals() {}
+
+  // prefixes() returns the literal strings that every match of |re| begins
+  // with, or null if there are none worth searching for: fewer than two,
+  // or some match may begin with the empty string.
+  static int[][] prefixes(Regexp re) {
+    Set set = prefixSet(re);
+    if (set == null || set.strings.size() < 2) {
+      return null;
+    }
+    for (int[] s : set.strings) {
+      if (s.length == 0) {
+        return null;
+      }
+    }
+    return set.strings.toArray(new int[set.strings.size()][]);
+  }
+
+  // prefixSet() returns the set of strings with which matches of |re|
+  // begin, or null if |re| matches nothing.
+  private static Set prefixSet(Regexp re) {
+    switch (re.op) {
+      case NO_MATCH:
+        return null;
+      case EMPTY_MATCH:
+      case BEGIN_LINE:
+      case END_LINE:
+      case BEGIN_TEXT:
+      case END_TEXT:
+      case WORD_BOUNDARY:
+      case NO_WORD_BOUNDARY:
+        // Empty-width assertions consume nothing.
+        return EMPTY;
+      case LITERAL:
+        {
+          Set set = EMPTY;
+          for (int r : re.runes) {
+            Set next = concat(set, runes(r, re.flags));
+            if (next == null) {
+              return new Set(set.strings, false);
+            }
+            set = next;
+          }
+          return set;
+        }
+      case CHAR_CLASS:
+        {
+          List<int[]> strings = new ArrayList<int[]>();
+          for (int i = 0; i < re.runes.length; i += 2) {
+            for (int r = re.runes[i]; r <= re.runes[i + 1]; r++) {
+              if (strings.size() == MAX_CLASS) {
+                return ANY;
+              }
+              strings.add(new int[] {r});
+            }
+          }
+          return strings.isEmpty() ? null : new Set(strings, true);
+        }
+      case CAPTURE:
+        return prefixSet(re.subs[0]);
+      case PLUS:
+        {
+          Set set = prefixSet(re.subs[0]);
+          return set == null ? null : new Set(set.strings, false);
+        }
+      case QUEST:
+        {
+          Set set = prefixSet(re.subs[0]);
+          return set == null ? EMPTY : union(set, EMPTY);
+        }
+      case REPEAT:
+        {
+          if (re.min == 0) {
+            return ANY;
+          }
+          Set set = prefixSet(re.subs[0]);
+          return set == null ? null : new Set(set.strings, false);
+        }
+      case CONCAT:
+        {
+          Set set = EMPTY;
+          for (Regexp sub : re.subs) {
+            Set s = prefixSet(sub);
+            if (s == null) {
+              return null;
+            }
+            Set next = concat(set, s);
+            if (next == null) {
+              // Too many strings; the ones so far still begin every match.
+              return new Set(set.strings, false);
+            }
+            set = next;
+            if (!set.exact) {
+              break;
+            }
+          }
+          return set;
+        }
+      case ALTERNATE:
+        {
+          Set set = null;
+          for (Regexp sub : re.subs) {
+            Set s = prefixSet(sub);
+            if (s != null) {
+              set = set == null ? s : union(set, s);
+            }
+          }
+          return set;
+        }
+      default:
+        // STAR, ANY_CHAR, ANY_CHAR_NOT_NL.
+        return ANY;
+    }
+  }
+
+  // runes() returns the set of runes equal to |r| under the parser flags.
+  private static Set runes(int r, int flags) {
+    List<int[]> strings = single(new int[] {r});
+    if ((flags & RE2.FOLD_CASE) != 0) {
+      for (int f = Unicode.simpleFold(r); f != r; f = Unicode.simpleFold(f)) {
+        strings.add(new int[] {f});
+      }
+    }
+    return new Set(strings, true);
+  }
+
+  // concat() returns the strings of |a| (which must be exact) followed by
+  // those of |b|, or null if there would be too many.
+  private static Set concat(Set a, Set b) {
+    if (a.strings.size() * b.strings.size() > MAX_STRINGS) {
+      return null;
+    }
+    List<int[]> strings = new ArrayList<int[]>();
+    for (int[] x : a.strings) {
+      for (int[] y : b.strings) {
+        strings.add(concat(x, y));
+      }
+    }
+    return new Set(strings, b.exact);
+  }
+
+  // union() returns the strings of |a| and |b|, or ANY if there would be
+  // too many.
+  private static Set union(Set a, Set b) {
+    if (a.strings.size() + b.strings.size() > MAX_STRINGS) {
+      return ANY;
+    }
+    List<int[]> strings = new ArrayList<int[]>(a.strings);
+    strings.addAll(b.strings);
+    return new Set(strings, a.exact && b.exact);
+  }
+
+  // required() returns the longest literal string that every match of
+  // |re| contains, or null if none is known.  Case-folded literals do not
+  // count: the string must occur exactly.
+  static int[] required(Regexp re) {
+    int[] s = exact(re);
+    if (s != null) {
+      return s.length == 0 ? null : s;
+    }
+    switch (re.op) {
+      case CAPTURE:
+      case PLUS:
+        return required(re.subs[0]);
+      case REPEAT:
+        return re.min > 0 ? required(re.subs[0]) : null;
+      case CONCAT:
+        {
+          // Runs of adjacent exact subexpressions form one literal.
+          int[] best = null;
+          int[] run = Utils.EMPTY_INTS;
+          for (Regexp sub : re.subs) {
+            int[] e = exact(sub);
+            if (e != null) {
+              run = concat(run, e);
+              continue;
+            }
+            best = longer(best, run);
+            best = longer(best, required(sub));
+            run = Utils.EMPTY_INTS;
+          }
+          best = longer(best, run);
+          return best == null || best.length == 0 ? null : best;
+        }
+      default:
+        return null;
+    }
+  }
+
+  // exact() returns the only string that |re| matches, or null if it
+  // matches more than one.
+  private static int[] exact(Regexp re) {
+    switch (re.op) {
+      case EMPTY_MATCH:
+      case BEGIN_LINE:
+      case END_LINE:
+      case BEGIN_TEXT:
+      case END_TEXT:
+      case WORD_BOUNDARY:
+      case NO_WORD_BOUNDARY:
+        return Utils.EMPTY_INTS;
+      case LITERAL:
+        return (re.flags & RE2.FOLD_CASE) != 0 ? null : re.runes;
+      case CAPTURE:
+        return exact(re.subs[0]);
+      case CONCAT:
+        {
+          int[] s = Utils.EMPTY_INTS;
+          for (Regexp sub : re.subs) {
+            int[] e = exact(sub);
+            if (e == null) {
+              return null;
+            }
+            s = concat(s, e);
+          }
+          return s;
+        }
+      default:
+        return null;
+    }
+  }
+
+  private static int[] concat(int[] x, int[] y) {
+    int[] s = Arrays.copyOf(x, x.length + y.length);
+    System.arraycopy(y, 0, s, x.length, y.length);
+    return s;
+  }
+
+  private static int[] longer(int[] x, int[] y) {
+    return x == null || y != null && y.length > x.length ? y : x;
+  }
+
+  // maxLength() returns the most runes that a match of |re| can span, or
+  // -1 if there is no bound or it exceeds MAX_LENGTH.
+  static int maxLength(Regexp re) {
+    int n = 0;
+    switch (re.op) {
+      case NO_MATCH:
+      case EMPTY_MATCH:
+      case BEGIN_LINE:
+      case END_LINE:
+      case BEGIN_TEXT:
+      case END_TEXT:
+      case WORD_BOUNDARY:
+      case NO_WORD_BOUNDARY:
+        break;
+      case LITERAL:
+        n = re.runes.length;
+        break;
+      case CHAR_CLASS:
+      case ANY_CHAR:
+      case ANY_CHAR_NOT_NL:
+        n = 1;
+        break;
+      case CAPTURE:
+      case QUEST:
+        n = maxLength(re.subs[0]);
+        break;
+      case STAR:
+      case PLUS:
+        n = maxLength(re.subs[0]) == 0 ? 0 : -1;
+        break;
+      case REPEAT:
+        {
+          int sub = maxLength(re.subs[0]);
+          if (sub != 0) {
+            n = sub < 0 || re.max < 0 ? -1 : Math.min(sub * re.max, MAX_LENGTH + 1);
+          }
+          break;
+        }
+      case CONCAT:
+        for (Regexp sub : re.subs) {
+          int m = maxLength(sub);
+          if (m < 0) {
+            return -1;
+          }
+          n += m;
+        }
+        break;
+      case ALTERNATE:
+        for (Regexp sub : re.subs) {
+          int m = maxLength(sub);
+          if (m < 0) {
+            return -1;
+          }
+          n = Math.max(n, m);
+        }
+        break;
+      default:
+        return -1;
+    }
+    return n > MAX_LENGTH ? -1 : n;
+  }
+}
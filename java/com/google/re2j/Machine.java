@@ -17,29 +17,28 @@ import java.util.Arrays;
 // Called by RE2.doExecute.
 class Machine {
 
-  // A logical thread in the NFA.
-  private static class Thread {
-    Thread(int n) {
-      this.cap = new int[n];
-    }
-
-    int[] cap;
-    Inst inst;
-  }
+  // Initial capacity of the dense arrays of a queue.
+  private static final int INITIAL_QUEUE_SIZE = 16;
 
   // A queue is a 'sparse array' holding pending threads of execution.  See:
   // research.swtch.com/2008/03/using-uninitialized-memory-for-fun-and.html
+  //
+  // Only rune and MATCH instructions are queued, as threads.  A thread is
+  // the slot of its pc in the dense array, and its |ncap| capture
+  // positions are in |caps| at ncap * slot.  The dense arrays start small and grow with the number of
+  // threads, so that the memory of a queue follows the live frontier of
+  // the NFA rather than the size of the program.
   private static class Queue {
 
-    final Thread[] denseThreads; // may contain stale Thread in slots >= size
-    final int[] densePcs; // may contain stale pc in slots >= size
     final int[] sparse; // may contain stale but in-bounds values.
+    int[] densePcs; // may contain stale pc in slots >= size
+    int[] caps = Utils.EMPTY_INTS; // captures of each thread, by slot
     int size; // of prefix of |dense| that is logically populated
 
     Queue(int n) {
       this.sparse = new int[n];
-      this.densePcs = new int[n];
-      this.denseThreads = new Thread[n];
+      int m = Math.min(n, INITIAL_QUEUE_SIZE);
+      this.densePcs = new int[m];
     }
 
     boolean contains(int pc) {
@@ -53,12 +52,25 @@ class Machine {
 
     int add(int pc) {
       int j = size++;
+      if (j == densePcs.length) {
+        int m = Math.min(2 * j, sparse.length);
+        densePcs = Arrays.copyOf(densePcs, m);
+      }
       sparse[pc] = j;
-      denseThreads[j] = null;
       densePcs[j] = pc;
       return j;
     }
 
+    // Makes room for the |ncap| captures of a thread in slot |j|, and
+    // returns their offset in |caps|.
+    int capOffset(int j, int ncap) {
+      int off = j * ncap;
+      if (off + ncap > caps.length) {
+        caps = Arrays.copyOf(caps, Math.max(2 * caps.length, densePcs.length * ncap));
+      }
+      return off;
+    }
+
     void clear() {
       size = 0;
     }
@@ -84,14 +96,14 @@ class Machine {
   // Compiled program.
   private final Prog prog;
 
+  // The precomputed epsilon closures of |prog|, if any, and a walker to
+  // compute the others.
+  private final Closures closures;
+  private Closures.Walker walker;
+
   // Two queues for runq, nextq.
   private final Queue q0, q1;
 
-  // pool of available threads
-  // Really a stack:
-  private Thread[] pool = new Thread[10];
-  private int poolSize;
-
   // Whether a match was found.
   private boolean matched;
 
@@ -105,6 +117,7 @@ class Machine {
   Machine(RE2 re2) {
     this.prog = re2.prog;
     this.re2 = re2;
+    this.closures = re2.closures;
     this.q0 = new Queue(prog.numInst());
     this.q1 = new Queue(prog.numInst());
     this.matchcap = new int[prog.numCap < 2 ? 2 : prog.numCap];
@@ -112,31 +125,12 @@ class Machine {
 
   // init() reinitializes an existing Machine for re-use on a new input.
   void init(int ncap) {
-    // length change need new arrays
     this.ncap = ncap;
     if (ncap > matchcap.length) {
-      initNewCap(ncap);
-    } else {
-      resetCap(ncap);
+      this.matchcap = new int[ncap];
     }
   }
 
-  private void resetCap(int ncap) {
-    // same size just reset to 0
-    for (int i = 0; i < poolSize; i++) {
-      Thread t = pool[i];
-      Arrays.fill(t.cap, 0, ncap, 0);
-    }
-  }
-
-  private void initNewCap(int ncap) {
-    for (int i = 0; i < poolSize; i++) {
-      Thread t = pool[i];
-      t.cap = new int[ncap];
-    }
-    this.matchcap = new int[ncap];
-  }
-
   int[] submatches() {
     if (ncap == 0) {
       return Utils.EMPTY_INTS;
@@ -144,51 +138,6 @@ class Machine {
     return Arrays.copyOf(matchcap, ncap);
   }
 
-  // alloc() allocates a new thread with the given instruction.
-  // It uses the free pool if possible.
-  private Thread alloc(Inst inst) {
-    Thread t;
-    if (poolSize > 0) {
-      poolSize--;
-      t = pool[poolSize];
-    } else {
-      t = new Thread(matchcap.length);
-    }
-    t.inst = inst;
-    return t;
-  }
-
-  // Frees all threads on the thread queue, returning them to the free pool.
-  private void free(Queue queue) {
-    free(queue, 0);
-  }
-
-  private void free(Queue queue, int from) {
-    int numberOfThread = queue.size - from;
-    int requiredPoolLength = poolSize + numberOfThread;
-    if (pool.length < requiredPoolLength) {
-      pool = Arrays.copyOf(pool, Math.max(pool.length * 2, requiredPoolLength));
-    }
-
-    for (int i = from; i < queue.size; ++i) {
-      Thread t = queue.denseThreads[i];
-      if (t != null) {
-        pool[poolSize] = t;
-        poolSize++;
-      }
-    }
-    queue.clear();
-  }
-
-  // free() returns t to the free pool.
-  private void free(Thread t) {
-    if (pool.length <= poolSize) {
-      pool = Arrays.copyOf(pool, pool.length * 2);
-    }
-    pool[poolSize] = t;
-    poolSize++;
-  }
-
   // match() runs the machine over the input |in| starting at |pos| with the
   // RE2 Anchor |anchor|.
   // It reports whether a match was found.
@@ -214,12 +163,7 @@ class Machine {
       rune1 = r >> 3;
       width1 = r & 7;
     }
-    int flag; // bitmask of EMPTY_* flags
-    if (pos == 0) {
-      flag = Utils.emptyOpContext(-1, rune);
-    } else {
-      flag = in.context(pos);
-    }
+    int flag = in.context(pos); // bitmask of EMPTY_* flags
     for (; ; ) {
 
       if (runq.isEmpty()) {
@@ -231,7 +175,7 @@ class Machine {
           // Have match; finished exploring alternatives.
           break;
         }
-        if (!re2.prefix.isEmpty() && rune1 != re2.prefixRune && in.canCheckPrefix()) {
+        if (re2.hasPrefix() && rune1 != re2.prefixRune && in.canCheckPrefix()) {
           // Match requires literal prefix; fast search for it.
           int advance = in.index(re2, pos);
           if (advance < 0) {
@@ -244,6 +188,7 @@ class Machine {
           r = in.step(pos + width);
           rune1 = r >> 3;
           width1 = r & 7;
+          flag = in.context(pos);
         }
       }
       if (!matched && (pos == 0 || anchor == RE2.UNANCHORED)) {
@@ -252,7 +197,7 @@ class Machine {
         if (ncap > 0) {
           matchcap[0] = pos;
         }
-        add(runq, prog.start, pos, matchcap, flag, null);
+        add(runq, prog.start, pos, matchcap, 0, flag);
       }
       int nextPos = pos + width;
       flag = in.context(nextPos);
@@ -277,7 +222,7 @@ class Machine {
       runq = nextq;
       nextq = tmpq;
     }
-    free(nextq);
+    nextq.clear();
     return matched;
   }
 
@@ -298,18 +243,17 @@ class Machine {
       int anchor,
       boolean atEnd) {
     boolean longest = re2.longest;
+    RuneClasses classes = re2.classes;
+    int[] ops = prog.ops;
+    int cls = -2; // class of |c|, looked up on first use
     for (int j = 0; j < runq.size; ++j) {
-      Thread t = runq.denseThreads[j];
-      if (t == null) {
+      int pc = runq.densePcs[j];
+      int off = j * ncap; // of the captures of this thread in runq.caps
+      if (longest && matched && ncap > 0 && matchcap[0] < runq.caps[off]) {
         continue;
       }
-      if (longest && matched && ncap > 0 && matchcap[0] < t.cap[0]) {
-        free(t);
-        continue;
-      }
-      Inst i = t.inst;
       boolean add = false;
-      switch (i.op) {
+      switch (ops[pc]) {
         case Inst.MATCH:
           if (anchor == RE2.ANCHOR_BOTH && !atEnd) {
             // Don't match if we anchor at both start and end and those
@@ -317,21 +261,29 @@ class Machine {
             break;
           }
           if (ncap > 0 && (!longest || !matched || matchcap[1] < pos)) {
-            t.cap[1] = pos;
-            System.arraycopy(t.cap, 0, matchcap, 0, ncap);
+            runq.caps[off + 1] = pos;
+            System.arraycopy(runq.caps, off, matchcap, 0, ncap);
           }
           if (!longest) {
-            free(runq, j + 1);
+            // First-match mode: cut off all lower-priority threads.
+            runq.clear();
           }
           matched = true;
           break;
 
         case Inst.RUNE:
-          add = i.matchRune(c);
+          if (classes == null) {
+            add = prog.matchRune(pc, c);
+          } else {
+            if (cls == -2) {
+              cls = classes.classOf(c);
+            }
+            add = prog.matchClass(pc, cls);
+          }
           break;
 
         case Inst.RUNE1:
-          add = c == i.runes[0];
+          add = c == prog.runePool[prog.runeStart[pc]];
           break;
 
         case Inst.RUNE_ANY:
@@ -346,81 +298,49 @@ class Machine {
           throw new IllegalStateException("bad inst");
       }
       if (add) {
-        t = add(nextq, i.out, nextPos, t.cap, nextCond, t);
-      }
-      if (t != null) {
-        free(t);
-        runq.denseThreads[j] = null;
+        add(nextq, prog.outs[pc], nextPos, runq.caps, off, nextCond);
       }
     }
     runq.clear();
   }
 
-  // add() adds an entry to |q| for |pc|, unless the |q| already has such an
-  // entry.  It also recursively adds an entry for all instructions reachable
-  // from |pc| by following empty-width conditions satisfied by |cond|.  |pos|
-  // gives the current position in the input.  |cond| is a bitmask of EMPTY_*
-  // flags.
-  private Thread add(Queue q, int pc, int pos, int[] cap, int cond, Thread t) {
+  // add() adds to |q| the threads of the epsilon closure of |pc| under the
+  // empty-width conditions |cond| (a bitmask of EMPTY_* flags) that |q|
+  // does not already have, in priority order.  |pos| gives the current
+  // position in the input.  The captures of the thread being added are
+  // cap[off:off+ncap]; each new thread gets a copy of them in the slab of
+  // |q|, with the slots captured on its way set to |pos|.
+  private void add(Queue q, int pc, int pos, int[] cap, int off, int cond) {
     if (pc == 0) {
-      return t;
+      return;
     }
-    if (q.contains(pc)) {
-      return t;
+    int[] list = closures != null ? closures.get(pc, cond) : null;
+    if (list == null) {
+      if (walker == null) {
+        walker = new Closures.Walker(prog);
+      }
+      list = walker.closure(pc, cond);
     }
-    int d = q.add(pc);
-    Inst inst = prog.inst[pc];
-    switch (inst.op) {
-      default:
-        throw new IllegalStateException("unhandled");
-
-      case Inst.FAIL:
-        break; // nothing
-
-      case Inst.ALT:
-      case Inst.ALT_MATCH:
-        t = add(q, inst.out, pos, cap, cond, t);
-        t = add(q, inst.arg, pos, cap, cond, t);
-        break;
-
-      case Inst.EMPTY_WIDTH:
-        if ((inst.arg & ~cond) == 0) {
-          t = add(q, inst.out, pos, cap, cond, t);
-        }
-        break;
-
-      case Inst.NOP:
-        t = add(q, inst.out, pos, cap, cond, t);
-        break;
-
-      case Inst.CAPTURE:
-        if (inst.arg < ncap) {
-          int opos = cap[inst.arg];
-          cap[inst.arg] = pos;
-          add(q, inst.out, pos, cap, cond, null);
-          cap[inst.arg] = opos;
-        } else {
-          t = add(q, inst.out, pos, cap, cond, t);
-        }
-        break;
-
-      case Inst.MATCH:
-      case Inst.RUNE:
-      case Inst.RUNE1:
-      case Inst.RUNE_ANY:
-      case Inst.RUNE_ANY_NOT_NL:
-        if (t == null) {
-          t = alloc(inst);
-        } else {
-          t.inst = inst;
-        }
-        if (ncap > 0 && t.cap != cap) {
-          System.arraycopy(cap, 0, t.cap, 0, ncap);
+    for (int i = 0; i < list.length; ) {
+      int leaf = list[i++];
+      int k = list[i++];
+      if (q.contains(leaf)) {
+        i += k;
+        continue;
+      }
+      int d = q.add(leaf);
+      if (ncap > 0) {
+        int to = q.capOffset(d, ncap);
+        System.arraycopy(cap, off, q.caps, to, ncap);
+        for (; k > 0; k--) {
+          int arg = list[i++];
+          if (arg < ncap) {
+            q.caps[to + arg] = pos;
+          }
         }
-        q.denseThreads[d] = t;
-        t = null;
-        break;
+      } else {
+        i += k;
+      }
     }
-    return t;
   }
 }
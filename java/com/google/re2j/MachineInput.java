@@ -43,19 +43,62 @@ abstract class MachineInput {
   // << 3 | 0.
   abstract int step(int pos);
 
+  // Reports whether this is UTF-8 text that stepByte() reads.
+  boolean isUTF8() {
+    return false;
+  }
+
+  // Returns the byte at |pos| in the same form as step(), as if it were a
+  // rune of width 1, or EOF.  Only for UTF-8 input.
+  int stepByte(int pos) {
+    throw new UnsupportedOperationException();
+  }
+
   // can we look ahead without losing info?
   abstract boolean canCheckPrefix();
 
   // Returns the index relative to |pos| at which |re2.prefix| is found
-  // in this input stream, or a negative value if not found.
+  // in this input stream, or a negative value if not found.  If instead
+  // |re2.prefixes| is set, returns a relative index at or before the first
+  // occurrence of any of those strings, and if |re2.firstSet| is set, the
+  // relative index of the first rune in it.  UTF-16 input looks first for
+  // |re2.foldSearch|, if set.
   abstract int index(RE2 re2, int pos);
 
+  // Returns the index relative to |pos| just past the first occurrence of
+  // |re2.required| in this input stream, or a negative value if not found.
+  abstract int indexRequired(RE2 re2, int pos);
+
   // Returns a bitmask of EMPTY_* flags.
   abstract int context(int pos);
 
   // Returns the end position in the same units as step().
   abstract int endPos();
 
+  // Returns the rune that ends at the specified index, in the same form
+  // as step(), or EOF if there is none.
+  abstract int stepBack(int pos);
+
+  // Returns an input that reads this one backwards from endPos() down to
+  // |pos|: position i of the result is position endPos() - i of this
+  // input.  Its context() reports the beginning and end of line and text
+  // of the reversed text, so that a program compiled by
+  // Compiler.compileReversed() runs on it as its forward twin would run
+  // on this input.
+  MachineInput reverse(int pos) {
+    return new ReverseInput(this, pos, endPos());
+  }
+
+  // Returns an input like reverse(pos) that begins at |end| instead of
+  // endPos(); context() still sees the text after |end|.
+  MachineInput reverse(int pos, int end) {
+    return new ReverseInput(this, pos, end);
+  }
+
+  // Runs |table| over this input from |pos|.  Returns DFA.FAILED if the
+  // table does not apply, which it does only to a search of the whole text.
+  abstract int search(DFATable table, int pos, boolean anyMatch);
+
   //// Implementations
 
   // An implementation of MachineInput for UTF-8 byte arrays.
@@ -82,6 +125,17 @@ abstract class MachineInput {
       this.end = end;
     }
 
+    @Override
+    boolean isUTF8() {
+      return true;
+    }
+
+    @Override
+    int stepByte(int i) {
+      i += start;
+      return i < end ? (b[i] & 0xff) << 3 | 1 : EOF;
+    }
+
     @Override
     int step(int i) {
       i += start;
@@ -133,18 +187,31 @@ abstract class MachineInput {
 
     @Override
     int index(RE2 re2, int pos) {
+      if (re2.prefixes != null) {
+        return re2.prefixes.index(this, pos);
+      }
+      if (re2.firstSet != null) {
+        return re2.firstSet.index(b, pos + start, end);
+      }
       pos += start;
-      int i = Utils.indexOf(b, re2.prefixUTF8, pos);
+      int i = re2.prefixSearch.indexOf(b, pos, end);
       return i < 0 ? i : i - pos;
     }
 
+    @Override
+    int indexRequired(RE2 re2, int pos) {
+      pos += start;
+      int i = re2.requiredSearch.indexOf(b, pos, end);
+      return i < 0 ? i : i + re2.requiredSearch.lengthUTF8() - pos;
+    }
+
     @Override
     int context(int pos) {
       pos += this.start;
       int r1 = -1;
       if (pos > this.start && pos <= this.end) {
         int start = pos - 1;
-        r1 = b[start--];
+        r1 = b[start--] & 0xff; // zero extend
         if (r1 >= 0x80) { // decode UTF-8
           // Find start, up to 4 bytes earlier.
           int lim = pos - 4;
@@ -157,16 +224,41 @@ abstract class MachineInput {
           if (start < this.start) {
             start = this.start;
           }
-          r1 = step(start) >> 3;
+          r1 = step(start - this.start) >> 3;
         }
       }
-      int r2 = pos < this.end ? (step(pos) >> 3) : -1;
+      int r2 = pos < this.end ? (step(pos - this.start) >> 3) : -1;
       return Utils.emptyOpContext(r1, r2);
     }
 
     @Override
     int endPos() {
-      return end;
+      return end - start;
+    }
+
+    @Override
+    int stepBack(int pos) {
+      pos += start;
+      if (pos <= start || pos > end) {
+        return EOF;
+      }
+      // Find the first byte of the rune, up to 4 bytes earlier.
+      int i = pos - 1;
+      int lim = Math.max(pos - 4, start);
+      while (i > lim && (b[i] & 0xC0) == 0x80) { // 10xxxxxx
+        i--;
+      }
+      int r = step(i - start);
+      if (r == EOF || i + (r & 7) != pos) {
+        // Not a complete rune; take the last byte alone.
+        return (b[pos - 1] & 0xff) << 3 | 1;
+      }
+      return r;
+    }
+
+    @Override
+    int search(DFATable table, int pos, boolean anyMatch) {
+      return pos == 0 ? table.search(b, start, end, anyMatch) : DFA.FAILED;
     }
   }
 
@@ -200,11 +292,29 @@ abstract class MachineInput {
 
     @Override
     int index(RE2 re2, int pos) {
+      if (re2.foldSearch != null) {
+        pos += start;
+        int i = re2.foldSearch.indexOf(str, pos, end);
+        return i < 0 ? i : i - pos;
+      }
+      if (re2.prefixes != null) {
+        return re2.prefixes.index(this, pos);
+      }
+      if (re2.firstSet != null) {
+        return re2.firstSet.index(str, pos + start, end);
+      }
       pos += start;
-      int i = indexOf(str, re2.prefix, pos);
+      int i = re2.prefixSearch.indexOf(str, pos, end);
       return i < 0 ? i : i - pos;
     }
 
+    @Override
+    int indexRequired(RE2 re2, int pos) {
+      pos += start;
+      int i = re2.requiredSearch.indexOf(str, pos, end);
+      return i < 0 ? i : i + re2.requiredSearch.length() - pos;
+    }
+
     @Override
     int context(int pos) {
       pos += start;
@@ -215,53 +325,100 @@ abstract class MachineInput {
 
     @Override
     int endPos() {
-      return end;
+      return end - start;
     }
 
-    private int indexOf(CharSequence hayStack, String needle, int pos) {
-      if (hayStack instanceof String) {
-        return ((String) hayStack).indexOf(needle, pos);
+    @Override
+    int stepBack(int pos) {
+      pos += start;
+      if (pos <= start || pos > end) {
+        return EOF;
       }
-      if (hayStack instanceof StringBuilder) {
-        return ((StringBuilder) hayStack).indexOf(needle, pos);
+      int rune = Character.codePointBefore(str, pos);
+      int width = Character.charCount(rune);
+      if (pos - width < start) {
+        // Half of a surrogate pair straddles the start.
+        return str.charAt(pos - 1) << 3 | 1;
       }
-      return indexOfFallback(hayStack, needle, pos);
+      return rune << 3 | width;
     }
 
-    // Modified version of {@link String#indexOf(String) that allows a CharSequence.
-    private int indexOfFallback(CharSequence hayStack, String needle, int fromIndex) {
-      if (fromIndex >= hayStack.length()) {
-        return needle.isEmpty() ? 0 : -1;
+    @Override
+    int search(DFATable table, int pos, boolean anyMatch) {
+      if (pos != 0 || start != 0 || end != str.length()) {
+        return DFA.FAILED;
       }
-      if (fromIndex < 0) {
-        fromIndex = 0;
+      return table.search(str, 0, end, anyMatch);
+    }
+  }
+
+  // A view of another MachineInput read backwards.  |pos| and |width| are
+  // in the units of the underlying input, counted from its end.
+  private static class ReverseInput extends MachineInput {
+    final MachineInput in;
+    final int start; // the position in |in| at which this input ends
+    final int end; // the position in |in| at which this input begins
+
+    ReverseInput(MachineInput in, int start, int end) {
+      this.in = in;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    int step(int pos) {
+      int i = end - pos;
+      if (i <= start) {
+        return EOF;
       }
-      if (needle.isEmpty()) {
-        return fromIndex;
+      int r = in.stepBack(i);
+      if (i - (r & 7) < start) {
+        // The rune straddles |start|: read its last unit alone, as
+        // stepBack() does at the start of its input.
+        int c = r >> 3;
+        return (in.isUTF8() ? 0x80 | (c & 0x3F) : 0xDC00 | (c & 0x3FF)) << 3 | 1;
       }
+      return r;
+    }
 
-      char first = needle.charAt(0);
-      int max = hayStack.length() - needle.length();
+    @Override
+    boolean canCheckPrefix() {
+      return false;
+    }
 
-      for (int i = fromIndex; i <= max; i++) {
-        /* Look for first character. */
-        if (hayStack.charAt(i) != first) {
-          while (++i <= max && hayStack.charAt(i) != first) {}
-        }
+    @Override
+    int index(RE2 re2, int pos) {
+      throw new UnsupportedOperationException();
+    }
 
-        /* Found first character, now look at the rest of v2 */
-        if (i <= max) {
-          int j = i + 1;
-          int end = j + needle.length() - 1;
-          for (int k = 1; j < end && hayStack.charAt(j) == needle.charAt(k); j++, k++) {}
+    @Override
+    int indexRequired(RE2 re2, int pos) {
+      throw new UnsupportedOperationException();
+    }
 
-          if (j == end) {
-            /* Found whole string. */
-            return i;
-          }
-        }
-      }
-      return -1;
+    @Override
+    int context(int pos) {
+      // Swap each BEGIN_* bit with the END_* bit above it; the word
+      // boundary bits are the same in either direction.
+      int flag = in.context(end - pos);
+      int begins = Utils.EMPTY_BEGIN_LINE | Utils.EMPTY_BEGIN_TEXT;
+      int ends = Utils.EMPTY_END_LINE | Utils.EMPTY_END_TEXT;
+      return flag & ~(begins | ends) | (flag & begins) << 1 | (flag & ends) >> 1;
+    }
+
+    @Override
+    int endPos() {
+      return end - start;
+    }
+
+    @Override
+    int stepBack(int pos) {
+      return pos <= 0 ? EOF : in.step(end - pos);
+    }
+
+    @Override
+    int search(DFATable table, int pos, boolean anyMatch) {
+      return DFA.FAILED;
     }
   }
 }
@@ -259,6 +259,10 @@ public final class Matcher {
     if (end > inputLength) {
       end = inputLength;
     }
+    if (anchorFlag == RE2.ANCHOR_BOTH) {
+      // The match must end exactly where it did.
+      end = groups[1];
+    }
 
     boolean ok =
         pattern.re2().match(inputSequence, groups[0], end, anchorFlag, groups, 1 + groupCount);
@@ -324,10 +328,39 @@ public final class Matcher {
     return genMatch(start, 0);
   }
 
+  /**
+   * Resets this matcher and then finds the last match of the pattern in the input: among the matches
+   * that end furthest right, the one that starts furthest left. If there is a match, {@code
+   * findLast} sets the match state to describe it.
+   *
+   * <p>
+   * The search runs backwards from the end of the input, so it only examines the text near the
+   * last match, however long the input is. The last match need not be one that repeated calls to
+   * {@link #find()} would report, since those never overlap an earlier match.
+   *
+   * @return true if it finds a match
+   */
+  public boolean findLast() {
+    reset();
+    int[] m = pattern.re2().matchLast(inputSequence, inputLength);
+    if (m == null) {
+      return false;
+    }
+    groups[0] = m[0];
+    groups[1] = m[1];
+    hasMatch = true;
+    hasGroups = false;
+    // The submatches are those of the match anchored at both of its ends.
+    anchorFlag = RE2.ANCHOR_BOTH;
+    return true;
+  }
+
   /** Helper: does match starting at start, with RE2 anchor flag. */
   private boolean genMatch(int startByte, int anchor) {
     // TODO(rsc): Is matches/lookingAt supposed to reset the append or input positions?
     // From the JDK docs, looks like no.
+    // Only the bounds are found here, which needs no submatch tracking;
+    // loadGroup() runs a capturing engine over the match when asked.
     boolean ok = pattern.re2().match(inputSequence, startByte, inputLength, anchor, groups, 1);
     if (!ok) {
       return false;
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+// Original Go source here:
+// https://github.com/golang/go/blob/master/src/regexp/onepass.go
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// "One-pass" regexp execution.
+// Some regexps can be analyzed to determine that they never need
+// backtracking: they are guaranteed to run in one pass over the string
+// without bothering to save all the usual NFA state.
+// Detect those and execute them more quickly.
+//
+// A OnePass is a copy of a Prog in which every ALT instruction has been
+// turned into a dispatch on the next input rune.  It is immutable, so it
+// can be shared by concurrent matches.
+//
+// Built by RE2.compileImpl, called by RE2.doExecute.
+final class OnePass {
+
+  // Programs this long are not worth analysing.
+  private static final int MAX_INST = 1000;
+
+  private static final int[] ANY_RUNE = {0, Unicode.MAX_RUNE};
+  private static final int[] ANY_RUNE_NOT_NL = {0, '\n' - 1, '\n' + 1, Unicode.MAX_RUNE};
+
+  private final Prog prog; // the flattened original, for the runes of each pc
+  private final Inst[] inst;
+  private final int start;
+
+  // For each ALT and ALT_MATCH instruction, the rune ranges (as [lo,hi]
+  // pairs) that lead into either branch, and the branch taken for each
+  // pair.  Null for other instructions.
+  private final int[][] altRunes;
+  private final int[][] altNext;
+
+  private OnePass(Prog prog, Inst[] inst, int start) {
+    this.prog = prog;
+    this.inst = inst;
+    this.start = start;
+    this.altRunes = new int[inst.length][];
+    this.altNext = new int[inst.length][];
+  }
+
+  // compile() returns a OnePass for |prog| if it can be recharacterized as
+  // a one-pass program, or null if it cannot.  For a one-pass program, the
+  // fundamental condition that must be true is: at any ALT, there must be
+  // no ambiguity about what branch to take.
+  static OnePass compile(Prog prog) {
+    if (prog.start == 0) {
+      return null;
+    }
+    int n = prog.numInst();
+    if (n >= MAX_INST) {
+      return null;
+    }
+    // One-pass regexps are anchored.
+    Inst i = prog.inst[prog.start];
+    if (i.op != Inst.EMPTY_WIDTH || (i.arg & Utils.EMPTY_BEGIN_TEXT) == 0) {
+      return null;
+    }
+    // Every instruction leading to MATCH must be EMPTY_WIDTH with END_TEXT.
+    for (int pc = 0; pc < n; pc++) {
+      i = prog.inst[pc];
+      int opOut = prog.inst[i.out].op;
+      switch (i.op) {
+        default:
+          if (opOut == Inst.MATCH) {
+            return null;
+          }
+          break;
+        case Inst.ALT:
+        case Inst.ALT_MATCH:
+          if (opOut == Inst.MATCH || prog.inst[i.arg].op == Inst.MATCH) {
+            return null;
+          }
+          break;
+        case Inst.EMPTY_WIDTH:
+          if (opOut == Inst.MATCH && (i.arg & Utils.EMPTY_END_TEXT) == 0) {
+            return null;
+          }
+          break;
+      }
+    }
+    // Create a slightly optimized copy of the original Prog that cleans up
+    // some Prog idioms that block valid one-pass programs, then check for
+    // ambiguity at each ALT.
+    OnePass p = copy(prog);
+    return p.analyze() ? p : null;
+  }
+
+  // copy() creates a copy of the instructions of |prog|, as we'll be
+  // modifying them.  Only the ALTs change, so the rune instructions are
+  // still tested against |prog|.
+  private static OnePass copy(Prog prog) {
+    int n = prog.numInst();
+    Inst[] inst = new Inst[n];
+    for (int pc = 0; pc < n; pc++) {
+      Inst orig = prog.inst[pc];
+      Inst i = new Inst(orig.op);
+      i.out = orig.out;
+      i.arg = orig.arg;
+      inst[pc] = i;
+    }
+
+    // Rewrite one or more common Prog constructs that enable some otherwise
+    // non-one-pass Progs to be one-pass.  A:BC (for example) means an ALT at
+    // pc A, that points to pcs B & C.
+    // A:BC + B:DA => A:BC + B:DC
+    // A:BC + B:DC => A:DC + B:DC
+    for (int pc = 0; pc < n; pc++) {
+      Inst a = inst[pc];
+      if (!isAlt(a)) {
+        continue;
+      }
+      // A:Bx + B:Ay; make sure one target is another ALT.
+      boolean altIsOut = false; // which leg of A leads to the ALT B
+      int aAlt = a.arg;
+      int aOther = a.out;
+      if (!isAlt(inst[aAlt])) {
+        altIsOut = true;
+        aAlt = a.out;
+        aOther = a.arg;
+        if (!isAlt(inst[aAlt])) {
+          continue;
+        }
+      }
+      // Analyzing both legs pointing to ALTs is for another day.
+      if (isAlt(inst[aOther])) {
+        continue;
+      }
+      Inst b = inst[aAlt];
+      // Simple empty transition loop.
+      // A:BC + B:DA => A:BC + B:DC
+      boolean bAltIsOut = true;
+      if (b.out == pc) {
+        b.out = aOther;
+      } else if (b.arg == pc) {
+        bAltIsOut = false;
+        b.arg = aOther;
+      }
+      // Empty transition to common target.
+      // A:BC + B:DC => A:DC + B:DC
+      if (aOther == (bAltIsOut ? b.out : b.arg)) {
+        int bOther = bAltIsOut ? b.arg : b.out;
+        if (altIsOut) {
+          a.out = bOther;
+        } else {
+          a.arg = bOther;
+        }
+      }
+    }
+    return new OnePass(prog, inst, prog.start);
+  }
+
+  private static boolean isAlt(Inst i) {
+    return i.op == Inst.ALT || i.op == Inst.ALT_MATCH;
+  }
+
+  // Working state of analyze() and check().
+  private int[] queue; // pcs reached by consuming a rune, to be checked
+  private int queueSize;
+  private boolean[] queued;
+  private int[] visited; // pc -> the generation of check() that saw it
+  private int generation;
+  private int[][] runes; // pc -> the rune ranges that lead through pc
+  private boolean[] matches; // pc -> whether MATCH is reached with no input
+
+  // analyze() checks that the paths from ALT instructions are unambiguous,
+  // and builds the rune dispatch tables of the ALTs.
+  private boolean analyze() {
+    int n = inst.length;
+    queue = new int[n];
+    queued = new boolean[n];
+    visited = new int[n];
+    runes = new int[n][];
+    matches = new boolean[n];
+    queued[start] = true;
+    queue[queueSize++] = start;
+    boolean ok = true;
+    for (int q = 0; q < queueSize && ok; q++) {
+      generation++;
+      ok = check(queue[q]);
+    }
+    queue = null;
+    queued = null;
+    visited = null;
+    runes = null;
+    matches = null;
+    return ok;
+  }
+
+  private void enqueue(int pc) {
+    if (!queued[pc]) {
+      queued[pc] = true;
+      queue[queueSize++] = pc;
+    }
+  }
+
+  // check() checks the instructions reachable from |pc| without consuming
+  // input, computing the runes that lead through each and whether each
+  // leads to MATCH.  It is recursive to the size of the program.
+  private boolean check(int pc) {
+    if (visited[pc] == generation) {
+      return true;
+    }
+    visited[pc] = generation;
+    Inst i = inst[pc];
+    switch (i.op) {
+      case Inst.ALT:
+      case Inst.ALT_MATCH:
+        {
+          if (!check(i.out) || !check(i.arg)) {
+            return false;
+          }
+          // Check no-input paths to MATCH.
+          boolean matchOut = matches[i.out];
+          boolean matchArg = matches[i.arg];
+          if (matchOut && matchArg) {
+            return false;
+          }
+          // Match on empty goes in i.out.
+          if (matchArg) {
+            int t = i.out;
+            i.out = i.arg;
+            i.arg = t;
+            matchOut = true;
+          }
+          if (matchOut) {
+            matches[pc] = true;
+            i.op = Inst.ALT_MATCH;
+          }
+          // Build a dispatch operator from the two legs.
+          if (!merge(pc, runesOf(i.out), runesOf(i.arg), i.out, i.arg)) {
+            return false;
+          }
+          return true;
+        }
+
+      case Inst.CAPTURE:
+      case Inst.NOP:
+      case Inst.EMPTY_WIDTH:
+        {
+          boolean ok = check(i.out);
+          matches[pc] = matches[i.out];
+          // Pass matching runes back through these no-ops.
+          runes[pc] = runes[i.out];
+          return ok;
+        }
+
+      case Inst.MATCH:
+      case Inst.FAIL:
+        matches[pc] = i.op == Inst.MATCH;
+        return true;
+
+      case Inst.RUNE:
+      case Inst.RUNE1:
+      case Inst.RUNE_ANY:
+      case Inst.RUNE_ANY_NOT_NL:
+        matches[pc] = false;
+        if (runes[pc] != null) {
+          return true;
+        }
+        enqueue(i.out);
+        runes[pc] = runeRanges(pc);
+        return true;
+
+      default:
+        throw new IllegalStateException("bad inst");
+    }
+  }
+
+  private int[] runesOf(int pc) {
+    return runes[pc] != null ? runes[pc] : Utils.EMPTY_INTS;
+  }
+
+  // runeRanges() returns the runes matched by the rune instruction at
+  // |pc|, as sorted [lo,hi] pairs.
+  private int[] runeRanges(int pc) {
+    Inst i = prog.getInst(pc);
+    switch (i.op) {
+      case Inst.RUNE_ANY:
+        return ANY_RUNE;
+      case Inst.RUNE_ANY_NOT_NL:
+        return ANY_RUNE_NOT_NL;
+      default:
+        break;
+    }
+    if (i.folds != null) {
+      // A case-folded rune, expanded by the Compiler.
+      return i.folds;
+    }
+    int[] runes = prog.runes(pc);
+    if (runes.length == 1) {
+      return new int[] {runes[0], runes[0]};
+    }
+    return runes;
+  }
+
+  // merge() merges two non-intersecting rune sets into the dispatch table
+  // of the ALT at |pc|: if a rune matches the pair at index i of the merged
+  // set, altNext[pc][i] is the target.  It returns false if the input sets
+  // intersect.  Both inputs must contain ordered, non-intersecting pairs.
+  private boolean merge(int pc, int[] left, int[] right, int leftPC, int rightPC) {
+    if ((left.length & 1) != 0 || (right.length & 1) != 0) {
+      throw new IllegalStateException("merge odd length rune set");
+    }
+    int[] merged = new int[left.length + right.length];
+    int[] next = new int[merged.length / 2];
+    int lx = 0;
+    int rx = 0;
+    int ix = 0;
+    while (lx < left.length || rx < right.length) {
+      int lo;
+      int hi;
+      int target;
+      if (lx >= left.length || (rx < right.length && right[rx] < left[lx])) {
+        lo = right[rx];
+        hi = right[rx + 1];
+        target = rightPC;
+        rx += 2;
+      } else {
+        lo = left[lx];
+        hi = left[lx + 1];
+        target = leftPC;
+        lx += 2;
+      }
+      if (ix > 0 && lo <= merged[ix - 1]) {
+        return false;
+      }
+      merged[ix] = lo;
+      merged[ix + 1] = hi;
+      next[ix / 2] = target;
+      ix += 2;
+    }
+    runes[pc] = merged;
+    altRunes[pc] = merged;
+    altNext[pc] = next;
+    return true;
+  }
+
+  // match() runs the program over the input |in| starting at |pos| with
+  // the RE2 Anchor |anchor|.  It returns the |ncap| submatch positions of
+  // the match, or null if there is none.
+  int[] match(MachineInput in, int pos, int anchor, int ncap) {
+    int[] cap = new int[ncap];
+    Arrays.fill(cap, -1);
+    int startPos = pos;
+    int r = in.step(pos);
+    int rune = r >> 3;
+    int width = r & 7;
+    int pc = start;
+    for (; ; ) {
+      Inst i = inst[pc];
+      switch (i.op) {
+        default:
+          throw new IllegalStateException("bad inst");
+
+        case Inst.MATCH:
+          if (anchor == RE2.ANCHOR_BOTH && pos != in.endPos()) {
+            return null;
+          }
+          if (ncap > 0) {
+            cap[0] = startPos;
+            cap[1] = pos;
+          }
+          return cap;
+
+        case Inst.RUNE:
+          if (!prog.matchRune(pc, rune)) {
+            return null;
+          }
+          break;
+
+        case Inst.RUNE1:
+          if (rune != prog.runePool[prog.runeStart[pc]]) {
+            return null;
+          }
+          break;
+
+        case Inst.RUNE_ANY:
+          break;
+
+        case Inst.RUNE_ANY_NOT_NL:
+          if (rune == '\n') {
+            return null;
+          }
+          break;
+
+        case Inst.ALT:
+        case Inst.ALT_MATCH:
+          // Peek at the input rune to see which branch of the ALT to take.
+          // An ALT_MATCH takes i.out, the path to MATCH, on other runes.
+          {
+            int j = runePos(altRunes[pc], rune);
+            pc = j >= 0 ? altNext[pc][j] : i.op == Inst.ALT_MATCH ? i.out : 0;
+          }
+          continue;
+
+        case Inst.FAIL:
+          return null;
+
+        case Inst.NOP:
+          pc = i.out;
+          continue;
+
+        case Inst.EMPTY_WIDTH:
+          if ((i.arg & ~in.context(pos)) != 0) {
+            return null;
+          }
+          pc = i.out;
+          continue;
+
+        case Inst.CAPTURE:
+          if (i.arg < ncap) {
+            cap[i.arg] = pos;
+          }
+          pc = i.out;
+          continue;
+      }
+      // A rune was consumed.
+      if (width == 0) {
+        return null;
+      }
+      pc = i.out;
+      pos += width;
+      r = in.step(pos);
+      rune = r >> 3;
+      width = r & 7;
+    }
+  }
+
+  // runePos() returns the index of the pair of |runes| that contains |r|,
+  // or -1 if there is none.
+  private static int runePos(int[] runes, int r) {
+    // Linear search for a few pairs.
+    // Should handle ASCII well.
+    if (runes.length <= 8) {
+      for (int j = 0; j < runes.length; j += 2) {
+        if (r < runes[j]) {
+          return -1;
+        }
+        if (r <= runes[j + 1]) {
+          return j / 2;
+        }
+      }
+      return -1;
+    }
+    // Otherwise binary search.
+    for (int lo = 0, hi = runes.length / 2; lo < hi; ) {
+      int m = lo + (hi - lo) / 2;
+      int c = runes[2 * m];
+      if (c <= r) {
+        if (r <= runes[2 * m + 1]) {
+          return m;
+        }
+        lo = m + 1;
+      } else {
+        hi = m;
+      }
+    }
+    return -1;
+  }
+}
@@ -60,10 +60,17 @@ class Parser {
   private Regexp free;
   private int numCap = 0; // number of capturing groups seen
   private final Map<String, Integer> namedGroups = new HashMap<String, Integer>();
+  // Whether to record the Tracks of each Regexp, which only explanations need.
+  private final boolean tracking;
 
   Parser(String wholeRegexp, int flags) {
+    this(wholeRegexp, flags, false);
+  }
+
+  Parser(String wholeRegexp, int flags, boolean tracking) {
     this.wholeRegexp = wholeRegexp;
     this.flags = flags;
+    this.tracking = tracking;
   }
 
   // Allocate a Regexp, from the free list if possible.
@@ -76,6 +83,9 @@ class Parser {
     } else {
       re = new Regexp(op);
     }
+    if (tracking) {
+      re.Tracks = new RegexpTracks(re);
+    }
     return re;
   }
 
@@ -168,7 +178,9 @@ class Parser {
     re2.runes = concatRunes(re2.runes, re1.runes);
 
     // √ concat tracks
-    re2.Tracks.ConcatLiterals(re1.Tracks);
+    if (tracking) {
+      re2.Tracks.ConcatLiterals(re1.Tracks);
+    }
 
     // Reuse re1 if possible.
     if (r >= 0) {
@@ -271,7 +283,9 @@ class Parser {
     if (subs.length == 0) {
       t.PushNewLiteralTrack(Track.EmptyRegexpComment);
       Regexp empty = newRegexp(Regexp.Op.EMPTY_MATCH);
-      empty.Tracks.ComposeTracks(t.PopTracks());
+      if (tracking) {
+        empty.Tracks.ComposeTracks(t.PopTracks());
+      }
       return push(empty);
     }
 
@@ -339,30 +353,38 @@ class Parser {
       if (sub.op == op) {
         System.arraycopy(sub.subs, 0, newsubs, i, sub.subs.length);
         i += sub.subs.length;
-        recycled.add(sub.Tracks);
+        if (tracking) {
+          recycled.add(sub.Tracks);
+        }
         reuse(sub);
       } else {
         newsubs[i++] = sub;
       }
     }
     Regexp re = newRegexp(op);
-    for (RegexpTracks tracks : recycled) {
-      re.Tracks.AddTracks(tracks);
+    if (tracking) {
+      re.Tracks.AddAllTracks(recycled);
     }
     re.UpdateSubsAndTracks(newsubs);
 
     if (op == Regexp.Op.ALTERNATE) {
       // Ignore tracks effected by factored subs.
-      for (Regexp sub : newsubs) {
-        sub.MoveAllTracks(re.Tracks);
+      if (tracking) {
+        ArrayList<RegexpTracks> moved = new ArrayList<RegexpTracks>();
+        for (Regexp sub : newsubs) {
+          sub.MoveAllTracks(moved);
+        }
+        re.Tracks.AddAllTracks(moved);
       }
 
       re.subs = factor(re.subs, re.flags);
       if (re.subs.length == 1) {
         Regexp old = re;
         re = re.subs[0];
-        re.Tracks.MarkAsAlternation();
-        re.Tracks.AddTracks(old.Tracks);
+        if (tracking) {
+          re.Tracks.MarkAsAlternation();
+          re.Tracks.AddTracks(old.Tracks);
+        }
         reuse(old);
       }
     }
@@ -724,11 +746,13 @@ class Parser {
     private final String str; // a stream of UTF-16 codes
     private int pos = 0; // current position in UTF-16 string
 
+    private final boolean tracking; // whether to record tracks at all
     private ArrayList<Track> tracks = new ArrayList<Track>();
     private boolean disableTrackUpdate = false;
 
-    StringIterator(String str) {
+    StringIterator(String str, boolean tracking) {
       this.str = str;
+      this.tracking = tracking;
     }
 
     void DisableTrackUpdate() {
@@ -757,7 +781,7 @@ class Parser {
     }
 
     void PushNewTrack() {
-      if (disableTrackUpdate) {
+      if (!tracking || disableTrackUpdate) {
         return;
       }
 
@@ -774,7 +798,7 @@ class Parser {
     }
 
     void PushNewMultilineAnchorTrack() {
-      if (disableTrackUpdate) {
+      if (!tracking || disableTrackUpdate) {
         return;
       }
 
@@ -791,7 +815,7 @@ class Parser {
     }
 
     void PushNewFlagTrack(int flag) {
-      if (disableTrackUpdate) {
+      if (!tracking || disableTrackUpdate) {
         return;
       }
 
@@ -808,7 +832,7 @@ class Parser {
     }
 
     void PushNewRepetitionTrack(Regexp re) {
-      if (disableTrackUpdate) {
+      if (!tracking || disableTrackUpdate) {
         return;
       }
 
@@ -825,7 +849,7 @@ class Parser {
     }
 
     void PushNewCCRangeTrack(int lo, int hi) {
-      if (disableTrackUpdate) {
+      if (!tracking || disableTrackUpdate) {
         return;
       }
 
@@ -842,7 +866,7 @@ class Parser {
     }
 
     void PushNewLiteralTrack(String literals) {
-      if (disableTrackUpdate) {
+      if (!tracking || disableTrackUpdate) {
         return;
       }
 
@@ -863,7 +887,7 @@ class Parser {
     }
 
     void PushNewGroupNameTrack(String literals) {
-      if (disableTrackUpdate) {
+      if (!tracking || disableTrackUpdate) {
         return;
       }
 
@@ -934,9 +958,9 @@ class Parser {
       return str.charAt(pos) == c;
     }
 
-    // Equivalent to rest().startsWith(s).
+    // Equivalent to rest().startsWith(s), without copying the rest.
     boolean lookingAt(String s) {
-      return rest().startsWith(s);
+      return str.startsWith(s, pos);
     }
 
     // Returns the rest of the pattern as a Java UTF-16 string.
@@ -963,6 +987,14 @@ class Parser {
     return new Parser(pattern, flags).parseInternal();
   }
 
+  /**
+   * Like {@link #parse}, but also records the {@link Track}s of each {@link Regexp}, as returned by
+   * {@link Regexp#GetAllTracks}.
+   */
+  static Regexp parseWithTracks(String pattern, int flags) throws PatternSyntaxException {
+    return new Parser(pattern, flags, true).parseInternal();
+  }
+
   private Regexp parseInternal() throws PatternSyntaxException {
     if ((flags & RE2.LITERAL) != 0) {
       // Trivial parser for literal string.
@@ -971,10 +1003,10 @@ class Parser {
 
     // Otherwise, must do real work.
     int lastRepeatPos = -1, min = -1, max = -1;
-    StringIterator t = new StringIterator(wholeRegexp);
+    StringIterator t = new StringIterator(wholeRegexp, tracking);
     while (t.more()) {
       t.PushNewTrack();
-      if (stack.size() > 0) {
+      if (tracking && stack.size() > 0) {
         stack.get(stack.size()-1).Tracks.ComposeTracks(t.PopTracks());
       }
       int repeatPos = -1;
@@ -1109,7 +1141,9 @@ class Parser {
                       t.skip(1);
                       t.PushNewLiteralTrack("" + lit.charAt(j));
                       literal(lit.charAt(j));
-                      stack.get(stack.size()-1).Tracks.ComposeTracks(t.PopTracks());
+                      if (tracking) {
+                        stack.get(stack.size()-1).Tracks.ComposeTracks(t.PopTracks());
+                      }
                     }
 
                     t.skipString("\\E");
@@ -1157,7 +1191,7 @@ class Parser {
       lastRepeatPos = repeatPos;
     }
 
-    if (stack.size() > 0) {
+    if (tracking && stack.size() > 0) {
       stack.get(stack.size()-1).Tracks.ComposeTracks(t.PopTracks());
     }
 
@@ -1466,7 +1500,9 @@ class Parser {
         break;
     }
 
-    dst.Tracks.AddTracks(src.Tracks);
+    if (dst.Tracks != null) {
+      dst.Tracks.AddTracks(src.Tracks);
+    }
   }
 
   // If the top of the stack is an element followed by an opVerticalBar
@@ -1490,7 +1526,9 @@ class Parser {
         stack.set(n - 3, re3);
       }
       mergeCharClass(re3, re1);
-      re3.Tracks.SetFlagCCFromAlternation();
+      if (tracking) {
+        re3.Tracks.SetFlagCCFromAlternation();
+      }
       reuse(re1);
       pop();
       return true;
@@ -1542,7 +1580,9 @@ class Parser {
     this.flags = re2.flags;
     if (re2.cap == 0) {
       // Just for grouping.
-      re1.Tracks.AddTracks(re2.Tracks);
+      if (tracking) {
+        re1.Tracks.AddTracks(re2.Tracks);
+      }
       push(re1);
     } else {
       re2.op = Regexp.Op.CAPTURE;
@@ -1762,13 +1802,13 @@ class Parser {
     if (name.equals("Any")) {
       return Pair.of(ANY_TABLE, ANY_TABLE);
     }
-    int[][] table = UnicodeTables.CATEGORIES.get(name);
+    int[][] table = UnicodeTables.category(name);
     if (table != null) {
-      return Pair.of(table, UnicodeTables.FOLD_CATEGORIES.get(name));
+      return Pair.of(table, UnicodeTables.foldCategory(name));
     }
-    table = UnicodeTables.SCRIPTS.get(name);
+    table = UnicodeTables.script(name);
     if (table != null) {
-      return Pair.of(table, UnicodeTables.FOLD_SCRIPT.get(name));
+      return Pair.of(table, UnicodeTables.foldScript(name));
     }
     return null;
   }
@@ -7,6 +7,7 @@
 package com.google.re2j;
 
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * A compiled representation of an RE2 regular expression, mimicking the
@@ -46,6 +47,19 @@ public final class Pattern implements Serializable {
    */
   public static final int LONGEST_MATCH = 16;
 
+  /**
+   * Flag: builds the pattern's complete DFA at compile time, trading compile time and memory for
+   * faster matching. Meant for long-lived patterns that are matched against many inputs.
+   */
+  public static final int PRECOMPILE_DFA = 32;
+
+  /**
+   * Flag: the pattern is a literal string, in which metacharacters and escape sequences have no
+   * special meaning. {@code CASE_INSENSITIVE} still applies; {@code DOTALL} and {@code MULTILINE}
+   * have no effect.
+   */
+  public static final int LITERAL = 64;
+
   // The pattern string at construction time.
   private final String pattern;
 
@@ -55,6 +69,9 @@ public final class Pattern implements Serializable {
   // The compiled RE2 regexp.
   private transient final RE2 re2;
 
+  // The tracks of the pattern, computed by the first call of explain().
+  private transient volatile List<Track> explanation;
+
   // This is visible for testing.
   Pattern(String pattern, int flags, RE2 re2) {
     if (pattern == null) {
@@ -117,34 +134,89 @@ public final class Pattern implements Serializable {
    */
   public static Pattern compile(String regex, int flags) {
     String flregex = regex;
-    if ((flags & CASE_INSENSITIVE) != 0) {
-      flregex = "(?i)" + flregex;
-    }
-    if ((flags & DOTALL) != 0) {
-      flregex = "(?s)" + flregex;
-    }
-    if ((flags & MULTILINE) != 0) {
-      flregex = "(?m)" + flregex;
+    if ((flags & LITERAL) == 0) {
+      if ((flags & CASE_INSENSITIVE) != 0) {
+        flregex = "(?i)" + flregex;
+      }
+      if ((flags & DOTALL) != 0) {
+        flregex = "(?s)" + flregex;
+      }
+      if ((flags & MULTILINE) != 0) {
+        flregex = "(?m)" + flregex;
+      }
     }
-    if ((flags & ~(MULTILINE | DOTALL | CASE_INSENSITIVE | DISABLE_UNICODE_GROUPS | LONGEST_MATCH))
+    checkFlags(flags);
+    return compile(flregex, regex, flags);
+  }
+
+  /**
+   * Helper: throws IllegalArgumentException if flags has bits other than the flag constants.
+   */
+  static void checkFlags(int flags) {
+    if ((flags
+            & ~(MULTILINE
+                | DOTALL
+                | CASE_INSENSITIVE
+                | DISABLE_UNICODE_GROUPS
+                | LONGEST_MATCH
+                | PRECOMPILE_DFA
+                | LITERAL))
         != 0) {
       throw new IllegalArgumentException(
-          "Flags should only be a combination "
-              + "of MULTILINE, DOTALL, CASE_INSENSITIVE, DISABLE_UNICODE_GROUPS, LONGEST_MATCH");
+          "Flags should only be a combination of MULTILINE, DOTALL, CASE_INSENSITIVE, "
+              + "DISABLE_UNICODE_GROUPS, LONGEST_MATCH, PRECOMPILE_DFA, LITERAL");
     }
-    return compile(flregex, regex, flags);
   }
 
   /**
    * Helper: create new Pattern with given regex and flags. Flregex is the regex with flags applied.
    */
   private static Pattern compile(String flregex, String regex, int flags) {
+    RE2 re2 = RE2.compileImpl(flregex, re2Flags(flags), (flags & LONGEST_MATCH) != 0);
+    if ((flags & PRECOMPILE_DFA) != 0) {
+      re2.precompile(DFATable.PRECOMPILED_MAX_STATES);
+    }
+    return new Pattern(regex, flags, re2);
+  }
+
+  /**
+   * Helper: the parser flags for a pattern with the given flags, other than those that compile
+   * prepends to the regex.
+   */
+  private static int re2Flags(int flags) {
     int re2Flags = RE2.PERL;
     if ((flags & DISABLE_UNICODE_GROUPS) != 0) {
       re2Flags &= ~RE2.UNICODE_GROUPS;
     }
-    return new Pattern(
-        regex, flags, RE2.compileImpl(flregex, re2Flags, (flags & LONGEST_MATCH) != 0));
+    if ((flags & LITERAL) != 0) {
+      // Flags cannot be prepended to a literal as (?i), so pass them here.
+      re2Flags |= RE2.LITERAL;
+      if ((flags & CASE_INSENSITIVE) != 0) {
+        re2Flags |= RE2.FOLD_CASE;
+      }
+    }
+    return re2Flags;
+  }
+
+  /**
+   * Helper: the parser flags for explaining a pattern with the given flags. The flags that compile
+   * prepends as (?i), (?s) and (?m) are passed to the parser instead, so that the positions of the
+   * tracks are those in the pattern.
+   */
+  static int explainFlags(int flags) {
+    int re2Flags = re2Flags(flags);
+    if ((flags & LITERAL) == 0) {
+      if ((flags & CASE_INSENSITIVE) != 0) {
+        re2Flags |= RE2.FOLD_CASE;
+      }
+      if ((flags & DOTALL) != 0) {
+        re2Flags |= RE2.DOT_NL;
+      }
+      if ((flags & MULTILINE) != 0) {
+        re2Flags &= ~RE2.ONE_LINE;
+      }
+    }
+    return re2Flags;
   }
 
   /**
@@ -269,6 +341,26 @@ public final class Pattern implements Serializable {
     return re2.numberOfCapturingGroups();
   }
 
+  /**
+   * Returns an explanation of this pattern: one {@link Track} for each of its parts, in order of
+   * position in {@link #pattern()}, each with a comment describing what it matches.
+   *
+   * <p>
+   * Patterns are compiled without recording this information, so the first call parses the
+   * pattern again; the result is cached, and each call returns new copies of the tracks. To
+   * explain a pattern without compiling it, as it is edited, use {@link Explanation}.
+   *
+   * @return a new list of copies of the tracks of this pattern
+   */
+  public List<Track> explain() {
+    List<Track> tracks = explanation;
+    if (tracks == null) {
+      tracks = Parser.parseWithTracks(pattern, explainFlags(flags)).GetAllTracks();
+      explanation = tracks;
+    }
+    return Track.CopyAll(tracks);
+  }
+
   Object readResolve() {
     // The deserialized version will be missing the RE2 instance, so we need to create a new,
     // compiled version.
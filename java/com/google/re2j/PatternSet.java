@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A set of compiled regular expressions that are searched for together, in a single pass over the
+ * input, in the manner of RE2's {@code RE2::Set}.
+ *
+ * <p>
+ * Each pattern is identified by its index in the list it was compiled from. {@link #findAll}
+ * returns the indices of all the patterns that match somewhere in the input, and
+ * {@link #findFirst} the lowest of them, so that the order of the list can serve as a priority.
+ * The cost of a search grows with the length of the input, not with the number of patterns,
+ * except on inputs that drive the automaton through more states than its cache can hold, which
+ * are searched pattern by pattern.
+ *
+ * <p>
+ * A {@code PatternSet} reports only which patterns match, not where; use the {@link Pattern} of a
+ * matching pattern for the match positions and groups.
+ *
+ * <p>
+ * Instances of this class are safe for use by multiple concurrent threads.
+ */
+public final class PatternSet {
+
+  private final Pattern[] patterns;
+
+  // The patterns compiled together by Compiler.compileSet, and the DFA
+  // that runs them.
+  private final RE2 re2;
+  private final DFA dfa;
+
+  private PatternSet(Pattern[] patterns) {
+    this.patterns = patterns;
+    Prog[] progs = new Prog[patterns.length];
+    for (int i = 0; i < patterns.length; i++) {
+      progs[i] = patterns[i].re2().prog;
+    }
+    Prog prog = Compiler.compileSet(progs);
+    this.re2 = RE2.forSet(Arrays.toString(patterns), prog);
+    // Each state holds a few instructions of many patterns, so the cache
+    // grows with the program.
+    int maxMem = DFA.DEFAULT_MAX_MEM + 320 * prog.numInst();
+    this.dfa = new DFA(re2, false, false, maxMem, 0, false, true);
+  }
+
+  /**
+   * Creates and returns a new {@code PatternSet} of the regular expressions {@code regexes},
+   * compiled with the default flags (0).
+   *
+   * @param regexes the regular expressions, in order of priority
+   * @throws PatternSyntaxException if one of the regular expressions is malformed
+   */
+  public static PatternSet compile(String... regexes) {
+    return compile(Arrays.asList(regexes), 0);
+  }
+
+  /**
+   * Creates and returns a new {@code PatternSet} of the regular expressions {@code regexes},
+   * each compiled with the given {@code flags} as by {@link Pattern#compile(String, int)}.
+   *
+   * @param regexes the regular expressions, in order of priority
+   * @param flags the flags of each pattern
+   * @throws PatternSyntaxException if one of the regular expressions is malformed
+   * @throws IllegalArgumentException if an unknown flag is given
+   */
+  public static PatternSet compile(Collection<String> regexes, int flags) {
+    Pattern[] patterns = new Pattern[regexes.size()];
+    int i = 0;
+    for (String regex : regexes) {
+      patterns[i++] = Pattern.compile(regex, flags);
+    }
+    return new PatternSet(patterns);
+  }
+
+  /**
+   * Returns the number of patterns in this set.
+   */
+  public int size() {
+    return patterns.length;
+  }
+
+  /**
+   * Returns the pattern with index {@code i}.
+   */
+  public Pattern pattern(int i) {
+    return patterns[i];
+  }
+
+  /**
+   * Returns the indices, in increasing order, of the patterns that match somewhere in
+   * {@code input}.
+   */
+  public int[] findAll(CharSequence input) {
+    boolean[] matched = match(input);
+    int n = 0;
+    for (boolean m : matched) {
+      if (m) {
+        n++;
+      }
+    }
+    int[] ids = new int[n];
+    n = 0;
+    for (int i = 0; i < matched.length; i++) {
+      if (matched[i]) {
+        ids[n++] = i;
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Returns the lowest index of a pattern that matches somewhere in {@code input}, or -1 if none
+   * does.
+   */
+  public int findFirst(CharSequence input) {
+    boolean[] matched = match(input);
+    for (int i = 0; i < matched.length; i++) {
+      if (matched[i]) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // match() returns which of the patterns match somewhere in |input|.
+  private boolean[] match(CharSequence input) {
+    boolean[] matched = new boolean[patterns.length];
+    if (patterns.length > 0 && !dfa.searchMany(MachineInput.fromUTF16(input), matched)) {
+      // The DFA gave up; the patterns it saw match are still right.
+      for (int i = 0; i < patterns.length; i++) {
+        if (!matched[i]) {
+          matched[i] = patterns[i].re2().match(input);
+        }
+      }
+    }
+    return matched;
+  }
+
+  @Override
+  public String toString() {
+    return re2.toString();
+  }
+}
@@ -9,7 +9,9 @@
 
 package com.google.re2j;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * A Prog is a compiled regular expression program.
@@ -22,9 +24,114 @@ final class Prog {
   int numCap = 2; // number of CAPTURE insts in re
   // 2 => implicit ( and ) for whole match $0
 
+  //// Flat form; see flatten().
+
+  int[] ops; // op of each pc
+  int[] outs; // out of each pc
+  int[] args; // arg of each pc
+  int[] runeStart; // the runes of pc are runePool[runeStart[pc]:runeStart[pc + 1]]
+  int[] runePool;
+  int[] classStart; // the RuneClasses set of a RUNE pc begins at classPool[classStart[pc]]
+  long[] classPool;
+  int[] latin1Start; // RuneBitmap.latin1 of a RUNE pc: latin1Pool[latin1Start[pc]:+4], or -1
+  long[] latin1Pool;
+
   // Constructs an empty program.
   Prog() {}
 
+  // flatten() moves the instructions into parallel arrays, which the
+  // matchers read in their inner loops instead of following a reference
+  // to each Inst and to its runes: the runes of all the instructions are
+  // in one pool, and so are their Inst.classes and Latin-1 bitmaps.  The
+  // Insts keep their op, out, arg and folds, for the analyses that walk
+  // them, and only the bitmaps with a table above Latin-1; read the runes
+  // with runes().  It is called once the program and its classes are
+  // complete; the arrays are read-only after.
+  void flatten() {
+    int n = instSize;
+    ops = new int[n];
+    outs = new int[n];
+    args = new int[n];
+    runeStart = new int[n + 1];
+    classStart = new int[n];
+    latin1Start = new int[n];
+    int numRunes = 0;
+    int numClasses = 0;
+    int numLatin1 = 0;
+    for (int pc = 0; pc < n; pc++) {
+      Inst i = inst[pc];
+      numRunes += i.runes != null ? i.runes.length : 0;
+      numClasses += i.classes != null ? i.classes.length : 0;
+      numLatin1 += i.bitmap != null ? 4 : 0;
+    }
+    runePool = new int[numRunes];
+    classPool = new long[numClasses];
+    latin1Pool = new long[numLatin1];
+    numRunes = 0;
+    numClasses = 0;
+    numLatin1 = 0;
+    for (int pc = 0; pc < n; pc++) {
+      Inst i = inst[pc];
+      ops[pc] = i.op;
+      outs[pc] = i.out;
+      args[pc] = i.arg;
+      runeStart[pc] = numRunes;
+      if (i.runes != null) {
+        System.arraycopy(i.runes, 0, runePool, numRunes, i.runes.length);
+        numRunes += i.runes.length;
+      }
+      classStart[pc] = numClasses;
+      if (i.classes != null) {
+        System.arraycopy(i.classes, 0, classPool, numClasses, i.classes.length);
+        numClasses += i.classes.length;
+      }
+      latin1Start[pc] = -1;
+      if (i.bitmap != null) {
+        System.arraycopy(i.bitmap.latin1, 0, latin1Pool, numLatin1, 4);
+        latin1Start[pc] = numLatin1;
+        numLatin1 += 4;
+        if (!i.bitmap.hasTable()) {
+          i.bitmap = null;
+        }
+      }
+      i.runes = null;
+      i.classes = null;
+    }
+    runeStart[n] = numRunes;
+  }
+
+  // matchRune() reports whether the RUNE instruction at |pc| of the
+  // flattened program matches |r|.
+  boolean matchRune(int pc, int r) {
+    int b = latin1Start[pc];
+    if (b >= 0 && r >= 0 && r < 0x100) {
+      return (latin1Pool[b + (r >> 6)] & 1L << r) != 0;
+    }
+    Inst i = inst[pc];
+    if (i.bitmap != null) {
+      return i.bitmap.contains(r);
+    }
+    if (i.folds != null) {
+      return Inst.matchRune(i.folds, 0, i.folds.length, 0, r);
+    }
+    return Inst.matchRune(runePool, runeStart[pc], runeStart[pc + 1], args[pc], r);
+  }
+
+  // matchClass() reports whether the RUNE instruction at |pc| of the
+  // flattened program matches the runes of class |c|; see RuneClasses.
+  boolean matchClass(int pc, int c) {
+    return c >= 0 && (classPool[classStart[pc] + (c >> 6)] & 1L << c) != 0;
+  }
+
+  // runes() returns the runes of the instruction at |pc|, which are in its
+  // Inst.runes until flatten() moves them to the pool.
+  int[] runes(int pc) {
+    if (runePool == null) {
+      return inst[pc].runes;
+    }
+    return Arrays.copyOfRange(runePool, runeStart[pc], runeStart[pc + 1]);
+  }
+
   // Returns the instruction at the specified pc.
   // Precondition: pc > 0 && pc < numInst().
   Inst getInst(int pc) {
@@ -47,33 +154,57 @@ final class Prog {
   }
 
   // skipNop() follows any no-op or capturing instructions and returns the
-  // resulting instruction.
-  Inst skipNop(int pc) {
-    Inst i = inst[pc];
-    while (i.op == Inst.NOP || i.op == Inst.CAPTURE) {
-      i = inst[pc];
-      pc = i.out;
+  // pc of the resulting instruction.
+  int skipNop(int pc) {
+    while (inst[pc].op == Inst.NOP || inst[pc].op == Inst.CAPTURE) {
+      pc = inst[pc].out;
     }
-    return i;
+    return pc;
+  }
+
+  // literal() reports whether the instruction at |pc| tests a single rune.
+  private boolean literal(int pc) {
+    return Inst.isRuneOp(inst[pc].op) && runes(pc).length == 1;
   }
 
   // prefix() returns a pair of a literal string that all matches for the
   // regexp must start with, and a boolean which is true if the prefix is the
   // entire match.  The string is returned by appending to |prefix|.
   boolean prefix(StringBuilder prefix) {
-    Inst i = skipNop(start);
+    int pc = skipNop(start);
 
     // Avoid allocation of buffer if prefix is empty.
-    if (!Inst.isRuneOp(i.op) || i.runes.length != 1) {
-      return i.op == Inst.MATCH; // (append "" to prefix)
+    if (!literal(pc)) {
+      return inst[pc].op == Inst.MATCH; // (append "" to prefix)
     }
 
     // Have prefix; gather characters.
-    while (Inst.isRuneOp(i.op) && i.runes.length == 1 && (i.arg & RE2.FOLD_CASE) == 0) {
-      prefix.appendCodePoint(i.runes[0]); // an int, not a byte.
-      i = skipNop(i.out);
+    while (literal(pc) && (inst[pc].arg & RE2.FOLD_CASE) == 0) {
+      prefix.appendCodePoint(runes(pc)[0]); // an int, not a byte.
+      pc = skipNop(inst[pc].out);
     }
-    return i.op == Inst.MATCH;
+    return inst[pc].op == Inst.MATCH;
+  }
+
+  // foldPrefix() returns the literal that all matches for the regexp must
+  // start with when case is ignored, as the case-fold orbit of each rune:
+  // the runes that may be there.  It is longer than prefix() when the
+  // literal goes on through FOLD_CASE instructions.
+  int[][] foldPrefix() {
+    List<int[]> orbits = new ArrayList<int[]>();
+    for (int pc = skipNop(start); literal(pc); pc = skipNop(inst[pc].out)) {
+      Inst i = inst[pc];
+      if (i.folds == null) {
+        orbits.add(runes(pc));
+        continue;
+      }
+      int[] orbit = new int[i.folds.length / 2];
+      for (int j = 0; j < orbit.length; j++) {
+        orbit[j] = i.folds[2 * j];
+      }
+      orbits.add(orbit);
+    }
+    return orbits.toArray(new int[orbits.size()][]);
   }
 
   // startCond() returns the leading empty-width conditions that must be true
@@ -172,8 +303,14 @@ final class Prog {
       }
       // Use spaces not tabs since they're not always preserved in
       // Google Java source, such as our tests.
-      out.append("        ".substring(out.length() - len)).append(inst[pc]).append('\n');
+      out.append("        ".substring(out.length() - len)).append(instString(pc)).append('\n');
     }
     return out.toString();
   }
+
+  // instString() returns the text of the instruction at |pc|, as in
+  // toString().
+  String instString(int pc) {
+    return inst[pc].toString(runes(pc));
+  }
 }
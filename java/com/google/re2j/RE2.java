@@ -20,7 +20,6 @@
 
 package com.google.re2j;
 
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -108,17 +107,53 @@ class RE2 {
   final int cond; // EMPTY_* bitmask: empty-width conditions
   // required at start of match
   final int numSubexp;
+  final int maxBitStateLen; // inputs shorter than this use a Backtracker
+  final RuneClasses classes; // classes of runes that |prog| treats alike, if any
+  int maxTableStates; // state limit of complete DFA tables; see DFATable
   boolean longest;
 
   String prefix; // required UTF-16 prefix in unanchored matches
-  byte[] prefixUTF8; // required UTF-8 prefix in unanchored matches
+  StringSearch prefixSearch; // searcher for |prefix|, if not empty
+  FoldSearch foldSearch; // searcher for a longer prefix with case ignored, if any
   boolean prefixComplete; // true iff prefix is the entire regexp
   int prefixRune; // first rune in prefix
+  AhoCorasick prefixes; // strings one of which begins every match, if no prefix
+  FirstSet firstSet; // runes one of which begins every match, if neither
+  String required; // UTF-16 literal that every match contains, if not in prefix
+  StringSearch requiredSearch; // searcher for |required|
+  int maxLength; // most runes a match spans, or -1 if unbounded
+  OnePass onepass; // non-null iff the program is one-pass
+  Closures closures; // epsilon closures of |prog| for the Machine, if not too large
+  boolean endsText; // true iff every match ends at the end of the text
+
+  // The parser flags |expr| was compiled with, from which reverse() compiles
+  // the reversed regexp, or -1 if there is none.
+  private int mode = -1;
+
+  // Leftmost-longest matcher of the reversed regexp; see reverse().  Read
+  // without locking; it is created under |this| monitor.
+  // This is visible for testing.
+  volatile RE2 reverse;
 
   // Cache of machines for running regexp.
   // Accesses must be serialized using |this| monitor.
   // @GuardedBy("this")
   private final Queue<Machine> machine = new ArrayDeque<Machine>();
+
+  // Cache of backtrackers, like |machine|.
+  // @GuardedBy("this")
+  private final Queue<Backtracker> backtracker = new ArrayDeque<Backtracker>();
+
+  // Lazily-built DFAs, indexed as in dfa().  Read without locking; they
+  // are created under |this| monitor.  Small programs get complete DFA
+  // tables when their DFA is first used, not at compile time, unless
+  // precompile() is called.
+  // This is visible for testing.
+  final DFA[] dfa = new DFA[8];
+
+  // |prog| compiled to read UTF-8 bytes; see progUTF8().
+  // @GuardedBy("this")
+  private Prog progUTF8;
   public Map<String, Integer> namedGroups;
 
   // This is visible for testing.
@@ -129,11 +164,25 @@ class RE2 {
     this.prog = re2.prog;
     this.cond = re2.cond;
     this.numSubexp = re2.numSubexp;
+    this.maxBitStateLen = re2.maxBitStateLen;
+    this.classes = re2.classes;
+    this.maxTableStates = re2.maxTableStates;
     this.longest = re2.longest;
     this.prefix = re2.prefix;
-    this.prefixUTF8 = re2.prefixUTF8;
+    this.prefixSearch = re2.prefixSearch;
+    this.foldSearch = re2.foldSearch;
     this.prefixComplete = re2.prefixComplete;
     this.prefixRune = re2.prefixRune;
+    this.prefixes = re2.prefixes;
+    this.firstSet = re2.firstSet;
+    this.required = re2.required;
+    this.requiredSearch = re2.requiredSearch;
+    this.maxLength = re2.maxLength;
+    this.onepass = re2.onepass;
+    this.closures = re2.closures;
+    this.endsText = re2.endsText;
+    this.mode = re2.mode;
+    this.reverse = re2.reverse;
   }
 
   private RE2(String expr, Prog prog, int numSubexp, boolean longest) {
@@ -141,6 +190,11 @@ class RE2 {
     this.prog = prog;
     this.numSubexp = numSubexp;
     this.cond = prog.startCond();
+    this.maxBitStateLen = Backtracker.maxBitStateLen(prog);
+    this.classes = RuneClasses.compute(prog);
+    RuneBitmap.compute(prog);
+    prog.flatten();
+    this.maxTableStates = DFATable.maxStates(prog);
     this.longest = longest;
   }
 
@@ -191,15 +245,77 @@ class RE2 {
     StringBuilder prefixBuilder = new StringBuilder();
     re2.prefixComplete = prog.prefix(prefixBuilder);
     re2.prefix = prefixBuilder.toString();
-    try {
-      re2.prefixUTF8 = re2.prefix.getBytes("UTF-8");
-    } catch (UnsupportedEncodingException e) {
-      throw new IllegalStateException("can't happen");
+    int[] required = Literals.required(re);
+    if (required != null) {
+      String s = new String(required, 0, required.length);
+      if (!re2.prefix.contains(s)) {
+        // Searching for the prefix finds |s| already.
+        re2.required = s;
+        re2.requiredSearch = new StringSearch(s);
+      }
     }
+    re2.maxLength = Literals.maxLength(re);
     if (!re2.prefix.isEmpty()) {
       re2.prefixRune = re2.prefix.codePointAt(0);
+      re2.prefixSearch = new StringSearch(re2.prefix);
+    } else if ((re2.cond & Utils.EMPTY_BEGIN_TEXT) == 0) {
+      re2.prefixes = AhoCorasick.compile(Literals.prefixes(re));
+      if (re2.prefixes == null) {
+        re2.firstSet = FirstSet.compute(prog);
+      }
+    }
+    if (re2.hasPrefix()) {
+      // UTF-16 searches skip ahead by a prefix that runs on through
+      // case-folded literals, as in (?i)keyword; UTF-8 ones use the above.
+      FoldSearch fold = FoldSearch.of(prog.foldPrefix());
+      if (fold != null && fold.length() > re2.prefix.length()) {
+        re2.foldSearch = fold;
+      }
     }
     re2.namedGroups = re.namedGroups;
+    re2.onepass = OnePass.compile(prog);
+    re2.closures = Closures.compute(prog);
+    re2.endsText = endsText(re);
+    re2.mode = mode;
+    return re2;
+  }
+
+  // endsText() reports whether every match of |re| ends at the end of the
+  // text: whether it ends with \z, perhaps among other empty-width
+  // assertions and within groups.
+  private static boolean endsText(Regexp re) {
+    switch (re.op) {
+      case END_TEXT:
+        return true;
+      case CAPTURE:
+        return endsText(re.subs[0]);
+      case CONCAT:
+        for (int i = re.subs.length - 1; i >= 0; i--) {
+          switch (re.subs[i].op) {
+            case EMPTY_MATCH:
+            case BEGIN_LINE:
+            case END_LINE:
+            case BEGIN_TEXT:
+            case WORD_BOUNDARY:
+            case NO_WORD_BOUNDARY:
+              continue;
+            default:
+              return endsText(re.subs[i]);
+          }
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  // forSet() returns an RE2 for a program made by Compiler.compileSet,
+  // which is run only by DFA.searchMany.  Its unanchored searches skip
+  // ahead to the runes that can begin a match of any of the programs.
+  static RE2 forSet(String expr, Prog prog) {
+    RE2 re2 = new RE2(expr, prog, 0, /*longest=*/ false);
+    re2.prefix = "";
+    re2.firstSet = FirstSet.compute(prog);
     return re2;
   }
 
@@ -210,6 +326,21 @@ class RE2 {
     return numSubexp;
   }
 
+  // hasPrefix() reports whether unanchored searches can skip ahead with
+  // MachineInput.index to where |prefix| or one of |prefixes| occurs, or
+  // to a rune in |firstSet|.
+  boolean hasPrefix() {
+    return !prefix.isEmpty() || prefixes != null || firstSet != null;
+  }
+
+  // hasLiteralPrefix() reports whether unanchored searches of UTF-8 or
+  // UTF-16 input skip ahead with a literal search, |prefixSearch| or
+  // |foldSearch|, of at least two units; one unit is found no faster than
+  // by scanning every unit.
+  boolean hasLiteralPrefix(boolean utf8) {
+    return prefix.length() > 1 || (foldSearch != null && !utf8);
+  }
+
   // get() returns a machine to use for matching |this|.  It uses |this|'s
   // machine cache if possible, to avoid unnecessary allocation.
   Machine get() {
@@ -224,6 +355,8 @@ class RE2 {
   // Clears the memory associated with this machine.
   synchronized void reset() {
     machine.clear();
+    backtracker.clear();
+    Arrays.fill(dfa, null);
   }
 
   // put() returns a machine to |this|'s machine cache.  There is no attempt to
@@ -234,15 +367,175 @@ class RE2 {
     machine.add(m);
   }
 
+  // getBacktracker() and put() are like get() and put() for backtrackers.
+  Backtracker getBacktracker() {
+    synchronized (this) {
+      if (!backtracker.isEmpty()) {
+        return backtracker.remove();
+      }
+    }
+    return new Backtracker(this);
+  }
+
+  synchronized void put(Backtracker b) {
+    backtracker.add(b);
+  }
+
   @Override
   public String toString() {
     return expr;
   }
 
+  // dfa() returns the DFA to use for matching |this| with the RE2 Anchor
+  // |anchor|.  There is one for each combination of match semantics and
+  // end anchoring, as |longest| may change after compilation.
+  DFA dfa(int anchor) {
+    return dfa(anchor, false);
+  }
+
+  // dfa() returns the DFA for searches with |anchor| of UTF-8 input, if
+  // |utf8|, or of any input.
+  DFA dfa(int anchor, boolean utf8) {
+    int i = (utf8 ? 4 : 0) | (longest ? 2 : 0) | (anchor == ANCHOR_BOTH ? 1 : 0);
+    DFA d = dfa[i];
+    if (d == null) {
+      synchronized (this) {
+        d = dfa[i];
+        if (d == null) {
+          d =
+              dfa[i] =
+                  new DFA(
+                      this,
+                      longest,
+                      anchor == ANCHOR_BOTH,
+                      DFA.DEFAULT_MAX_MEM,
+                      maxTableStates,
+                      utf8);
+        }
+      }
+    }
+    return d;
+  }
+
+  // reverse() returns the leftmost-longest matcher of the reversed regexp,
+  // compiled on first use from |expr|, or null if there is none.  Only
+  // suffix-anchored searches, findLast() and the bounds of unanchored
+  // matches need it.
+  RE2 reverse() {
+    RE2 r = reverse;
+    if (r == null && mode != -1) {
+      synchronized (this) {
+        r = reverse;
+        if (r == null) {
+          Regexp re = Simplify.simplify(Parser.parse(expr, mode));
+          r = new RE2(expr, Compiler.compileReversed(re), 0, /*longest=*/ true);
+          r.prefix = "";
+          reverse = r;
+        }
+      }
+    }
+    return r;
+  }
+
+  // progUTF8() returns |prog| compiled to read UTF-8 text a byte at a time,
+  // built on first use; see Compiler.compileUTF8.
+  synchronized Prog progUTF8() {
+    if (progUTF8 == null) {
+      progUTF8 = Compiler.compileUTF8(prog);
+      progUTF8.flatten();
+    }
+    return progUTF8;
+  }
+
+  // precompile() builds complete DFA tables of up to |maxStates| states for
+  // the common searches now, whatever the size of the program, trading
+  // compile time and memory for the speed of later matches.
+  void precompile(int maxStates) {
+    synchronized (this) {
+      maxTableStates = maxStates;
+      Arrays.fill(dfa, null);
+    }
+    dfa(UNANCHORED);
+    dfa(ANCHOR_BOTH);
+  }
+
   // doExecute() finds the leftmost match in the input and returns
   // the position of its subexpressions.
   // Derived from exec.go.
   private int[] doExecute(MachineInput in, int pos, int anchor, int ncap) {
+    if (prefixComplete && numSubexp == 0 && in.canCheckPrefix()) {
+      // The regexp is a literal string; no automaton is needed.
+      return literalMatch(in, pos, anchor, ncap);
+    }
+    if (required != null && in.canCheckPrefix()) {
+      // Every match contains |required|, so the input need not be run
+      // through an automaton unless it occurs.
+      int end = in.indexRequired(this, pos);
+      if (end < 0) {
+        return null;
+      }
+      if (anchor == UNANCHORED && maxLength >= 0) {
+        pos = windowStart(in, pos, pos + end);
+      }
+    }
+    if (onepass != null && ncap > 0) {
+      // A single forward scan records the submatches with no backtracking.
+      return onepass.match(in, pos, anchor, ncap);
+    }
+    if (anchor == UNANCHORED && endsText && (cond & Utils.EMPTY_BEGIN_TEXT) == 0) {
+      // Every match ends at the end of the text.  Scanning backwards from
+      // there for the leftmost start touches only the suffix that matters.
+      int start = reverse().dfa(ANCHOR_START).search(in.reverse(pos), 0, ANCHOR_START, ncap == 0);
+      if (start == DFA.NO_MATCH) {
+        return null;
+      }
+      if (start != DFA.FAILED) {
+        if (ncap == 0) {
+          return Utils.EMPTY_INTS;
+        }
+        int end = in.endPos();
+        if (ncap == 2) {
+          return new int[] {end - start, end};
+        }
+        // No thread started before the leftmost match can reach a match,
+        // so the submatches are found by searching from its start.
+        pos = end - start;
+      }
+    }
+    if (ncap <= 2) {
+      // The DFA answers whether there is a match and where it ends.  UTF-8
+      // input goes to a DFA that reads bytes, so that no rune is decoded.
+      int end = dfa(anchor, in.isUTF8()).search(in, pos, anchor, ncap == 0);
+      if (end == DFA.NO_MATCH) {
+        return null;
+      }
+      if (end != DFA.FAILED) {
+        if (ncap == 0) {
+          return Utils.EMPTY_INTS;
+        }
+        if (anchor != UNANCHORED) {
+          return new int[] {pos, end};
+        }
+        RE2 reverse = reverse();
+        if (reverse != null) {
+          // The leftmost match starts at the earliest position from which
+          // some match ends at |end|, which the reversed regexp finds by
+          // scanning back from there.  No submatches are tracked for the
+          // bounds; Matcher asks for those only when they are wanted.
+          int n =
+              reverse.dfa(ANCHOR_START).search(in.reverse(pos, end), 0, ANCHOR_START, false);
+          if (n >= 0) {
+            return new int[] {end - n, end};
+          }
+        }
+      }
+    }
+    if (in.endPos() - pos < maxBitStateLen) {
+      Backtracker b = getBacktracker();
+      int[] cap = b.match(in, pos, anchor, ncap);
+      put(b);
+      return cap;
+    }
     Machine m = get();
     m.init(ncap);
     int[] cap = m.match(in, pos, anchor) ? m.submatches() : null;
@@ -250,6 +543,58 @@ class RE2 {
     return cap;
   }
 
+  // windowStart() returns the earliest position at or after |pos| where
+  // a match can start, given that the first occurrence of |required| at
+  // or after |pos| ends at |end|.  A match starting earlier would end
+  // before |end| and so could not contain it.
+  private int windowStart(MachineInput in, int pos, int end) {
+    int start = end;
+    for (int n = maxLength; n > 0 && start > pos; n--) {
+      start -= in.stepBack(start) & 7;
+    }
+    return Math.max(start, pos);
+  }
+
+  // literalMatch() is doExecute() for a regexp that is the literal string
+  // |prefix|: a substring search, or a comparison if the match is anchored.
+  private int[] literalMatch(MachineInput in, int pos, int anchor, int ncap) {
+    int start = pos;
+    if (anchor != UNANCHORED) {
+      if (pos != 0) {
+        return null;
+      }
+    } else if (!prefix.isEmpty()) {
+      int advance = in.index(this, pos);
+      if (advance < 0) {
+        return null;
+      }
+      start += advance;
+    }
+    // Find the end of the match, in the units of the input.  This also
+    // rejects an occurrence found past in.endPos().
+    int end = start;
+    for (int i = 0; i < prefix.length(); ) {
+      int rune = prefix.codePointAt(i);
+      int r = in.step(end);
+      if (r >> 3 != rune) {
+        return null;
+      }
+      end += r & 7;
+      i += Character.charCount(rune);
+    }
+    if (anchor == ANCHOR_BOTH && end != in.endPos()) {
+      return null;
+    }
+    if (ncap == 0) {
+      return Utils.EMPTY_INTS;
+    }
+    int[] cap = new int[ncap];
+    Arrays.fill(cap, -1);
+    cap[0] = start;
+    cap[1] = end;
+    return cap;
+  }
+
   /**
    * Returns true iff this regexp matches the string {@code s}.
    */
@@ -282,7 +627,20 @@ class RE2 {
     // In Russ' own words:
     // That is, I believe doExecute needs to know the bounds of the whole input
     // as well as the bounds of the subpiece that is being searched.
-    int[] groupMatch = doExecute(MachineInput.fromUTF16(input, 0, end), start, anchor, 2 * ngroup);
+    int[] groupMatch;
+    if (anchor != UNANCHORED && start > 0) {
+      // Anchored at |start|, which the input must treat as its beginning.
+      groupMatch = doExecute(MachineInput.fromUTF16(input, start, end), 0, anchor, 2 * ngroup);
+      if (groupMatch != null) {
+        for (int i = 0; i < groupMatch.length; i++) {
+          if (groupMatch[i] >= 0) {
+            groupMatch[i] += start;
+          }
+        }
+      }
+    } else {
+      groupMatch = doExecute(MachineInput.fromUTF16(input, 0, end), start, anchor, 2 * ngroup);
+    }
 
     if (groupMatch == null) {
       return false;
@@ -294,6 +652,18 @@ class RE2 {
     return true;
   }
 
+  /**
+   * Returns the bounds of the last match in {@code input[0:end]}: among the matches that end
+   * furthest right, the one that starts furthest left. Returns null if there is no match. The
+   * search scans backwards from {@code end}, so its cost depends on how far from the end the match
+   * lies rather than on the length of the input.
+   */
+  int[] matchLast(CharSequence input, int end) {
+    MachineInput in = MachineInput.fromUTF16(input, 0, end).reverse(0);
+    int[] m = reverse().doExecute(in, 0, UNANCHORED, 2);
+    return m == null ? null : new int[] {end - m[1], end - m[0]};
+  }
+
   /**
    * Returns true iff this regexp matches the UTF-8 byte array {@code b}.
    */
@@ -61,7 +61,8 @@ class Regexp {
   Map<String, Integer> namedGroups; // map of group name -> capturing index
   // Do update copy ctor when adding new fields!
 
-  RegexpTracks Tracks = new RegexpTracks(this);
+  // Set by a Parser only if it records tracks; null otherwise.
+  RegexpTracks Tracks;
 
   Regexp(Op op) {
     this.op = op;
@@ -86,7 +87,7 @@ class Regexp {
     runes = null;
     cap = min = max = 0;
     name = null;
-    Tracks = new RegexpTracks(this);
+    Tracks = null;
   }
 
   @Override
@@ -97,23 +98,35 @@ class Regexp {
   }
 
   public void MoveAllTracks(RegexpTracks rt) {
+    ArrayList<RegexpTracks> moved = new ArrayList<RegexpTracks>();
+    MoveAllTracks(moved);
+    rt.AddAllTracks(moved);
+  }
+
+  // MoveAllTracks appends the tracks of re and its subexpressions to |moved|, leaving them empty.
+  void MoveAllTracks(ArrayList<RegexpTracks> moved) {
     if (subs != null) {
       for (Regexp sub : subs) {
-        sub.MoveAllTracks(rt);
+        sub.MoveAllTracks(moved);
       }
     }
 
-    rt.AddTracks(Tracks);
+    moved.add(Tracks);
     Tracks = new RegexpTracks(this);
   }
 
   public void UpdateSubsAndTracks(Regexp[] ss) {
     subs = ss;
-    Tracks.ComposeTopmostTracks();
+    if (Tracks != null) {
+      Tracks.ComposeTopmostTracks();
+    }
   }
 
   public ArrayList<Track> GetAllTracks() {
-    ArrayList<Track> allTracks = new ArrayList<Track>(Tracks.GetAll());
+    ArrayList<Track> allTracks = new ArrayList<Track>();
+    if (Tracks != null) {
+      allTracks.addAll(Tracks.GetAll());
+    }
     if (subs != null) {
       for (Regexp sub : subs) {
         allTracks.addAll(sub.GetAllTracks());
@@ -1,7 +1,9 @@
 package com.google.re2j;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 // Both RegexpTracks and Tracks do not calculate on any regexps.
 // Instead, they just record states generated by the parser loop.
@@ -22,6 +24,13 @@ public class RegexpTracks {
 
     private boolean wasAlternation;
 
+    // Whether, as of the last ComposeTopmostTracks, the only tracks are elementary ones of which no
+    // two are consecutive, and all end by lastEnd.  Then a track appended after lastEnd joins no
+    // run, and there is nothing to compose; this keeps the pseudo-operators, which gather a track
+    // for each '|' or flag, from composing again on every one.
+    private boolean runFree;
+    private int lastEnd;
+
     void MarkAsAlternation() { wasAlternation = true; }
     boolean WasAlternation() { return wasAlternation; }
 
@@ -47,62 +56,84 @@ public class RegexpTracks {
 
     public ArrayList<Track> GetTopTracks(boolean includeMutableTrack) {
         ArrayList<Track> allTracks = new ArrayList<Track>();
-        ArrayList<Track> availableSubs = new ArrayList<Track>();
+        ArrayList<Track> tops = new ArrayList<Track>(topmostTracks.size());
+        for (Track top : topmostTracks) {
+            if (includeMutableTrack || !top.IsMutable()) {
+                tops.add(top);
+            }
+        }
+        allTracks.addAll(tops);
+
+        // Subs, composed and elementary tracks are hidden by the topmost tracks they overlap, and
+        // elementary tracks also by the composed tracks left.
+        TrackIndex topIndex = new TrackIndex(tops);
         if (re.subs != null) {
             for (Regexp sub : re.subs) {
-                availableSubs.addAll(sub.Tracks.GetTopTracks(true));
+                for (Track track : sub.Tracks.GetTopTracks(true)) {
+                    if (!topIndex.overlaps(track)) {
+                        allTracks.add(track);
+                    }
+                }
             }
         }
 
-        ArrayList<Track> availableComposed = composedTracks;
-        ArrayList<Track> availableTracks = tracks;
-        for (Track top : topmostTracks) {
-            if (!includeMutableTrack && top.IsMutable()) {
-                continue;
+        ArrayList<Track> availableComposed = new ArrayList<Track>(composedTracks.size());
+        for (Track composed : composedTracks) {
+            if (!topIndex.overlaps(composed)) {
+                availableComposed.add(composed);
             }
+        }
+        allTracks.addAll(availableComposed);
 
-            allTracks.add(top);
-            ArrayList<Track> tmpComposed = new ArrayList<Track>();
-            for (Track composed : availableComposed) {
-                if (composed.End <= top.Start || composed.Start >= top.End) {
-                    tmpComposed.add(composed);
-                }
+        TrackIndex composedIndex = new TrackIndex(availableComposed);
+        for (Track track : tracks) {
+            if (!topIndex.overlaps(track) && !composedIndex.overlaps(track)) {
+                allTracks.add(track);
             }
-            availableComposed = tmpComposed;
+        }
 
-            ArrayList<Track> tmpSubs = new ArrayList<Track>();
-            for (Track sub : availableSubs) {
-                if (sub.End <= top.Start || sub.Start >= top.End) {
-                    tmpSubs.add(sub);
-                }
-            }
-            availableSubs = tmpSubs;
+        Collections.sort(allTracks);
+        return allTracks;
+    }
 
-            ArrayList<Track> tmpTracks = new ArrayList<Track>();
-            for (Track track : availableTracks) {
-                if (track.End <= top.Start || track.Start >= top.End) {
-                    tmpTracks.add(track);
-                }
+    // A TrackIndex answers whether a track overlaps any of a set of tracks in O(log n): the
+    // tracks are sorted by start, and each one's end is the greatest of those up to it, so that a
+    // track overlaps one of the set iff the set's greatest end among the tracks starting before
+    // it ends is after it starts.
+    private static final class TrackIndex {
+        private final int[] starts;
+        private final int[] maxEnds;
+
+        TrackIndex(List<Track> set) {
+            int n = set.size();
+            long[] pairs = new long[n];
+            for (int i = 0; i < n; i++) {
+                Track track = set.get(i);
+                pairs[i] = (long) track.Start << 32 | (track.End & 0xffffffffL);
+            }
+            Arrays.sort(pairs);
+            starts = new int[n];
+            maxEnds = new int[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = (int) (pairs[i] >> 32);
+                maxEnds[i] = Math.max((int) pairs[i], i > 0 ? maxEnds[i-1] : Integer.MIN_VALUE);
             }
-            availableTracks = tmpTracks;
         }
 
-        allTracks.addAll(availableSubs);
-
-        for (Track composed : availableComposed) {
-            allTracks.add(composed);
-            ArrayList<Track> tmpTracks = new ArrayList<Track>();
-            for (Track track : availableTracks) {
-                if (track.End <= composed.Start || track.Start >= composed.End) {
-                    tmpTracks.add(track);
+        // overlaps reports whether some track of the set has Start < track.End and
+        // End > track.Start.
+        boolean overlaps(Track track) {
+            int lo = 0, hi = starts.length; // number of tracks starting before track.End
+            while (lo < hi) {
+                int m = (lo + hi) >>> 1;
+                if (starts[m] < track.End) {
+                    lo = m + 1;
+                } else {
+                    hi = m;
                 }
             }
-            availableTracks = tmpTracks;
+            return lo > 0 && maxEnds[lo-1] > track.Start;
         }
-
-        allTracks.addAll(availableTracks);
-        Collections.sort(allTracks);
-        return allTracks;
     }
 
     // Only tracks scanned in a single parser loop can be composed together.
@@ -110,6 +141,13 @@ public class RegexpTracks {
         if (tracks.size() == 0) {
             return;
         }
+        if (runFree && tracks.size() == 1 && (re.subs == null || re.subs.length == 0)
+                && tracks.get(0).Start > lastEnd) {
+            this.tracks.add(tracks.get(0));
+            lastEnd = tracks.get(0).End;
+            return;
+        }
+        runFree = false;
         // FIXME tracks must be consecutive. Validate them.
         this.tracks.addAll(tracks);
         if (tracks.size() > 1) {
@@ -123,80 +161,83 @@ public class RegexpTracks {
 
     // concat two RegexpTracks
     public void AddTracks(RegexpTracks that) {
-        tracks.addAll(that.tracks);
-        Collections.sort(tracks);
-        composedTracks.addAll(that.composedTracks);
-        Collections.sort(composedTracks);
-        removeOverlapped(composedTracks);
+        ArrayList<RegexpTracks> those = new ArrayList<RegexpTracks>(1);
+        those.add(that);
+        AddAllTracks(those);
+    }
 
-        for (Track track : that.topmostTracks) {
-            track.MarkReadonly();
-            topmostTracks.add(track);
+    // concat many RegexpTracks at once, so that the lists are sorted and cleaned only once
+    // however many there are.
+    public void AddAllTracks(List<RegexpTracks> those) {
+        if (those.isEmpty()) {
+            return;
         }
+        runFree = false;
 
+        for (RegexpTracks that : those) {
+            tracks.addAll(that.tracks);
+            composedTracks.addAll(that.composedTracks);
+            for (Track track : that.topmostTracks) {
+                track.MarkReadonly();
+                topmostTracks.add(track);
+            }
+        }
+
+        Collections.sort(tracks);
+        Collections.sort(composedTracks);
+        removeOverlapped(composedTracks);
         Collections.sort(topmostTracks);
         removeOverlapped(topmostTracks);
     }
 
+    // Removes each track overlapped by another from |sorted|, marking the one that overlaps it
+    // readonly.  A track is overlapped by an earlier one unless it is the empty track [s, s) followed
+    // by [s, s+1), which sort in that order.
+    //
+    // No kept track overlaps a later one, so their ends increase with their starts: a track is
+    // overlapped by a kept one iff the last kept one ends no earlier, and the first one that does,
+    // found by binary search, is the one that overlaps it first.
     public void removeOverlapped(ArrayList<Track> sorted) {
-        int i = 0;
-        while (i < sorted.size()) {
-            Track target = sorted.get(i);
-            int j = i+1;
-            boolean targetIsOverlapped = false;
-            while (j < sorted.size()) {
-                Track track = sorted.get(j);
-                if (target.Start <= track.Start && target.End >= track.End) {
-                    // track is overlapped by target
-                    target.MarkReadonly();
-                    sorted.remove(j);
-                    continue;
-                }
-
-                if (target.Start >= track.Start && target.End <= track.End) {
-                    // target is overlapped by track
-                    track.MarkReadonly();
-                    targetIsOverlapped = true;
+        int n = 0; // kept tracks are sorted[0:n]
+        for (int i = 0; i < sorted.size(); i++) {
+            Track track = sorted.get(i);
+            if (n > 0 && sorted.get(n-1).End >= track.End) {
+                int lo = 0, hi = n-1;
+                while (lo < hi) {
+                    int m = (lo + hi) >>> 1;
+                    if (sorted.get(m).End >= track.End) {
+                        hi = m;
+                    } else {
+                        lo = m + 1;
+                    }
                 }
-
-                j++;
+                // track is overlapped by sorted[lo]
+                sorted.get(lo).MarkReadonly();
+                continue;
             }
 
-            if (targetIsOverlapped) {
-                sorted.remove(i);
-                continue;
+            while (n > 0 && track.Start <= sorted.get(n-1).Start) {
+                // the last kept track is overlapped by track
+                track.MarkReadonly();
+                n--;
             }
 
-            i++;
+            sorted.set(n++, track);
         }
+
+        sorted.subList(n, sorted.size()).clear();
     }
 
     // particular cases for different types of Regexps
     public void ConcatLiterals(RegexpTracks that) {
-        // If one of Regexps is an escaped literal, it would has a composed track and two track w/ an escape sign in it
+        runFree = false;
+        // If one of Regexps is an escaped literal, it would has a composed track and two track w/ an escape sign in it.
+        // Literals are also merged across flag groups that do not change them, as in \Q.*\E(?i)\Q.*\E, so their
+        // tracks need not be consecutive; those are kept apart.
         if (topmostTracks.size() > 0 || that.topmostTracks.size() > 0
-                || composedTracks.size() > 0 || that.composedTracks.size() > 0) {
-            int lastEnd = 0, firstBegin = 0;
-            if (topmostTracks.size() > 0) {
-                lastEnd = topmostTracks.get(topmostTracks.size()-1).End;
-            } else if (composedTracks.size() > 0) {
-                lastEnd = composedTracks.get(composedTracks.size()-1).End;
-            } else {
-                lastEnd = tracks.get(tracks.size()-1).End;
-            }
-
-            if (that.topmostTracks.size() > 0) {
-                firstBegin = that.topmostTracks.get(0).Start;
-            } else if (that.composedTracks.size() > 0) {
-                firstBegin = that.composedTracks.get(0).Start;
-            } else {
-                firstBegin = that.tracks.get(0).Start;
-            }
-
-            if (lastEnd != firstBegin) {
-                throw new IllegalStateException("concatenated tracks should be consecutive");
-            }
-
+                || composedTracks.size() > 0 || that.composedTracks.size() > 0
+                || tracks.size() != 1 || that.tracks.size() != 1
+                || tracks.get(0).End != that.tracks.get(0).Start) {
             composedTracks.addAll(that.composedTracks);
             tracks.addAll(that.tracks);
             Collections.sort(composedTracks);
@@ -205,18 +246,6 @@ public class RegexpTracks {
             return;
         }
 
-        if (tracks.size() > 1) {
-            throw new IllegalStateException("literal track should have only 1 track but " + tracks.size());
-        }
-
-        if (that.tracks.size() > 1) {
-            throw new IllegalStateException("literal track should have only 1 track but " + that.tracks.size());
-        }
-
-        if (tracks.get(0).End != that.tracks.get(0).Start) {
-            throw new IllegalStateException("concatenated tracks should be consecutive");
-        }
-
         StringBuilder b = new StringBuilder();
         for (int r : re.runes) {
             b.appendCodePoint(r);
@@ -228,6 +257,19 @@ public class RegexpTracks {
     public void ComposeTopmostTracks() {
         // FIXME concat tracks, composed tracks and topmost tracks of subs
         ArrayList<Track> topmost = GetTopTracks(false);
+        runFree = false;
+        if ((re.subs == null || re.subs.length == 0) && composedTracks.isEmpty()
+                && topmostTracks.isEmpty()) {
+            runFree = true;
+            lastEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < topmost.size(); i++) {
+                Track track = topmost.get(i);
+                if (i > 0 && topmost.get(i-1).End == track.Start) {
+                    runFree = false;
+                }
+                lastEnd = Math.max(lastEnd, track.End);
+            }
+        }
         if (topmost.size() <= 1) {
             return;
         }
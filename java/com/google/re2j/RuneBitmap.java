@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// A RuneBitmap is the set of runes matched by a RUNE instruction as
+// bitmaps, so that a test is a bit lookup rather than a search of the
+// ranges.  Runes below 256 are in a 256-bit map.  For a class with many
+// ranges above Latin-1, such as \p{L}, the rest is a two-level table:
+// the block of 256 runes that r falls in indexes a shared 256-bit map, in
+// which empty and full blocks, and runs of equal blocks, are stored once.
+//
+// Built by RE2; used by Prog.matchRune.
+final class RuneBitmap {
+
+  // Fewest ranges above Latin-1 for which a class gets the two-level
+  // table; a search of fewer is as fast.
+  private static final int MIN_WIDE_RANGES = 8;
+
+  // Ids of the shared empty and full blocks.
+  private static final char EMPTY = 0;
+  private static final char FULL = 1;
+
+  final long[] latin1 = new long[4];
+  private char[] index; // the block of runes r >> 8 << 8 to r | 0xff, if wide
+  private long[] blocks; // four words for each block
+
+  private RuneBitmap() {}
+
+  // compute() sets the Inst.bitmap of the RUNE instructions of |prog|.
+  static void compute(Prog prog) {
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.getInst(pc);
+      if (inst.op == Inst.RUNE && inst.bitmap == null) {
+        inst.bitmap = of(Compiler.runeRanges(prog, pc));
+      }
+    }
+  }
+
+  // of() returns the bitmaps of the runes in |ranges|, sorted [lo, hi]
+  // pairs.
+  static RuneBitmap of(int[] ranges) {
+    RuneBitmap b = new RuneBitmap();
+    int wide = 0;
+    int max = -1;
+    for (int i = 0; i < ranges.length; i += 2) {
+      int lo = ranges[i];
+      int hi = ranges[i + 1];
+      if (lo <= 0xff) {
+        set(b.latin1, 0, lo, Math.min(hi, 0xff));
+      }
+      if (hi > 0xff) {
+        wide++;
+        max = Math.max(max, hi);
+      }
+    }
+    if (wide >= MIN_WIDE_RANGES) {
+      b.buildTable(ranges, max);
+    }
+    return b;
+  }
+
+  private void buildTable(int[] ranges, int max) {
+    // Sorted by their low ends, with no overlaps.
+    long[] pairs = new long[ranges.length / 2];
+    for (int i = 0; i < pairs.length; i++) {
+      pairs[i] = (long) ranges[2 * i] << 32 | ranges[2 * i + 1];
+    }
+    Arrays.sort(pairs);
+    index = new char[(max >> 8) + 1];
+    blocks = new long[4 * 16];
+    int numBlocks = 2;
+    Arrays.fill(blocks, 4, 8, -1L);
+    long[] block = new long[4];
+    int j = 0; // first range that may reach the current block
+    for (int k = 1; k < index.length; k++) {
+      int base = k << 8;
+      Arrays.fill(block, 0);
+      while (j < pairs.length && (int) pairs[j] < base) {
+        j++;
+      }
+      for (int i = j; i < pairs.length && (int) (pairs[i] >> 32) <= (base | 0xff); i++) {
+        int lo = Math.max((int) (pairs[i] >> 32), base) - base;
+        int hi = Math.min((int) pairs[i], base | 0xff) - base;
+        set(block, 0, lo, hi);
+      }
+      char id;
+      if ((block[0] | block[1] | block[2] | block[3]) == 0) {
+        id = EMPTY;
+      } else if ((block[0] & block[1] & block[2] & block[3]) == -1L) {
+        id = FULL;
+      } else if (numBlocks > 2 && sameAsLast(block, numBlocks)) {
+        id = (char) (numBlocks - 1);
+      } else {
+        if (4 * numBlocks == blocks.length) {
+          blocks = Arrays.copyOf(blocks, 2 * blocks.length);
+        }
+        System.arraycopy(block, 0, blocks, 4 * numBlocks, 4);
+        id = (char) numBlocks++;
+      }
+      index[k] = id;
+    }
+    blocks = Arrays.copyOf(blocks, 4 * numBlocks);
+  }
+
+  // set() sets bits lo through hi of the 256-bit map at words[off].
+  private static void set(long[] words, int off, int lo, int hi) {
+    for (int w = lo >> 6; w <= hi >> 6; w++) {
+      long mask = -1L;
+      if (w == lo >> 6) {
+        mask &= -1L << lo;
+      }
+      if (w == hi >> 6 && (hi & 63) != 63) {
+        mask &= (1L << hi + 1) - 1;
+      }
+      words[off + w] |= mask;
+    }
+  }
+
+  private boolean sameAsLast(long[] block, int numBlocks) {
+    int last = 4 * (numBlocks - 1);
+    return blocks[last] == block[0]
+        && blocks[last + 1] == block[1]
+        && blocks[last + 2] == block[2]
+        && blocks[last + 3] == block[3];
+  }
+
+  // hasTable() reports whether contains() answers for every rune, and not
+  // only for those below 256.
+  boolean hasTable() {
+    return index != null;
+  }
+
+  // contains() reports whether |r| is in the set.  Only for r < 256, or
+  // if hasTable().
+  boolean contains(int r) {
+    if (r < 0x100) {
+      return r >= 0 && (latin1[r >> 6] & 1L << r) != 0;
+    }
+    int k = r >> 8;
+    if (k >= index.length) {
+      return false;
+    }
+    return (blocks[4 * index[k] + (r >> 6 & 3)] & 1L << r) != 0;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.util.Arrays;
+
+// RuneClasses divides the runes into classes that every instruction of a
+// program treats alike: the runes between consecutive boundaries of the
+// ranges in its instructions.  A matcher looks up the class of each rune
+// of the input once, and a RUNE instruction then tests one bit of its
+// Inst.classes set (Prog.matchClass) instead of searching its ranges or
+// case folds.
+//
+// Newlines and the ASCII word runes are in classes of their own as well,
+// so that the runes of a class also agree on every empty-width condition.
+//
+// Built by RE2; used by Machine and DFA.
+final class RuneClasses {
+
+  // Largest total size of the class sets of a program, in bits.
+  private static final int MAX_BITS = 1 << 22;
+
+  // The first rune of each class, in increasing order; starts[0] is 0.
+  private final int[] starts;
+  private final int[] ascii = new int[128];
+
+  private RuneClasses(int[] starts) {
+    this.starts = starts;
+  }
+
+  // compute() returns the classes of |prog| and sets the Inst.classes of
+  // its RUNE instructions, or returns null if the sets would be too large.
+  static RuneClasses compute(Prog prog) {
+    int[] bounds = new int[64];
+    int n = 0;
+    int[] context = {'\n', '\n', '0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    int numRune = 0;
+    for (int pc = -1; pc < prog.numInst(); pc++) {
+      int[] ranges;
+      if (pc < 0) {
+        ranges = context;
+      } else {
+        Inst inst = prog.getInst(pc);
+        if (!Inst.isRuneOp(inst.op)) {
+          continue;
+        }
+        ranges = Compiler.runeRanges(prog, pc);
+        if (inst.op == Inst.RUNE) {
+          numRune++;
+        }
+      }
+      if (n + ranges.length > bounds.length) {
+        bounds = Arrays.copyOf(bounds, Math.max(2 * bounds.length, n + ranges.length));
+      }
+      for (int i = 0; i < ranges.length; i += 2) {
+        bounds[n++] = ranges[i];
+        bounds[n++] = ranges[i + 1] + 1;
+      }
+    }
+    Arrays.sort(bounds, 0, n);
+    int[] starts = new int[n + 1];
+    int k = 1; // starts[0] = 0
+    for (int i = 0; i < n; i++) {
+      int b = bounds[i];
+      if (b > starts[k - 1] && b <= Unicode.MAX_RUNE) {
+        starts[k++] = b;
+      }
+    }
+    if ((long) numRune * k > MAX_BITS) {
+      return null;
+    }
+    RuneClasses classes = new RuneClasses(Arrays.copyOf(starts, k));
+    for (int r = 0; r < 128; r++) {
+      classes.ascii[r] = classes.search(r);
+    }
+    for (int pc = 0; pc < prog.numInst(); pc++) {
+      Inst inst = prog.getInst(pc);
+      if (inst.op != Inst.RUNE) {
+        continue;
+      }
+      long[] set = new long[(k + 63) >> 6];
+      int[] ranges = Compiler.runeRanges(prog, pc);
+      for (int i = 0; i < ranges.length; i += 2) {
+        for (int c = classes.classOf(ranges[i]); c <= classes.classOf(ranges[i + 1]); c++) {
+          set[c >> 6] |= 1L << c;
+        }
+      }
+      inst.classes = set;
+    }
+    return classes;
+  }
+
+  // Returns the number of classes.
+  int size() {
+    return starts.length;
+  }
+
+  // classOf() returns the class of rune |r|, or -1 if |r| is negative.
+  int classOf(int r) {
+    if (r < 128) {
+      return r < 0 ? -1 : ascii[r];
+    }
+    return search(r);
+  }
+
+  // search() returns the last class that starts at or before |r|.
+  private int search(int r) {
+    int lo = 0;
+    int hi = starts.length;
+    while (hi - lo > 1) {
+      int m = (lo + hi) >>> 1;
+      if (starts[m] <= r) {
+        lo = m;
+      } else {
+        hi = m;
+      }
+    }
+    return lo;
+  }
+}
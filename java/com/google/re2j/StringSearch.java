@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+
+package com.google.re2j;
+
+import java.io.UnsupportedEncodingException;
+
+// A StringSearch finds a fixed literal in UTF-16 or UTF-8 text by the
+// Boyer-Moore-Horspool algorithm: it compares the last unit of the window
+// first, and on a mismatch shifts the window by how far that unit's last
+// occurrence in the literal is from the literal's end.  Long literals in
+// text that mostly lacks them are found in about n/m steps rather than n.
+//
+// The shift tables are indexed by the low byte of each unit, so a UTF-16
+// table needs no more space than a UTF-8 one; units that share a low byte
+// share the smallest of their shifts, which is always safe.
+//
+// Built by RE2.compileImpl for the literal prefix and the required literal;
+// called by MachineInput.
+final class StringSearch {
+
+  // Shortest literal searched for with the shift tables in a String; for
+  // shorter ones String.indexOf does as well.
+  private static final int MIN_SKIP = 4;
+
+  private final String literal;
+  private final char[] chars;
+  private final byte[] bytes;
+  private final int[] charShift = new int[256];
+  private final int[] byteShift = new int[256];
+
+  StringSearch(String literal) {
+    this.literal = literal;
+    this.chars = literal.toCharArray();
+    try {
+      this.bytes = literal.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("can't happen");
+    }
+    fill(charShift, chars.length);
+    for (int i = 0; i < chars.length - 1; i++) {
+      charShift[chars[i] & 0xff] = chars.length - 1 - i;
+    }
+    fill(byteShift, bytes.length);
+    for (int i = 0; i < bytes.length - 1; i++) {
+      byteShift[bytes[i] & 0xff] = bytes.length - 1 - i;
+    }
+  }
+
+  private static void fill(int[] a, int v) {
+    for (int i = 0; i < a.length; i++) {
+      a[i] = v;
+    }
+  }
+
+  // Returns the length of the literal in UTF-16 units.
+  int length() {
+    return chars.length;
+  }
+
+  // Returns the length of the literal in UTF-8 bytes.
+  int lengthUTF8() {
+    return bytes.length;
+  }
+
+  // indexOf() returns the index of the first occurrence of the literal in
+  // s[from:to], or -1 if there is none.
+  int indexOf(CharSequence s, int from, int to) {
+    int m = chars.length;
+    if (m < MIN_SKIP && s instanceof String) {
+      int i = ((String) s).indexOf(literal, from);
+      return i + m <= to ? i : -1;
+    }
+    if (m == 0) {
+      return from <= to ? from : -1;
+    }
+    int last = m - 1;
+    char c = chars[last];
+    for (int i = from; i <= to - m; ) {
+      char d = s.charAt(i + last);
+      if (d == c) {
+        int j = 0;
+        while (j < last && s.charAt(i + j) == chars[j]) {
+          j++;
+        }
+        if (j == last) {
+          return i;
+        }
+      }
+      i += charShift[d & 0xff];
+    }
+    return -1;
+  }
+
+  // indexOf() is like the above for UTF-8 text b[from:to].
+  int indexOf(byte[] b, int from, int to) {
+    int m = bytes.length;
+    if (m == 0) {
+      return from <= to ? from : -1;
+    }
+    int last = m - 1;
+    byte c = bytes[last];
+    for (int i = from; i <= to - m; ) {
+      byte d = b[i + last];
+      if (d == c) {
+        int j = 0;
+        while (j < last && b[i + j] == bytes[j]) {
+          j++;
+        }
+        if (j == last) {
+          return i;
+        }
+      }
+      i += byteShift[d & 0xff];
+    }
+    return -1;
+  }
+}
@@ -122,6 +122,16 @@ public class Track implements Comparable<Track>  {
         return new Track(range[0], range[1], composedText);
     }
 
+    // Returns a new list of copies of the given tracks, whose fields callers may change without
+    // affecting the originals.
+    static ArrayList<Track> CopyAll(List<Track> tracks) {
+        ArrayList<Track> copies = new ArrayList<Track>(tracks.size());
+        for (Track tr : tracks) {
+            copies.add(new Track(tr.Start, tr.End, tr.Comments));
+        }
+        return copies;
+    }
+
     private static int[] getTrackRange(ArrayList<Track> tracks) {
         int start = Integer.MAX_VALUE, end = 0;
         for (Track track : tracks) {
@@ -388,6 +398,10 @@ public class Track implements Comparable<Track>  {
                     b.append("(non-greedy)");
                 }
                 break;
+            case VERTICAL_BAR:
+                omitInComposed = true;
+                b.append(CommentMap.get("|"));
+                break;
             case LEFT_PAREN:
                 // FIXME omit in composed tracks if no flags set
                 omitInComposed = true;
@@ -414,6 +428,12 @@ public class Track implements Comparable<Track>  {
             case ANY_CHAR_NOT_NL:
                 b.append(CommentMap.get("."));
                 break;
+            case WORD_BOUNDARY:
+                b.append(CommentMap.get("\\b"));
+                break;
+            case NO_WORD_BOUNDARY:
+                b.append(CommentMap.get("\\B"));
+                break;
             default:
                 throw new IllegalStateException("unsupported composed regexp " + re.op);
         }
@@ -74,7 +74,7 @@ class Unicode {
     if (r <= MAX_LATIN1) {
       return Character.isUpperCase((char) r);
     }
-    return is(UnicodeTables.Upper, r);
+    return is(UnicodeTables.category("Lu"), r);
   }
 
   // isPrint reports whether the rune is printable (Unicode L/M/N/P/S or ' ').
@@ -82,11 +82,11 @@ class Unicode {
     if (r <= MAX_LATIN1) {
       return (r >= 0x20 && r < 0x7F) || (r >= 0xA1 && r != 0xAD);
     }
-    return is(UnicodeTables.L, r)
-        || is(UnicodeTables.M, r)
-        || is(UnicodeTables.N, r)
-        || is(UnicodeTables.P, r)
-        || is(UnicodeTables.S, r);
+    return is(UnicodeTables.category("L"), r)
+        || is(UnicodeTables.category("M"), r)
+        || is(UnicodeTables.category("N"), r)
+        || is(UnicodeTables.category("P"), r)
+        || is(UnicodeTables.category("S"), r);
   }
 
   // simpleFold iterates over Unicode code points equivalent under
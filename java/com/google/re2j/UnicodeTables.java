@@ -8,300 +8,40 @@
 // Do not change this file, your edits will be lost. Instead change UnicodeTablesGenerator.java.
 package com.google.re2j;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 final class UnicodeTables {
   static final char[] CASE_ORBIT;
 
-  static final int[][] Lu = make_Lu();
-
-  static final int[][] Ll = make_Ll();
-
-  static final int[][] Lt = make_Lt();
-
-  static final int[][] Lm = make_Lm();
-
-  static final int[][] Lo = make_Lo();
-
-  static final int[][] Mn = make_Mn();
-
-  static final int[][] Me = make_Me();
-
-  static final int[][] Mc = make_Mc();
-
-  static final int[][] Nd = make_Nd();
-
-  static final int[][] Nl = make_Nl();
-
-  static final int[][] No = make_No();
-
-  static final int[][] Zs = make_Zs();
-
-  static final int[][] Zl = make_Zl();
-
-  static final int[][] Zp = make_Zp();
-
-  static final int[][] Cc = make_Cc();
-
-  static final int[][] Cf = make_Cf();
-
-  static final int[][] Co = make_Co();
-
-  static final int[][] Cs = make_Cs();
-
-  static final int[][] Pd = make_Pd();
-
-  static final int[][] Ps = make_Ps();
-
-  static final int[][] Pe = make_Pe();
-
-  static final int[][] Pc = make_Pc();
-
-  static final int[][] Po = make_Po();
-
-  static final int[][] Sm = make_Sm();
-
-  static final int[][] Sc = make_Sc();
-
-  static final int[][] Sk = make_Sk();
-
-  static final int[][] So = make_So();
-
-  static final int[][] Pi = make_Pi();
-
-  static final int[][] Pf = make_Pf();
-
-  static final int[][] P = make_P();
-
-  static final int[][] S = make_S();
-
-  static final int[][] C = make_C();
-
-  static final int[][] Z = make_Z();
-
-  static final int[][] L = make_L();
-
-  static final int[][] M = make_M();
-
-  static final int[][] N = make_N();
-
-  static final int[][] Common = make_Common();
-
-  static final int[][] Inherited = make_Inherited();
-
-  static final int[][] Bamum = make_Bamum();
-
-  static final int[][] Arabic = make_Arabic();
-
-  static final int[][] Lisu = make_Lisu();
-
-  static final int[][] Armenian = make_Armenian();
-
-  static final int[][] Bengali = make_Bengali();
-
-  static final int[][] Old_South_Arabian = make_Old_South_Arabian();
-
-  static final int[][] Bopomofo = make_Bopomofo();
-
-  static final int[][] Cherokee = make_Cherokee();
-
-  static final int[][] Coptic = make_Coptic();
-
-  static final int[][] Cyrillic = make_Cyrillic();
-
-  static final int[][] Deseret = make_Deseret();
-
-  static final int[][] Devanagari = make_Devanagari();
-
-  static final int[][] Ethiopic = make_Ethiopic();
-
-  static final int[][] Georgian = make_Georgian();
-
-  static final int[][] Gothic = make_Gothic();
-
-  static final int[][] Greek = make_Greek();
-
-  static final int[][] Gujarati = make_Gujarati();
-
-  static final int[][] Gurmukhi = make_Gurmukhi();
-
-  static final int[][] Han = make_Han();
-
-  static final int[][] Hangul = make_Hangul();
-
-  static final int[][] Hebrew = make_Hebrew();
-
-  static final int[][] Hiragana = make_Hiragana();
-
-  static final int[][] Kannada = make_Kannada();
-
-  static final int[][] Katakana = make_Katakana();
-
-  static final int[][] Khmer = make_Khmer();
-
-  static final int[][] Lao = make_Lao();
-
-  static final int[][] Latin = make_Latin();
-
-  static final int[][] Malayalam = make_Malayalam();
-
-  static final int[][] Mongolian = make_Mongolian();
-
-  static final int[][] Myanmar = make_Myanmar();
-
-  static final int[][] Ogham = make_Ogham();
-
-  static final int[][] Old_Italic = make_Old_Italic();
-
-  static final int[][] Oriya = make_Oriya();
-
-  static final int[][] Runic = make_Runic();
-
-  static final int[][] Sinhala = make_Sinhala();
-
-  static final int[][] Syriac = make_Syriac();
-
-  static final int[][] Tamil = make_Tamil();
-
-  static final int[][] Telugu = make_Telugu();
-
-  static final int[][] Thaana = make_Thaana();
-
-  static final int[][] Thai = make_Thai();
-
-  static final int[][] Tibetan = make_Tibetan();
-
-  static final int[][] Canadian_Aboriginal = make_Canadian_Aboriginal();
-
-  static final int[][] Yi = make_Yi();
-
-  static final int[][] Tagalog = make_Tagalog();
-
-  static final int[][] Hanunoo = make_Hanunoo();
-
-  static final int[][] Buhid = make_Buhid();
-
-  static final int[][] Tagbanwa = make_Tagbanwa();
-
-  static final int[][] Braille = make_Braille();
-
-  static final int[][] Cypriot = make_Cypriot();
-
-  static final int[][] Limbu = make_Limbu();
-
-  static final int[][] Linear_B = make_Linear_B();
-
-  static final int[][] Osmanya = make_Osmanya();
-
-  static final int[][] Shavian = make_Shavian();
-
-  static final int[][] Tai_Le = make_Tai_Le();
-
-  static final int[][] Ugaritic = make_Ugaritic();
-
-  static final int[][] Buginese = make_Buginese();
-
-  static final int[][] Glagolitic = make_Glagolitic();
-
-  static final int[][] Kharoshthi = make_Kharoshthi();
-
-  static final int[][] Syloti_Nagri = make_Syloti_Nagri();
-
-  static final int[][] New_Tai_Lue = make_New_Tai_Lue();
-
-  static final int[][] Tifinagh = make_Tifinagh();
-
-  static final int[][] Old_Persian = make_Old_Persian();
-
-  static final int[][] Balinese = make_Balinese();
-
-  static final int[][] Batak = make_Batak();
-
-  static final int[][] Brahmi = make_Brahmi();
-
-  static final int[][] Cham = make_Cham();
-
-  static final int[][] Egyptian_Hieroglyphs = make_Egyptian_Hieroglyphs();
-
-  static final int[][] Javanese = make_Javanese();
-
-  static final int[][] Kayah_Li = make_Kayah_Li();
-
-  static final int[][] Lepcha = make_Lepcha();
-
-  static final int[][] Mandaic = make_Mandaic();
-
-  static final int[][] Nko = make_Nko();
-
-  static final int[][] Old_Turkic = make_Old_Turkic();
-
-  static final int[][] Phags_Pa = make_Phags_Pa();
-
-  static final int[][] Phoenician = make_Phoenician();
-
-  static final int[][] Vai = make_Vai();
-
-  static final int[][] Cuneiform = make_Cuneiform();
-
-  static final int[][] Unknown = make_Unknown();
-
-  static final int[][] Carian = make_Carian();
-
-  static final int[][] Tai_Tham = make_Tai_Tham();
-
-  static final int[][] Lycian = make_Lycian();
-
-  static final int[][] Lydian = make_Lydian();
-
-  static final int[][] Ol_Chiki = make_Ol_Chiki();
-
-  static final int[][] Rejang = make_Rejang();
-
-  static final int[][] Saurashtra = make_Saurashtra();
-
-  static final int[][] Sundanese = make_Sundanese();
-
-  static final int[][] Meetei_Mayek = make_Meetei_Mayek();
-
-  static final int[][] Imperial_Aramaic = make_Imperial_Aramaic();
-
-  static final int[][] Avestan = make_Avestan();
-
-  static final int[][] Kaithi = make_Kaithi();
-
-  static final int[][] Inscriptional_Pahlavi = make_Inscriptional_Pahlavi();
-
-  static final int[][] Inscriptional_Parthian = make_Inscriptional_Parthian();
-
-  static final int[][] Samaritan = make_Samaritan();
-
-  static final int[][] Tai_Viet = make_Tai_Viet();
-
-  static final int[][] Upper = Lu;
-
-  static final Map<String, int[][]> CATEGORIES = Categories();
-
-  static final Map<String, int[][]> SCRIPTS = Scripts();
-
-  private static final int[][] foldCommon = make_foldCommon();
-
-  private static final int[][] foldInherited = make_foldInherited();
-
-  private static final int[][] foldGreek = make_foldGreek();
-
-  static final Map<String, int[][]> FOLD_SCRIPT = FoldScript();
-
-  private static final int[][] foldLu = make_foldLu();
-
-  private static final int[][] foldLl = make_foldLl();
-
-  private static final int[][] foldLt = make_foldLt();
-
-  private static final int[][] foldMn = make_foldMn();
-
-  static final Map<String, int[][]> FOLD_CATEGORIES = FoldCategory();
+  private static final String[] CATEGORY_NAMES = {
+    "C", "Cc", "Cf", "Co", "Cs", "L", "Ll", "Lm", "Lo", "Lt", "Lu", "M", "Mc", "Me", "Mn", "N",
+    "Nd", "Nl", "No", "P", "Pc", "Pd", "Pe", "Pf", "Pi", "Po", "Ps", "S", "Sc", "Sk", "Sm", "So",
+    "Z", "Zl", "Zp", "Zs"
+  };
+
+  private static final String[] SCRIPT_NAMES = {
+    "Arabic", "Armenian", "Avestan", "Balinese", "Bamum", "Batak", "Bengali", "Bopomofo", "Brahmi",
+    "Braille", "Buginese", "Buhid", "Canadian_Aboriginal", "Carian", "Cham", "Cherokee", "Common",
+    "Coptic", "Cuneiform", "Cypriot", "Cyrillic", "Deseret", "Devanagari", "Egyptian_Hieroglyphs",
+    "Ethiopic", "Georgian", "Glagolitic", "Gothic", "Greek", "Gujarati", "Gurmukhi", "Han",
+    "Hangul", "Hanunoo", "Hebrew", "Hiragana", "Imperial_Aramaic", "Inherited",
+    "Inscriptional_Pahlavi", "Inscriptional_Parthian", "Javanese", "Kaithi", "Kannada", "Katakana",
+    "Kayah_Li", "Kharoshthi", "Khmer", "Lao", "Latin", "Lepcha", "Limbu", "Linear_B", "Lisu",
+    "Lycian", "Lydian", "Malayalam", "Mandaic", "Meetei_Mayek", "Mongolian", "Myanmar",
+    "New_Tai_Lue", "Nko", "Ogham", "Ol_Chiki", "Old_Italic", "Old_Persian", "Old_South_Arabian",
+    "Old_Turkic", "Oriya", "Osmanya", "Phags_Pa", "Phoenician", "Rejang", "Runic", "Samaritan",
+    "Saurashtra", "Shavian", "Sinhala", "Sundanese", "Syloti_Nagri", "Syriac", "Tagalog",
+    "Tagbanwa", "Tai_Le", "Tai_Tham", "Tai_Viet", "Tamil", "Telugu", "Thaana", "Thai", "Tibetan",
+    "Tifinagh", "Ugaritic", "Unknown", "Vai", "Yi"
+  };
+
+  private static final String[] FOLD_CATEGORY_NAMES = {
+    "Ll", "Lt", "Lu", "Mn"
+  };
+
+  private static final String[] FOLD_SCRIPT_NAMES = {
+    "Common", "Greek", "Inherited"
+  };
 
   static {
     CASE_ORBIT = new char[8492];
@@ -3927,148 +3667,6 @@ final class UnicodeTables {
     return new int[][] {{0xAA80, 0xAAC2, 1}, {0xAADB, 0xAADF, 1}};
   }
 
-  private static Map<String, int[][]> Categories() {
-    Map<String, int[][]> map = new HashMap<String, int[][]>();
-    map.put("Lu", Lu);
-    map.put("Ll", Ll);
-    map.put("Lt", Lt);
-    map.put("Lm", Lm);
-    map.put("Lo", Lo);
-    map.put("Mn", Mn);
-    map.put("Me", Me);
-    map.put("Mc", Mc);
-    map.put("Nd", Nd);
-    map.put("Nl", Nl);
-    map.put("No", No);
-    map.put("Zs", Zs);
-    map.put("Zl", Zl);
-    map.put("Zp", Zp);
-    map.put("Cc", Cc);
-    map.put("Cf", Cf);
-    map.put("Co", Co);
-    map.put("Cs", Cs);
-    map.put("Pd", Pd);
-    map.put("Ps", Ps);
-    map.put("Pe", Pe);
-    map.put("Pc", Pc);
-    map.put("Po", Po);
-    map.put("Sm", Sm);
-    map.put("Sc", Sc);
-    map.put("Sk", Sk);
-    map.put("So", So);
-    map.put("Pi", Pi);
-    map.put("Pf", Pf);
-    map.put("P", P);
-    map.put("S", S);
-    map.put("C", C);
-    map.put("Z", Z);
-    map.put("L", L);
-    map.put("M", M);
-    map.put("N", N);
-    return Collections.unmodifiableMap(map);
-  }
-
-  private static Map<String, int[][]> Scripts() {
-    Map<String, int[][]> map = new HashMap<String, int[][]>();
-    map.put("Common", Common);
-    map.put("Inherited", Inherited);
-    map.put("Bamum", Bamum);
-    map.put("Arabic", Arabic);
-    map.put("Lisu", Lisu);
-    map.put("Armenian", Armenian);
-    map.put("Bengali", Bengali);
-    map.put("Old_South_Arabian", Old_South_Arabian);
-    map.put("Bopomofo", Bopomofo);
-    map.put("Cherokee", Cherokee);
-    map.put("Coptic", Coptic);
-    map.put("Cyrillic", Cyrillic);
-    map.put("Deseret", Deseret);
-    map.put("Devanagari", Devanagari);
-    map.put("Ethiopic", Ethiopic);
-    map.put("Georgian", Georgian);
-    map.put("Gothic", Gothic);
-    map.put("Greek", Greek);
-    map.put("Gujarati", Gujarati);
-    map.put("Gurmukhi", Gurmukhi);
-    map.put("Han", Han);
-    map.put("Hangul", Hangul);
-    map.put("Hebrew", Hebrew);
-    map.put("Hiragana", Hiragana);
-    map.put("Kannada", Kannada);
-    map.put("Katakana", Katakana);
-    map.put("Khmer", Khmer);
-    map.put("Lao", Lao);
-    map.put("Latin", Latin);
-    map.put("Malayalam", Malayalam);
-    map.put("Mongolian", Mongolian);
-    map.put("Myanmar", Myanmar);
-    map.put("Ogham", Ogham);
-    map.put("Old_Italic", Old_Italic);
-    map.put("Oriya", Oriya);
-    map.put("Runic", Runic);
-    map.put("Sinhala", Sinhala);
-    map.put("Syriac", Syriac);
-    map.put("Tamil", Tamil);
-    map.put("Telugu", Telugu);
-    map.put("Thaana", Thaana);
-    map.put("Thai", Thai);
-    map.put("Tibetan", Tibetan);
-    map.put("Canadian_Aboriginal", Canadian_Aboriginal);
-    map.put("Yi", Yi);
-    map.put("Tagalog", Tagalog);
-    map.put("Hanunoo", Hanunoo);
-    map.put("Buhid", Buhid);
-    map.put("Tagbanwa", Tagbanwa);
-    map.put("Braille", Braille);
-    map.put("Cypriot", Cypriot);
-    map.put("Limbu", Limbu);
-    map.put("Linear_B", Linear_B);
-    map.put("Osmanya", Osmanya);
-    map.put("Shavian", Shavian);
-    map.put("Tai_Le", Tai_Le);
-    map.put("Ugaritic", Ugaritic);
-    map.put("Buginese", Buginese);
-    map.put("Glagolitic", Glagolitic);
-    map.put("Kharoshthi", Kharoshthi);
-    map.put("Syloti_Nagri", Syloti_Nagri);
-    map.put("New_Tai_Lue", New_Tai_Lue);
-    map.put("Tifinagh", Tifinagh);
-    map.put("Old_Persian", Old_Persian);
-    map.put("Balinese", Balinese);
-    map.put("Batak", Batak);
-    map.put("Brahmi", Brahmi);
-    map.put("Cham", Cham);
-    map.put("Egyptian_Hieroglyphs", Egyptian_Hieroglyphs);
-    map.put("Javanese", Javanese);
-    map.put("Kayah_Li", Kayah_Li);
-    map.put("Lepcha", Lepcha);
-    map.put("Mandaic", Mandaic);
-    map.put("Nko", Nko);
-    map.put("Old_Turkic", Old_Turkic);
-    map.put("Phags_Pa", Phags_Pa);
-    map.put("Phoenician", Phoenician);
-    map.put("Vai", Vai);
-    map.put("Cuneiform", Cuneiform);
-    map.put("Unknown", Unknown);
-    map.put("Carian", Carian);
-    map.put("Tai_Tham", Tai_Tham);
-    map.put("Lycian", Lycian);
-    map.put("Lydian", Lydian);
-    map.put("Ol_Chiki", Ol_Chiki);
-    map.put("Rejang", Rejang);
-    map.put("Saurashtra", Saurashtra);
-    map.put("Sundanese", Sundanese);
-    map.put("Meetei_Mayek", Meetei_Mayek);
-    map.put("Imperial_Aramaic", Imperial_Aramaic);
-    map.put("Avestan", Avestan);
-    map.put("Kaithi", Kaithi);
-    map.put("Inscriptional_Pahlavi", Inscriptional_Pahlavi);
-    map.put("Inscriptional_Parthian", Inscriptional_Parthian);
-    map.put("Samaritan", Samaritan);
-    map.put("Tai_Viet", Tai_Viet);
-    return Collections.unmodifiableMap(map);
-  }
-
   private static int[][] make_foldCommon() {
     return new int[][] {{0x039C, 0x03BC, 32}};
   }
@@ -4081,14 +3679,6 @@ final class UnicodeTables {
     return new int[][] {{0x00B5, 0x0345, 656}};
   }
 
-  private static Map<String, int[][]> FoldScript() {
-    Map<String, int[][]> map = new HashMap<String, int[][]>();
-    map.put("Common", foldCommon);
-    map.put("Inherited", foldInherited);
-    map.put("Greek", foldGreek);
-    return map;
-  }
-
   private static int[][] make_foldLu() {
     return new int[][] {
       {0x0061, 0x007A, 1},
@@ -4224,12 +3814,885 @@ final class UnicodeTables {
     return new int[][] {{0x0399, 0x03B9, 32}, {0x1FBE, 0x1FBE, 1}};
   }
 
-  private static Map<String, int[][]> FoldCategory() {
-    Map<String, int[][]> map = new HashMap<String, int[][]>();
-    map.put("Lu", foldLu);
-    map.put("Ll", foldLl);
-    map.put("Lt", foldLt);
-    map.put("Mn", foldMn);
-    return map;
+  static int[][] category(String name) {
+    int i = Arrays.binarySearch(CATEGORY_NAMES, name);
+    return i < 0 ? null : categoryTable(i);
+  }
+
+  private static int[][] categoryTable(int i) {
+    switch (i) {
+      case 0:
+        return C.TABLE;
+      case 1:
+        return Cc.TABLE;
+      case 2:
+        return Cf.TABLE;
+      case 3:
+        return Co.TABLE;
+      case 4:
+        return Cs.TABLE;
+      case 5:
+        return L.TABLE;
+      case 6:
+        return Ll.TABLE;
+      case 7:
+        return Lm.TABLE;
+      case 8:
+        return Lo.TABLE;
+      case 9:
+        return Lt.TABLE;
+      case 10:
+        return Lu.TABLE;
+      case 11:
+        return M.TABLE;
+      case 12:
+        return Mc.TABLE;
+      case 13:
+        return Me.TABLE;
+      case 14:
+        return Mn.TABLE;
+      case 15:
+        return N.TABLE;
+      case 16:
+        return Nd.TABLE;
+      case 17:
+        return Nl.TABLE;
+      case 18:
+        return No.TABLE;
+      case 19:
+        return P.TABLE;
+      case 20:
+        return Pc.TABLE;
+      case 21:
+        return Pd.TABLE;
+      case 22:
+        return Pe.TABLE;
+      case 23:
+        return Pf.TABLE;
+      case 24:
+        return Pi.TABLE;
+      case 25:
+        return Po.TABLE;
+      case 26:
+        return Ps.TABLE;
+      case 27:
+        return S.TABLE;
+      case 28:
+        return Sc.TABLE;
+      case 29:
+        return Sk.TABLE;
+      case 30:
+        return Sm.TABLE;
+      case 31:
+        return So.TABLE;
+      case 32:
+        return Z.TABLE;
+      case 33:
+        return Zl.TABLE;
+      case 34:
+        return Zp.TABLE;
+      case 35:
+        return Zs.TABLE;
+      default:
+        return null;
+    }
+  }
+
+  static int[][] script(String name) {
+    int i = Arrays.binarySearch(SCRIPT_NAMES, name);
+    return i < 0 ? null : scriptTable(i);
+  }
+
+  private static int[][] scriptTable(int i) {
+    switch (i) {
+      case 0:
+        return Arabic.TABLE;
+      case 1:
+        return Armenian.TABLE;
+      case 2:
+        return Avestan.TABLE;
+      case 3:
+        return Balinese.TABLE;
+      case 4:
+        return Bamum.TABLE;
+      case 5:
+        return Batak.TABLE;
+      case 6:
+        return Bengali.TABLE;
+      case 7:
+        return Bopomofo.TABLE;
+      case 8:
+        return Brahmi.TABLE;
+      case 9:
+        return Braille.TABLE;
+      case 10:
+        return Buginese.TABLE;
+      case 11:
+        return Buhid.TABLE;
+      case 12:
+        return Canadian_Aboriginal.TABLE;
+      case 13:
+        return Carian.TABLE;
+      case 14:
+        return Cham.TABLE;
+      case 15:
+        return Cherokee.TABLE;
+      case 16:
+        return Common.TABLE;
+      case 17:
+        return Coptic.TABLE;
+      case 18:
+        return Cuneiform.TABLE;
+      case 19:
+        return Cypriot.TABLE;
+      case 20:
+        return Cyrillic.TABLE;
+      case 21:
+        return Deseret.TABLE;
+      case 22:
+        return Devanagari.TABLE;
+      case 23:
+        return Egyptian_Hieroglyphs.TABLE;
+      case 24:
+        return Ethiopic.TABLE;
+      case 25:
+        return Georgian.TABLE;
+      case 26:
+        return Glagolitic.TABLE;
+      case 27:
+        return Gothic.TABLE;
+      case 28:
+        return Greek.TABLE;
+      case 29:
+        return Gujarati.TABLE;
+      case 30:
+        return Gurmukhi.TABLE;
+      case 31:
+        return Han.TABLE;
+      case 32:
+        return Hangul.TABLE;
+      case 33:
+        return Hanunoo.TABLE;
+      case 34:
+        return Hebrew.TABLE;
+      case 35:
+        return Hiragana.TABLE;
+      case 36:
+        return Imperial_Aramaic.TABLE;
+      case 37:
+        return Inherited.TABLE;
+      case 38:
+        return Inscriptional_Pahlavi.TABLE;
+      case 39:
+        return Inscriptional_Parthian.TABLE;
+      case 40:
+        return Javanese.TABLE;
+      case 41:
+        return Kaithi.TABLE;
+      case 42:
+        return Kannada.TABLE;
+      case 43:
+        return Katakana.TABLE;
+      case 44:
+        return Kayah_Li.TABLE;
+      case 45:
+        return Kharoshthi.TABLE;
+      case 46:
+        return Khmer.TABLE;
+      case 47:
+        return Lao.TABLE;
+      case 48:
+        return Latin.TABLE;
+      case 49:
+        return Lepcha.TABLE;
+      case 50:
+        return Limbu.TABLE;
+      case 51:
+        return Linear_B.TABLE;
+      case 52:
+        return Lisu.TABLE;
+      case 53:
+        return Lycian.TABLE;
+      case 54:
+        return Lydian.TABLE;
+      case 55:
+        return Malayalam.TABLE;
+      case 56:
+        return Mandaic.TABLE;
+      case 57:
+        return Meetei_Mayek.TABLE;
+      case 58:
+        return Mongolian.TABLE;
+      case 59:
+        return Myanmar.TABLE;
+      case 60:
+        return New_Tai_Lue.TABLE;
+      case 61:
+        return Nko.TABLE;
+      case 62:
+        return Ogham.TABLE;
+      case 63:
+        return Ol_Chiki.TABLE;
+      case 64:
+        return Old_Italic.TABLE;
+      case 65:
+        return Old_Persian.TABLE;
+      case 66:
+        return Old_South_Arabian.TABLE;
+      case 67:
+        return Old_Turkic.TABLE;
+      case 68:
+        return Oriya.TABLE;
+      case 69:
+        return Osmanya.TABLE;
+      case 70:
+        return Phags_Pa.TABLE;
+      case 71:
+        return Phoenician.TABLE;
+      case 72:
+        return Rejang.TABLE;
+      case 73:
+        return Runic.TABLE;
+      case 74:
+        return Samaritan.TABLE;
+      case 75:
+        return Saurashtra.TABLE;
+      case 76:
+        return Shavian.TABLE;
+      case 77:
+        return Sinhala.TABLE;
+      case 78:
+        return Sundanese.TABLE;
+      case 79:
+        return Syloti_Nagri.TABLE;
+      case 80:
+        return Syriac.TABLE;
+      case 81:
+        return Tagalog.TABLE;
+      case 82:
+        return Tagbanwa.TABLE;
+      case 83:
+        return Tai_Le.TABLE;
+      case 84:
+        return Tai_Tham.TABLE;
+      case 85:
+        return Tai_Viet.TABLE;
+      case 86:
+        return Tamil.TABLE;
+      case 87:
+        return Telugu.TABLE;
+      case 88:
+        return Thaana.TABLE;
+      case 89:
+        return Thai.TABLE;
+      case 90:
+        return Tibetan.TABLE;
+      case 91:
+        return Tifinagh.TABLE;
+      case 92:
+        return Ugaritic.TABLE;
+      case 93:
+        return Unknown.TABLE;
+      case 94:
+        return Vai.TABLE;
+      case 95:
+        return Yi.TABLE;
+      default:
+        return null;
+    }
+  }
+
+  static int[][] foldCategory(String name) {
+    int i = Arrays.binarySearch(FOLD_CATEGORY_NAMES, name);
+    return i < 0 ? null : foldCategoryTable(i);
+  }
+
+  private static int[][] foldCategoryTable(int i) {
+    switch (i) {
+      case 0:
+        return foldLl.TABLE;
+      case 1:
+        return foldLt.TABLE;
+      case 2:
+        return foldLu.TABLE;
+      case 3:
+        return foldMn.TABLE;
+      default:
+        return null;
+    }
+  }
+
+  static int[][] foldScript(String name) {
+    int i = Arrays.binarySearch(FOLD_SCRIPT_NAMES, name);
+    return i < 0 ? null : foldScriptTable(i);
+  }
+
+  private static int[][] foldScriptTable(int i) {
+    switch (i) {
+      case 0:
+        return foldCommon.TABLE;
+      case 1:
+        return foldGreek.TABLE;
+      case 2:
+        return foldInherited.TABLE;
+      default:
+        return null;
+    }
+  }
+
+  private static final class Lu {
+    static final int[][] TABLE = make_Lu();
+  }
+
+  private static final class Ll {
+    static final int[][] TABLE = make_Ll();
+  }
+
+  private static final class Lt {
+    static final int[][] TABLE = make_Lt();
+  }
+
+  private static final class Lm {
+    static final int[][] TABLE = make_Lm();
+  }
+
+  private static final class Lo {
+    static final int[][] TABLE = make_Lo();
+  }
+
+  private static final class Mn {
+    static final int[][] TABLE = make_Mn();
+  }
+
+  private static final class Me {
+    static final int[][] TABLE = make_Me();
+  }
+
+  private static final class Mc {
+    static final int[][] TABLE = make_Mc();
+  }
+
+  private static final class Nd {
+    static final int[][] TABLE = make_Nd();
+  }
+
+  private static final class Nl {
+    static final int[][] TABLE = make_Nl();
+  }
+
+  private static final class No {
+    static final int[][] TABLE = make_No();
+  }
+
+  private static final class Zs {
+    static final int[][] TABLE = make_Zs();
+  }
+
+  private static final class Zl {
+    static final int[][] TABLE = make_Zl();
+  }
+
+  private static final class Zp {
+    static final int[][] TABLE = make_Zp();
+  }
+
+  private static final class Cc {
+    static final int[][] TABLE = make_Cc();
+  }
+
+  private static final class Cf {
+    static final int[][] TABLE = make_Cf();
+  }
+
+  private static final class Co {
+    static final int[][] TABLE = make_Co();
+  }
+
+  private static final class Cs {
+    static final int[][] TABLE = make_Cs();
+  }
+
+  private static final class Pd {
+    static final int[][] TABLE = make_Pd();
+  }
+
+  private static final class Ps {
+    static final int[][] TABLE = make_Ps();
+  }
+
+  private static final class Pe {
+    static final int[][] TABLE = make_Pe();
+  }
+
+  private static final class Pc {
+    static final int[][] TABLE = make_Pc();
+  }
+
+  private static final class Po {
+    static final int[][] TABLE = make_Po();
+  }
+
+  private static final class Sm {
+    static final int[][] TABLE = make_Sm();
+  }
+
+  private static final class Sc {
+    static final int[][] TABLE = make_Sc();
+  }
+
+  private static final class Sk {
+    static final int[][] TABLE = make_Sk();
+  }
+
+  private static final class So {
+    static final int[][] TABLE = make_So();
+  }
+
+  private static final class Pi {
+    static final int[][] TABLE = make_Pi();
+  }
+
+  private static final class Pf {
+    static final int[][] TABLE = make_Pf();
+  }
+
+  private static final class P {
+    static final int[][] TABLE = make_P();
+  }
+
+  private static final class S {
+    static final int[][] TABLE = make_S();
+  }
+
+  private static final class C {
+    static final int[][] TABLE = make_C();
+  }
+
+  private static final class Z {
+    static final int[][] TABLE = make_Z();
+  }
+
+  private static final class L {
+    static final int[][] TABLE = make_L();
+  }
+
+  private static final class M {
+    static final int[][] TABLE = make_M();
+  }
+
+  private static final class N {
+    static final int[][] TABLE = make_N();
+  }
+
+  private static final class Common {
+    static final int[][] TABLE = make_Common();
+  }
+
+  private static final class Inherited {
+    static final int[][] TABLE = make_Inherited();
+  }
+
+  private static final class Bamum {
+    static final int[][] TABLE = make_Bamum();
+  }
+
+  private static final class Arabic {
+    static final int[][] TABLE = make_Arabic();
+  }
+
+  private static final class Lisu {
+    static final int[][] TABLE = make_Lisu();
+  }
+
+  private static final class Armenian {
+    static final int[][] TABLE = make_Armenian();
+  }
+
+  private static final class Bengali {
+    static final int[][] TABLE = make_Bengali();
+  }
+
+  private static final class Old_South_Arabian {
+    static final int[][] TABLE = make_Old_South_Arabian();
+  }
+
+  private static final class Bopomofo {
+    static final int[][] TABLE = make_Bopomofo();
+  }
+
+  private static final class Cherokee {
+    static final int[][] TABLE = make_Cherokee();
+  }
+
+  private static final class Coptic {
+    static final int[][] TABLE = make_Coptic();
+  }
+
+  private static final class Cyrillic {
+    static final int[][] TABLE = make_Cyrillic();
+  }
+
+  private static final class Deseret {
+    static final int[][] TABLE = make_Deseret();
+  }
+
+  private static final class Devanagari {
+    static final int[][] TABLE = make_Devanagari();
+  }
+
+  private static final class Ethiopic {
+    static final int[][] TABLE = make_Ethiopic();
+  }
+
+  private static final class Georgian {
+    static final int[][] TABLE = make_Georgian();
+  }
+
+  private static final class Gothic {
+    static final int[][] TABLE = make_Gothic();
+  }
+
+  private static final class Greek {
+    static final int[][] TABLE = make_Greek();
+  }
+
+  private static final class Gujarati {
+    static final int[][] TABLE = make_Gujarati();
+  }
+
+  private static final class Gurmukhi {
+    static final int[][] TABLE = make_Gurmukhi();
+  }
+
+  private static final class Han {
+    static final int[][] TABLE = make_Han();
+  }
+
+  private static final class Hangul {
+    static final int[][] TABLE = make_Hangul();
+  }
+
+  private static final class Hebrew {
+    static final int[][] TABLE = make_Hebrew();
+  }
+
+  private static final class Hiragana {
+    static final int[][] TABLE = make_Hiragana();
+  }
+
+  private static final class Kannada {
+    static final int[][] TABLE = make_Kannada();
+  }
+
+  private static final class Katakana {
+    static final int[][] TABLE = make_Katakana();
+  }
+
+  private static final class Khmer {
+    static final int[][] TABLE = make_Khmer();
+  }
+
+  private static final class Lao {
+    static final int[][] TABLE = make_Lao();
+  }
+
+  private static final class Latin {
+    static final int[][] TABLE = make_Latin();
+  }
+
+  private static final class Malayalam {
+    static final int[][] TABLE = make_Malayalam();
+  }
+
+  private static final class Mongolian {
+    static final int[][] TABLE = make_Mongolian();
+  }
+
+  private static final class Myanmar {
+    static final int[][] TABLE = make_Myanmar();
+  }
+
+  private static final class Ogham {
+    static final int[][] TABLE = make_Ogham();
+  }
+
+  private static final class Old_Italic {
+    static final int[][] TABLE = make_Old_Italic();
+  }
+
+  private static final class Oriya {
+    static final int[][] TABLE = make_Oriya();
+  }
+
+  private static final class Runic {
+    static final int[][] TABLE = make_Runic();
+  }
+
+  private static final class Sinhala {
+    static final int[][] TABLE = make_Sinhala();
+  }
+
+  private static final class Syriac {
+    static final int[][] TABLE = make_Syriac();
+  }
+
+  private static final class Tamil {
+    static final int[][] TABLE = make_Tamil();
+  }
+
+  private static final class Telugu {
+    static final int[][] TABLE = make_Telugu();
+  }
+
+  private static final class Thaana {
+    static final int[][] TABLE = make_Thaana();
+  }
+
+  private static final class Thai {
+    static final int[][] TABLE = make_Thai();
+  }
+
+  private static final class Tibetan {
+    static final int[][] TABLE = make_Tibetan();
+  }
+
+  private static final class Canadian_Aboriginal {
+    static final int[][] TABLE = make_Canadian_Aboriginal();
+  }
+
+  private static final class Yi {
+    static final int[][] TABLE = make_Yi();
+  }
+
+  private static final class Tagalog {
+    static final int[][] TABLE = make_Tagalog();
+  }
+
+  private static final class Hanunoo {
+    static final int[][] TABLE = make_Hanunoo();
+  }
+
+  private static final class Buhid {
+    static final int[][] TABLE = make_Buhid();
+  }
+
+  private static final class Tagbanwa {
+    static final int[][] TABLE = make_Tagbanwa();
+  }
+
+  private static final class Braille {
+    static final int[][] TABLE = make_Braille();
+  }
+
+  private static final class Cypriot {
+    static final int[][] TABLE = make_Cypriot();
+  }
+
+  private static final class Limbu {
+    static final int[][] TABLE = make_Limbu();
+  }
+
+  private static final class Linear_B {
+    static final int[][] TABLE = make_Linear_B();
+  }
+
+  private static final class Osmanya {
+    static final int[][] TABLE = make_Osmanya();
+  }
+
+  private static final class Shavian {
+    static final int[][] TABLE = make_Shavian();
+  }
+
+  private static final class Tai_Le {
+    static final int[][] TABLE = make_Tai_Le();
+  }
+
+  private static final class Ugaritic {
+    static final int[][] TABLE = make_Ugaritic();
+  }
+
+  private static final class Buginese {
+    static final int[][] TABLE = make_Buginese();
+  }
+
+  private static final class Glagolitic {
+    static final int[][] TABLE = make_Glagolitic();
+  }
+
+  private static final class Kharoshthi {
+    static final int[][] TABLE = make_Kharoshthi();
+  }
+
+  private static final class Syloti_Nagri {
+    static final int[][] TABLE = make_Syloti_Nagri();
+  }
+
+  private static final class New_Tai_Lue {
+    static final int[][] TABLE = make_New_Tai_Lue();
+  }
+
+  private static final class Tifinagh {
+    static final int[][] TABLE = make_Tifinagh();
+  }
+
+  private static final class Old_Persian {
+    static final int[][] TABLE = make_Old_Persian();
+  }
+
+  private static final class Balinese {
+    static final int[][] TABLE = make_Balinese();
+  }
+
+  private static final class Batak {
+    static final int[][] TABLE = make_Batak();
+  }
+
+  private static final class Brahmi {
+    static final int[][] TABLE = make_Brahmi();
+  }
+
+  private static final class Cham {
+    static final int[][] TABLE = make_Cham();
+  }
+
+  private static final class Egyptian_Hieroglyphs {
+    static final int[][] TABLE = make_Egyptian_Hieroglyphs();
+  }
+
+  private static final class Javanese {
+    static final int[][] TABLE = make_Javanese();
+  }
+
+  private static final class Kayah_Li {
+    static final int[][] TABLE = make_Kayah_Li();
+  }
+
+  private static final class Lepcha {
+    static final int[][] TABLE = make_Lepcha();
+  }
+
+  private static final class Mandaic {
+    static final int[][] TABLE = make_Mandaic();
+  }
+
+  private static final class Nko {
+    static final int[][] TABLE = make_Nko();
+  }
+
+  private static final class Old_Turkic {
+    static final int[][] TABLE = make_Old_Turkic();
+  }
+
+  private static final class Phags_Pa {
+    static final int[][] TABLE = make_Phags_Pa();
+  }
+
+  private static final class Phoenician {
+    static final int[][] TABLE = make_Phoenician();
+  }
+
+  private static final class Vai {
+    static final int[][] TABLE = make_Vai();
+  }
+
+  private static final class Cuneiform {
+    static final int[][] TABLE = make_Cuneiform();
+  }
+
+  private static final class Unknown {
+    static final int[][] TABLE = make_Unknown();
+  }
+
+  private static final class Carian {
+    static final int[][] TABLE = make_Carian();
+  }
+
+  private static final class Tai_Tham {
+    static final int[][] TABLE = make_Tai_Tham();
+  }
+
+  private static final class Lycian {
+    static final int[][] TABLE = make_Lycian();
+  }
+
+  private static final class Lydian {
+    static final int[][] TABLE = make_Lydian();
+  }
+
+  private static final class Ol_Chiki {
+    static final int[][] TABLE = make_Ol_Chiki();
+  }
+
+  private static final class Rejang {
+    static final int[][] TABLE = make_Rejang();
+  }
+
+  private static final class Saurashtra {
+    static final int[][] TABLE = make_Saurashtra();
+  }
+
+  private static final class Sundanese {
+    static final int[][] TABLE = make_Sundanese();
+  }
+
+  private static final class Meetei_Mayek {
+    static final int[][] TABLE = make_Meetei_Mayek();
+  }
+
+  private static final class Imperial_Aramaic {
+    static final int[][] TABLE = make_Imperial_Aramaic();
+  }
+
+  private static final class Avestan {
+    static final int[][] TABLE = make_Avestan();
+  }
+
+  private static final class Kaithi {
+    static final int[][] TABLE = make_Kaithi();
+  }
+
+  private static final class Inscriptional_Pahlavi {
+    static final int[][] TABLE = make_Inscriptional_Pahlavi();
+  }
+
+  private static final class Inscriptional_Parthian {
+    static final int[][] TABLE = make_Inscriptional_Parthian();
+  }
+
+  private static final class Samaritan {
+    static final int[][] TABLE = make_Samaritan();
+  }
+
+  private static final class Tai_Viet {
+    static final int[][] TABLE = make_Tai_Viet();
+  }
+
+  private static final class foldCommon {
+    static final int[][] TABLE = make_foldCommon();
+  }
+
+  private static final class foldInherited {
+    static final int[][] TABLE = make_foldInherited();
+  }
+
+  private static final class foldGreek {
+    static final int[][] TABLE = make_foldGreek();
+  }
+
+  private static final class foldLu {
+    static final int[][] TABLE = make_foldLu();
+  }
+
+  private static final class foldLl {
+    static final int[][] TABLE = make_foldLl();
+  }
+
+  private static final class foldLt {
+    static final int[][] TABLE = make_foldLt();
+  }
+
+  private static final class foldMn {
+    static final int[][] TABLE = make_foldMn();
   }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests of the literal prefix sets and the automaton that searches for them. */
+public class AhoCorasickTest {
+
+  private static List<String> prefixes(String regexp) {
+    int[][] strings = Literals.prefixes(Simplify.simplify(Parser.parse(regexp, RE2.PERL)));
+    if (strings == null) {
+      return null;
+    }
+    List<String> list = new ArrayList<String>();
+    for (int[] s : strings) {
+      list.add(new String(s, 0, s.length));
+    }
+    java.util.Collections.sort(list);
+    return list;
+  }
+
+  @Test
+  public void testPrefixes() {
+    assertEquals(
+        Arrays.asList("123123", "12345", "password", "qwerty"),
+        prefixes("12345|123123|qwerty|password"));
+    assertEquals(Arrays.asList("bar", "foo"), prefixes("(foo|bar)\\w+"));
+    assertEquals(Arrays.asList("abc", "ac"), prefixes("ab?c"));
+    assertEquals(Arrays.asList("bar", "foo"), prefixes("\\bfoo|^bar"));
+    assertEquals(Arrays.asList("K", "k", "K"), prefixes("(?i)k"));
+    assertEquals(Arrays.asList("xa", "xb", "xc"), prefixes("x[a-c]y*"));
+    assertNull(prefixes("abc")); // a single prefix, handled by Prog.prefix
+    assertNull(prefixes("foo|bar|"));
+    assertNull(prefixes("a*b|c"));
+    assertNull(prefixes("[a-z]+"));
+    assertNull(prefixes(".foo"));
+  }
+
+  private static int naiveIndex(String text, String[] strings, int pos) {
+    int best = -1;
+    for (String s : strings) {
+      int i = text.indexOf(s, pos);
+      if (i >= 0 && (best < 0 || i < best)) {
+        best = i;
+      }
+    }
+    return best < 0 ? -1 : best - pos;
+  }
+
+  private static int[][] runes(String[] strings) {
+    int[][] runes = new int[strings.length][];
+    for (int i = 0; i < strings.length; i++) {
+      runes[i] = Utils.stringToRunes(strings[i]);
+    }
+    return runes;
+  }
+
+  @Test
+  public void testIndex() {
+    String[] strings = {"he", "she", "his", "hers", "abcdef", "bc", "é"};
+    AhoCorasick a = AhoCorasick.compile(runes(strings));
+    assertNotNull(a);
+    String[] texts = {"ushers", "abcdef", "xxbcx", "hi", "", "aé", "ahishe"};
+    for (String text : texts) {
+      for (int pos = 0; pos <= text.length(); pos++) {
+        int want = naiveIndex(text, strings, pos);
+        int got = a.index(MachineInput.fromUTF16(text), pos);
+        if (want < 0) {
+          assertEquals(text, -1, got);
+        } else {
+          // A safe skip: no further than the first occurrence.
+          assertTrue(text + " at " + pos, got >= 0 && got <= want);
+        }
+      }
+    }
+    assertEquals(0, a.index(MachineInput.fromUTF16("abcdef"), 0));
+    assertEquals(2, a.index(MachineInput.fromUTF16("xxbc"), 0));
+    assertEquals(3, a.index(MachineInput.fromUTF8(GoTestUtils.utf8("xxaé")), 0));
+  }
+
+  @Test
+  public void testSingleRunes() {
+    // Single runes are left to a FirstSet, which skips as far.
+    assertNull(AhoCorasick.compile(runes(new String[] {"a", "b", "é"})));
+    assertNotNull(AhoCorasick.compile(runes(new String[] {"a", "bc"})));
+    RE2 re2 = Pattern.compile("(?i)k").re2();
+    assertNull(re2.prefixes);
+    assertNotNull(re2.firstSet);
+  }
+
+  @Test
+  public void testFindAgreesWithJDK() {
+    String[] regexps = {
+      "12345|123123|qwerty|password|letmein|monkey|dragon",
+      "(foo|bar)\\d+",
+      "\\b(?:cat|dog)s?\\b",
+      "(?i)error|warn",
+    };
+    String alphabet = "abcdegilmnopqrstwy12345 ";
+    Random random = new Random(1);
+    for (String regexp : regexps) {
+      Pattern p = Pattern.compile(regexp);
+      assertNotNull(regexp, p.re2().prefixes);
+      java.util.regex.Pattern jp = java.util.regex.Pattern.compile(regexp);
+      for (int n = 0; n < 200; n++) {
+        StringBuilder b = new StringBuilder();
+        for (int i = random.nextInt(60); i > 0; i--) {
+          if (random.nextInt(10) == 0) {
+            b.append(new String[] {"password", "foo12", "dogs", "ERROR", "123123"}[random.nextInt(5)]);
+          } else {
+            b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+          }
+        }
+        String text = b.toString();
+        Matcher m = p.matcher(text);
+        java.util.regex.Matcher jm = jp.matcher(text);
+        while (jm.find()) {
+          assertTrue(regexp + " on " + text, m.find());
+          assertEquals(regexp + " on " + text, jm.group(), m.group());
+          assertEquals(regexp + " on " + text, jm.start(), m.start());
+        }
+        assertTrue(regexp + " on " + text, !m.find());
+        assertEquals(jp.matcher(text).find(), p.re2().matchUTF8(GoTestUtils.utf8(text)));
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Tests that the Backtracker agrees with the Machine. */
+public class BacktrackerTest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "(a*)(b*)",
+    "(a|ab)(c|bcd)(d*)",
+    "(a+)(b+)?",
+    "(a*)+$",
+    "(?i)(k+)",
+    "x(?:(a)|(b))*y",
+    "^(\\w+)=(\\d+);(.*)$",
+    "(\\w+)@(\\w+)\\.com",
+    "\\b(o+)\\b",
+    "(?m)^(b)$",
+    "(?s)(.)(.)",
+    "(é|(ö))+",
+    "a[^\\s\\S]|b",
+    "",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "aab",
+    "abcd",
+    "abcbcdd",
+    "xababy",
+    "KkK",
+    "key=42;rest",
+    "mail bob@example.com now",
+    "foo o oo",
+    "a\nb\nc",
+    "éöé",
+    "ab",
+  };
+
+  @Test
+  public void testAgreesWithMachine() {
+    for (String pattern : PATTERNS) {
+      for (boolean longest : new boolean[] {false, true}) {
+        RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+        for (String input : INPUTS) {
+          for (int ncap : new int[] {0, 2, 2 * (1 + re2.numberOfCapturingGroups())}) {
+            for (int anchor : new int[] {RE2.UNANCHORED, RE2.ANCHOR_START, RE2.ANCHOR_BOTH}) {
+              for (int pos = 0; pos <= input.length(); pos++) {
+                for (MachineInput in :
+                    new MachineInput[] {
+                      MachineInput.fromUTF16(input), MachineInput.fromUTF8(GoTestUtils.utf8(input))
+                    }) {
+                  Machine m = new Machine(re2);
+                  m.init(ncap);
+                  int[] want = m.match(in, pos, anchor) ? m.submatches() : null;
+                  int[] got = new Backtracker(re2).match(in, pos, anchor, ncap);
+                  assertArrayEquals(
+                      String.format(
+                          "%s longest=%b on %s at %d anchor %d ncap %d",
+                          pattern, longest, input, pos, anchor, ncap),
+                      want,
+                      got);
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReuse() {
+    RE2 re2 = RE2.compile("(a+)(b)?");
+    Backtracker b = new Backtracker(re2);
+    assertArrayEquals(new int[] {1, 4, 1, 3, 3, 4}, b.match(MachineInput.fromUTF16("xaab"), 0, 0, 6));
+    assertArrayEquals(new int[] {0, 1}, b.match(MachineInput.fromUTF16("a"), 0, 0, 2));
+    assertEquals(null, b.match(MachineInput.fromUTF16("xyz"), 0, 0, 6));
+    assertArrayEquals(
+        new int[] {2, 3, 2, 3, -1, -1}, b.match(MachineInput.fromUTF16("xxa"), 0, 0, 6));
+  }
+
+  @Test
+  public void testRuneStraddlesEnd() {
+    // The input ends inside a surrogate pair: a rune read there must not
+    // move a thread past the end of the input, onto another row of the
+    // visited bitmap.
+    RE2 re2 = RE2.compile("(.k|())");
+    MachineInput in = MachineInput.fromUTF16("\uD83D\uDE00", 0, 1);
+    assertArrayEquals(
+        new int[] {0, 0, 0, 0, 0, 0}, new Backtracker(re2).match(in, 0, RE2.UNANCHORED, 6));
+    Matcher m = Pattern.compile("(.k|())").matcher("\uD83D\uDE00");
+    assertTrue(m.find());
+    assertEquals("", m.group(1));
+  }
+
+  @Test
+  public void testMaxBitStateLen() {
+    RE2 re2 = RE2.compile("(a+)(b)?");
+    assertTrue(re2.maxBitStateLen > 1000);
+    StringBuilder many = new StringBuilder();
+    for (int i = 0; i < 600; i++) {
+      many.append("(a)");
+    }
+    assertEquals(0, RE2.compile(many.toString()).maxBitStateLen);
+  }
+}
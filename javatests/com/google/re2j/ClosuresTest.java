@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Tests of the precomputed epsilon closures used by the {@link Machine}. */
+public class ClosuresTest {
+
+  // leaves() returns the closure of the start of |re2| under |cond| as
+  // strings "inst[captured slots]".
+  private static List<String> leaves(RE2 re2, int cond) {
+    int[] list = re2.closures.get(re2.prog.start, cond);
+    assertNotNull(list);
+    assertArrayEquals(list, new Closures.Walker(re2.prog).closure(re2.prog.start, cond));
+    List<String> leaves = new ArrayList<String>();
+    for (int i = 0; i < list.length; ) {
+      StringBuilder b = new StringBuilder(re2.prog.instString(list[i++]));
+      b.append('[');
+      for (int k = list[i++]; k > 0; k--) {
+        b.append(list[i++]);
+        if (k > 1) {
+          b.append(' ');
+        }
+      }
+      leaves.add(b.append(']').toString());
+    }
+    return leaves;
+  }
+
+  @Test
+  public void testClosure() {
+    RE2 re2 = RE2.compile("(a)|b|(?:(c)|d)?");
+    List<String> got = leaves(re2, 0);
+    assertEquals(5, got.size());
+    assertTrue(got.get(0), got.get(0).startsWith("rune1 \"a\"") && got.get(0).endsWith("[2]"));
+    assertTrue(got.get(1), got.get(1).startsWith("rune1 \"b\"") && got.get(1).endsWith("[]"));
+    assertTrue(got.get(2), got.get(2).startsWith("rune1 \"c\"") && got.get(2).endsWith("[4]"));
+    assertTrue(got.get(3), got.get(3).startsWith("rune1 \"d\"") && got.get(3).endsWith("[]"));
+    assertEquals("match[]", got.get(4));
+  }
+
+  @Test
+  public void testConditions() {
+    RE2 re2 = RE2.compile("^a|\\bb|c");
+    assertEquals(1, leaves(re2, 0).size());
+    assertEquals(2, leaves(re2, Utils.EMPTY_BEGIN_TEXT | Utils.EMPTY_BEGIN_LINE).size());
+    assertEquals(2, leaves(re2, Utils.EMPTY_WORD_BOUNDARY).size());
+    assertEquals(3, leaves(re2, Utils.EMPTY_BEGIN_TEXT | Utils.EMPTY_WORD_BOUNDARY).size());
+    // Bits that no instruction tests do not matter.
+    assertEquals(leaves(re2, 0), leaves(re2, Utils.EMPTY_END_TEXT | Utils.EMPTY_END_LINE));
+  }
+
+  @Test
+  public void testLongAlternation() {
+    StringBuilder b = new StringBuilder("(");
+    for (int i = 0; i < 300; i++) {
+      if (i > 0) {
+        b.append('|');
+      }
+      b.append("w").append(i * 7919 % 100003).append("x?");
+    }
+    b.append(")!");
+    RE2 re2 = RE2.compile(b.toString());
+    String input = "w7919 w15838! w0";
+    Machine m = new Machine(re2);
+    m.init(4);
+    assertTrue(m.match(MachineInput.fromUTF16(input), 0, RE2.UNANCHORED));
+    assertArrayEquals(new int[] {6, 13, 6, 12}, m.submatches());
+  }
+}
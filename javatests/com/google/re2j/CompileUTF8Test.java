@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/** Tests of programs that read UTF-8 a byte at a time, and the DFA that runs them. */
+public class CompileUTF8Test {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "é",
+    "(?i)k",
+    "(?i)straße",
+    ".",
+    "(?s).",
+    "[^a]",
+    "[α-ω]+",
+    "[\\x{7f}-\\x{81}\\x{7ff}-\\x{801}\\x{ffff}-\\x{10001}]",
+    "\\p{Greek}\\p{Han}*",
+    "\\x{1F600}|\\x{10FFFF}",
+    "a.c",
+    "\\bé\\b",
+    "\\B",
+    "(?m)^.$",
+    "x*[^x]y",
+    "(a|é)(c|ℂ)+$",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "é",
+    "aéc",
+    "aℂc",
+    "K",
+    "k",
+    "STRASSE",
+    "straße",
+    "αβγ",
+    "中文αω",
+    "\u007f\u0080\u0081\u0082",
+    "߿ࠀࠁ",
+    "￿😀􏿿",
+    "a\nb\né\n",
+    "xxéy",
+    "éℂℂ",
+  };
+
+  private static int end(DFA dfa, byte[] b, int anchor) {
+    return dfa.search(MachineInput.fromUTF8(b), 0, anchor, false);
+  }
+
+  @Test
+  public void testAgreesWithRuneDFA() {
+    for (String pattern : PATTERNS) {
+      for (boolean longest : new boolean[] {false, true}) {
+        RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+        for (int anchor : new int[] {RE2.UNANCHORED, RE2.ANCHOR_START, RE2.ANCHOR_BOTH}) {
+          boolean matchAtEnd = anchor == RE2.ANCHOR_BOTH;
+          DFA runes = new DFA(re2, longest, matchAtEnd, DFA.DEFAULT_MAX_MEM, 0, false);
+          for (int maxStates : new int[] {0, DFATable.DEFAULT_MAX_STATES}) {
+            DFA bytes = new DFA(re2, longest, matchAtEnd, DFA.DEFAULT_MAX_MEM, maxStates, true);
+            for (String input : INPUTS) {
+              byte[] b = GoTestUtils.utf8(input);
+              String what =
+                  String.format("%s longest=%b on %s anchor %d", pattern, longest, input, anchor);
+              assertEquals(what, end(runes, b, anchor), end(bytes, b, anchor));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEveryRune() {
+    // Each rune of a class with ranges at every encoded length boundary
+    // matches alone exactly when the rune program says so.
+    RE2 re2 = RE2.compile("[\\x{0}-\\x{3}\\x{7e}-\\x{82}\\x{7fe}-\\x{802}\\x{fffe}-\\x{10002}]");
+    DFA bytes = new DFA(re2, false, true, DFA.DEFAULT_MAX_MEM, 0, true);
+    for (int r = 0; r < 0x10100; r++) {
+      if (r >= Character.MIN_SURROGATE && r <= Character.MAX_SURROGATE) {
+        continue;
+      }
+      String s = new String(Character.toChars(r));
+      byte[] b = GoTestUtils.utf8(s);
+      boolean want = re2.match(s, 0, s.length(), RE2.ANCHOR_BOTH, null, 0);
+      assertEquals(Integer.toHexString(r), want, end(bytes, b, RE2.ANCHOR_BOTH) >= 0);
+    }
+  }
+
+  @Test
+  public void testSharedSuffixes() {
+    // Any rune: one- to four-byte sequences that end in shared
+    // continuation-byte instructions.
+    Prog prog = Compiler.compileUTF8(RE2.compile("(?s).").prog);
+    assertTrue(prog.toString(), prog.numInst() < 25);
+    Prog letters = Compiler.compileUTF8(RE2.compile("\\pL").prog);
+    int ranges = RE2.compile("\\pL").prog.numInst();
+    assertTrue(letters.numInst() + " > " + ranges, letters.numInst() < 2000);
+  }
+
+  @Test
+  public void testMatchUTF8() {
+    RE2 re2 = RE2.compile("[α-ω]+ (\\d+)");
+    assertTrue(re2.matchUTF8(GoTestUtils.utf8("xx ωω 3")));
+    assertEquals(false, re2.matchUTF8(GoTestUtils.utf8("αβγ x12")));
+    assertEquals("ωω 3", GoTestUtils.fromUTF8(re2.findUTF8(GoTestUtils.utf8("xx ωω 3"))));
+  }
+
+  @Test
+  public void testPrefixSkipOnRuneBoundaries() {
+    // Case folds that are not ASCII (ſ for s, K for k, É for é) put multi-byte runes where the
+    // DFA skips to the next possible match; it must not start a skip inside one.
+    String[] patterns = {"\\As|[a-c]", "\\Bé", "s[[:alpha:]]", "k|z", "\\bk", "sé+"};
+    String[] inputs = {"AſB", "xÉéeÉ", "ſsaſsb", "xKkKz", "KKk Kx", "ſÉéSé", "éſKaéb"};
+    for (String pattern : patterns) {
+      RE2 re2 = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE).re2();
+      for (String input : inputs) {
+        StringBuilder want = new StringBuilder();
+        List<int[]> idx16 = re2.findAllIndex(input, -1);
+        if (idx16 != null) {
+          for (int[] idx : idx16) {
+            want.append(Arrays.toString(GoTestUtils.utf16IndicesToUtf8(idx, input)));
+          }
+        }
+        StringBuilder got = new StringBuilder();
+        List<int[]> idx8 = re2.findAllUTF8Index(GoTestUtils.utf8(input), -1);
+        if (idx8 != null) {
+          for (int[] idx : idx8) {
+            got.append(Arrays.toString(idx));
+          }
+        }
+        assertEquals(pattern + " on " + input, want.toString(), got.toString());
+      }
+    }
+  }
+}
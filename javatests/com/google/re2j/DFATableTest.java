@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Tests that the complete DFA tables agree with the Machine. */
+public class DFATableTest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "abc",
+    "a*",
+    "a+b",
+    "(a|ab)(c|bcd)(d*)",
+    "[a-c]+x",
+    "(?i)k",
+    "(?i)abc",
+    "x*y*z*",
+    "a.c",
+    "(?s)a.c",
+    "^abc",
+    "abc$",
+    "(?m)^b$",
+    "\\bfoo\\b",
+    "\\Bo\\B",
+    "\\Aab|b\\z",
+    "(a+|b+)*c",
+    "[0-9a-f]{4}",
+    "^[a-z0-9-]+(\\.[a-z0-9-]+)*$",
+    "(x|xy)(yz)?",
+    "",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "abc",
+    "xabcx",
+    "aaab",
+    "abcd",
+    "abcbcdd",
+    "bbbcx",
+    "K",
+    "ABC",
+    "zzyyx",
+    "a\nc",
+    "a\nb\nc",
+    "foo bar",
+    "a foo",
+    "food",
+    "beef cafe",
+    "www.example.com",
+    "bad..host",
+    "xyzxy",
+    "héllo abc",
+  };
+
+  private static int machineEnd(RE2 re2, MachineInput in, int anchor) {
+    Machine m = new Machine(re2);
+    m.init(2);
+    return m.match(in, 0, anchor) ? m.submatches()[1] : DFA.NO_MATCH;
+  }
+
+  @Test
+  public void testAgreesWithMachine() {
+    for (String pattern : PATTERNS) {
+      for (boolean longest : new boolean[] {false, true}) {
+        RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+        for (int anchor : new int[] {RE2.UNANCHORED, RE2.ANCHOR_START, RE2.ANCHOR_BOTH}) {
+          DFA dfa = new DFA(re2, longest, anchor == RE2.ANCHOR_BOTH);
+          for (String input : INPUTS) {
+            String what =
+                String.format("%s longest=%b on %s anchor %d", pattern, longest, input, anchor);
+            for (MachineInput in :
+                new MachineInput[] {
+                  MachineInput.fromUTF16(input), MachineInput.fromUTF8(GoTestUtils.utf8(input))
+                }) {
+              int want = machineEnd(re2, in, anchor);
+              assertEquals(what, want, dfa.search(in, 0, anchor, false));
+              assertEquals(what, want == DFA.NO_MATCH, dfa.search(in, 0, anchor, true) < 0);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static DFATable table(String pattern, boolean matchAtEnd, int maxStates) {
+    RE2 re2 = RE2.compile(pattern);
+    DFATable[] tables = new DFA(re2, false, matchAtEnd, DFA.DEFAULT_MAX_MEM, maxStates).tables();
+    return tables[1];
+  }
+
+  @Test
+  public void testTable() {
+    DFATable t = table("[0-9a-f]+", false, DFATable.DEFAULT_MAX_STATES);
+    assertNotNull(t);
+    assertEquals(4, t.search("beef!", 0, 5, false));
+    assertEquals(DFA.NO_MATCH, t.search("xbeef", 0, 5, false));
+    assertEquals(4, t.search("cafe", 0, 4, false));
+    assertEquals(1, t.search("cafe", 0, 4, true));
+    assertEquals(DFA.FAILED, t.search("café", 0, 4, false));
+    assertEquals(2, t.search(GoTestUtils.utf8("xx12yy"), 2, 6, false));
+    assertEquals(DFA.FAILED, t.search(GoTestUtils.utf8("1é"), 0, 3, false));
+  }
+
+  @Test
+  public void testMaxStates() {
+    // Each state of a(a|b){8} records which of the last runes were 'a'.
+    assertNull(table("(a|b)*a(a|b){8}", false, DFATable.DEFAULT_MAX_STATES));
+    assertNull(table("[0-9a-f]+", false, 0));
+    // The start state, and the state after one or more hex digits.
+    assertEquals(2, table("^[0-9a-f]+$", true, 2).numStates());
+    assertNull(table("^[0-9a-f]+$", true, 1));
+  }
+
+  @Test
+  public void testTablesBuiltOnFirstUse() {
+    // Compiling a small program builds no DFA, and so no tables, until a
+    // search needs them.
+    Pattern p = Pattern.compile("[0-9a-f]+");
+    for (DFA d : p.re2().dfa) {
+      assertNull(d);
+    }
+    assertTrue(p.matcher("xx12").find());
+    assertNotNull(p.re2().dfa(RE2.UNANCHORED).tables()[0]);
+    assertNull(p.re2().dfa[1]);
+
+    // Pattern.PRECOMPILE_DFA builds them up front.
+    p = Pattern.compile("[0-9a-f]+", Pattern.PRECOMPILE_DFA);
+    assertNotNull(p.re2().dfa[0]);
+    assertNotNull(p.re2().dfa[1]);
+  }
+
+  @Test
+  public void testPrecompile() {
+    // Too long a program for tables by default.
+    String regex = "[a-z]{120}";
+    assertNull(Pattern.compile(regex).re2().dfa(RE2.ANCHOR_BOTH).tables()[1]);
+
+    Pattern p = Pattern.compile(regex, Pattern.PRECOMPILE_DFA);
+    assertEquals(Pattern.PRECOMPILE_DFA, p.flags());
+    assertEquals(121, p.re2().dfa(RE2.ANCHOR_BOTH).tables()[1].numStates());
+    assertNotNull(p.re2().dfa(RE2.UNANCHORED).tables()[0]);
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 120; i++) {
+      b.append((char) ('a' + i % 26));
+    }
+    assertTrue(p.matcher(b).matches());
+    assertTrue(p.matcher("<" + b + ">").find());
+    assertFalse(p.matcher(b.substring(1)).matches());
+    assertFalse(p.matcher(b.substring(1) + "é").find());
+
+    // The tables are rebuilt with the same limit after a reset.
+    p.reset();
+    assertNotNull(p.re2().dfa(RE2.ANCHOR_BOTH).tables()[1]);
+  }
+}
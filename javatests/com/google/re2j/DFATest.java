@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests that the DFA agrees with the Machine. */
+public class DFATest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "abc",
+    "a*",
+    "a+b",
+    "(a|ab)(c|bcd)(d*)",
+    "[a-c]+x",
+    "(?i)straße",
+    "x*y*z*",
+    "a.c",
+    "(?s)a.c",
+    "^abc",
+    "abc$",
+    "(?m)^b$",
+    "\\bfoo\\b",
+    "\\Bo\\B",
+    "\\Aab|b\\z",
+    "(a+|b+)*c",
+    "héllo|wörld",
+    "[\\p{Greek}]+",
+    "(x|xy)(yz)?",
+    "",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "abc",
+    "xabcx",
+    "aaab",
+    "abcd",
+    "abcbcdd",
+    "bbbcx",
+    "STRASSE strasse straße",
+    "zzyyx",
+    "a\nc",
+    "a\nb\nc",
+    "foo bar",
+    "a foo",
+    "food",
+    "xabab",
+    "ababababc",
+    "oh héllo wörld",
+    "αβγ abc",
+    "xyzxy",
+  };
+
+  private static int machineEnd(RE2 re2, MachineInput in, int pos, int anchor) {
+    Machine m = new Machine(re2);
+    m.init(2);
+    return m.match(in, pos, anchor) ? m.submatches()[1] : DFA.NO_MATCH;
+  }
+
+  private static void check(RE2 re2, MachineInput in, int pos, int anchor, String what) {
+    int want = machineEnd(re2, in, pos, anchor);
+    DFA dfa = new DFA(re2, re2.longest, anchor == RE2.ANCHOR_BOTH);
+    assertEquals(what, want, dfa.search(in, pos, anchor, false));
+    int any = dfa.search(in, pos, anchor, true);
+    assertEquals(what, want == DFA.NO_MATCH, any == DFA.NO_MATCH);
+  }
+
+  @Test
+  public void testAgreesWithMachine() {
+    for (String pattern : PATTERNS) {
+      for (boolean longest : new boolean[] {false, true}) {
+        RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+        for (String input : INPUTS) {
+          byte[] b = GoTestUtils.utf8(input);
+          for (int anchor : new int[] {RE2.UNANCHORED, RE2.ANCHOR_START, RE2.ANCHOR_BOTH}) {
+            for (int pos = 0; pos <= input.length(); pos++) {
+              String what =
+                  String.format(
+                      "%s longest=%b on %s at %d anchor %d", pattern, longest, input, pos, anchor);
+              check(re2, MachineInput.fromUTF16(input), pos, anchor, what);
+            }
+            for (int pos = 0; pos <= b.length; pos++) {
+              String what =
+                  String.format(
+                      "%s longest=%b on UTF-8 %s at %d anchor %d",
+                      pattern, longest, input, pos, anchor);
+              check(re2, MachineInput.fromUTF8(b), pos, anchor, what);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSmallCache() {
+    // Each state of (a|b)*a(a|b){8} records which of the last nine runes
+    // were 'a', so random input visits hundreds of states.
+    RE2 re2 = RE2.compile("(a|b)*a(a|b){8}");
+    Random random = new Random(1);
+    StringBuilder slow = new StringBuilder();
+    StringBuilder thrash = new StringBuilder();
+    for (int i = 0; i < 30; i++) {
+      for (int j = 0; j < 9; j++) {
+        slow.append(random.nextBoolean() ? 'a' : 'b');
+      }
+      for (int j = 0; j < 1000; j++) {
+        slow.append('a');
+      }
+    }
+    for (int i = 0; i < 20000; i++) {
+      thrash.append(random.nextBoolean() ? 'a' : 'b');
+    }
+    slow.append('c');
+    thrash.append('c');
+
+    // A cache for about a hundred states is flushed now and then when new
+    // states are needed slowly, but the search gives up when they are needed
+    // at every step.
+    int maxMem = 100 << 10;
+    MachineInput in = MachineInput.fromUTF16(slow);
+    assertEquals(machineEnd(re2, in, 0, RE2.UNANCHORED), 30 * 1009);
+    assertEquals(30 * 1009, new DFA(re2, false, false, maxMem).search(in, 0, RE2.UNANCHORED, false));
+    in = MachineInput.fromUTF16(thrash);
+    assertEquals(DFA.FAILED, new DFA(re2, false, false, maxMem).search(in, 0, RE2.UNANCHORED, false));
+    assertEquals(
+        machineEnd(re2, in, 0, RE2.UNANCHORED),
+        new DFA(re2, false, false).search(in, 0, RE2.UNANCHORED, false));
+
+    // A budget too small for the program disables the DFA.
+    assertEquals(DFA.FAILED, new DFA(re2, false, false, 1 << 10).search(in, 0, RE2.UNANCHORED, true));
+
+    // RE2 falls back to the Machine.
+    assertTrue(re2.match(thrash));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import org.junit.Test;
+
+/** Tests of explaining patterns as they are edited. */
+public class ExplanationTest {
+
+  private static void assertSameTracks(Pattern want, Explanation got) {
+    assertNull(got.pattern(), got.error());
+    List<Track> w = want.explain();
+    List<Track> g = got.tracks();
+    assertEquals(got.pattern(), w.size(), g.size());
+    for (int i = 0; i < w.size(); i++) {
+      assertEquals(got.pattern() + "@" + i, w.get(i).Start, g.get(i).Start);
+      assertEquals(got.pattern() + "@" + i, w.get(i).End, g.get(i).End);
+      assertEquals(got.pattern() + "@" + i, w.get(i).Comments, g.get(i).Comments);
+    }
+  }
+
+  @Test
+  public void testOf() {
+    String[] regexps = {"abc", "a.b$", "(?P<year>\\d{4})-(\\d\\d)", "x*|[a-c]+?"};
+    int[] flags = {0, Pattern.CASE_INSENSITIVE | Pattern.DOTALL | Pattern.MULTILINE};
+    for (String regexp : regexps) {
+      for (int f : flags) {
+        Explanation e = Explanation.of(regexp, f);
+        assertEquals(regexp, e.pattern());
+        assertEquals(f, e.flags());
+        assertSameTracks(Pattern.compile(regexp, f), e);
+      }
+    }
+  }
+
+  @Test
+  public void testError() {
+    Explanation e = Explanation.of("a(b", 0);
+    assertNotNull(e.error());
+    assertEquals("missing closing )", e.error().getDescription());
+    assertTrue(e.tracks().isEmpty());
+  }
+
+  @Test
+  public void testComposedOps() {
+    // Ops that once made composing tracks throw: word boundaries and '|' in groups, and
+    // literals merged across a flag group.
+    String[] regexps = {
+      "(?:\\b)", "a(?:\\b)", "^(?:\\B)", "(?:\\b)$", "|(?s)", "a|(?i)b", "a\\Q.*\\E(?i)\\Q.*\\E",
+    };
+    for (String regexp : regexps) {
+      Explanation e = Explanation.of(regexp, 0);
+      assertNull(regexp, e.error());
+      assertEquals(regexp, 0, e.tracks().get(0).Start);
+      assertEquals(regexp, regexp.length(), e.tracks().get(0).End);
+    }
+    assertEquals(
+        "sequence of [literal 'a',word boundary]",
+        Explanation.of("a(?:\\b)", 0).tracks().get(0).Comments);
+    assertEquals(
+        "sequence of [literal 'a',non-word boundary]",
+        Explanation.of("a(?:\\B)", 0).tracks().get(0).Comments);
+  }
+
+  @Test
+  public void testEdit() {
+    // Type "(\w+)@(\w+)", one keystroke at a time, with a detour through an error.
+    String want = "(\\w+)@(\\w+)";
+    Explanation e = Explanation.of("", 0);
+    for (int i = 0; i < want.length(); i++) {
+      e = e.edit(i, i, want.substring(i, i + 1));
+      assertEquals(want.substring(0, i + 1), e.pattern());
+      Pattern p;
+      try {
+        p = Pattern.compile(e.pattern());
+      } catch (PatternSyntaxException err) {
+        assertNotNull(e.pattern(), e.error());
+        assertEquals(err.getMessage(), e.error().getMessage());
+        continue;
+      }
+      assertSameTracks(p, e);
+    }
+
+    // Replace, delete and insert in the middle.
+    e = e.edit(7, 10, "\\d{2}");
+    assertEquals("(\\w+)@(\\d{2})", e.pattern());
+    assertSameTracks(Pattern.compile(e.pattern()), e);
+    e = e.edit(0, 6, "");
+    assertEquals("(\\d{2})", e.pattern());
+    assertSameTracks(Pattern.compile(e.pattern()), e);
+  }
+
+  @Test
+  public void testReuse() {
+    Explanation abc = Explanation.of("abc", 0);
+    assertSame(abc, abc.edit(1, 2, "b"));
+    Explanation ac = abc.edit(1, 2, "");
+    assertNotSame(abc, ac);
+    // Undoing an edit gives back the earlier explanation, without parsing again.
+    assertSame(abc, ac.edit(1, 1, "b"));
+    assertSame(ac, abc.edit(1, 2, ""));
+    // Unrelated explanations do not share results.
+    assertNotSame(abc, Explanation.of("ac", 0).edit(1, 1, "b"));
+  }
+
+  @Test
+  public void testTracksAreCopies() {
+    Explanation abc = Explanation.of("abc", 0);
+    Track t = abc.tracks().get(0);
+    t.Start = 1;
+    t.End = 2;
+    t.Comments = "changed";
+    abc.tracks().clear();
+    assertSameTracks(Pattern.compile("abc"), abc);
+    // Nor do the changes reach explanations shared through undo.
+    Explanation undone = abc.edit(1, 2, "").edit(1, 1, "b");
+    assertSame(abc, undone);
+    assertSameTracks(Pattern.compile("abc"), undone);
+  }
+
+  @Test
+  public void testBadEdit() {
+    Explanation e = Explanation.of("abc", 0);
+    int[][] ranges = {{-1, 0}, {2, 1}, {0, 4}};
+    for (int[] r : ranges) {
+      try {
+        e.edit(r[0], r[1], "x");
+        fail("edit [" + r[0] + ", " + r[1] + ") of abc");
+      } catch (IndexOutOfBoundsException expected) {
+      }
+    }
+    try {
+      Explanation.of("abc", 1 << 20);
+      fail("unknown flag");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests of the sets of runes that can begin a match. */
+public class FirstSetTest {
+
+  private static FirstSet firstSet(String regexp) {
+    return FirstSet.compute(Compiler.compileRegexp(Simplify.simplify(Parser.parse(regexp, RE2.PERL))));
+  }
+
+  @Test
+  public void testCompute() {
+    FirstSet set = firstSet("[A-Z][a-z]+Exception");
+    for (int r = 0; r < 0x300; r++) {
+      assertEquals(Integer.toHexString(r), 'A' <= r && r <= 'Z', set.contains(r));
+    }
+    set = firstSet("(?i)k|[α-ω]x|\\x{1F600}");
+    assertTrue(set.contains('k'));
+    assertTrue(set.contains('K'));
+    assertTrue(set.contains(0x212A)); // Kelvin sign
+    assertTrue(set.contains('β'));
+    assertTrue(set.contains(0x1F600));
+    assertFalse(set.contains('x'));
+    assertFalse(set.contains(0x1F601));
+    assertNull(firstSet("a*"));
+    assertNull(firstSet("x|.y"));
+    assertNull(firstSet("[^,]+"));
+  }
+
+  @Test
+  public void testIndex() {
+    FirstSet set = firstSet("[A-Z]|é|\\x{1F600}");
+    assertNotNull(set);
+    assertEquals(3, set.index("abcDe", 0, 5));
+    assertEquals(-1, set.index("abcDe", 0, 3));
+    assertEquals(1, set.index("aé", 0, 2));
+    assertEquals(0, set.index("a😀", 1, 3));
+    byte[] b = GoTestUtils.utf8("aé😀");
+    assertEquals(1, set.index(b, 0, b.length));
+    assertEquals(3, set.index(b, 2, b.length) + 2);
+  }
+
+  @Test
+  public void testFindAgreesWithJDK() {
+    String[] regexps = {
+      "[A-Z][a-z]+Exception",
+      "[A-Z]+\\d",
+      "[a-zé]\\w",
+      "(?m)^[A-Z]+$",
+      "[α-ω]+|\\x{1F600}",
+    };
+    String alphabet = "abxyzABCé\nαω😀 ";
+    Random random = new Random(4);
+    for (String regexp : regexps) {
+      Pattern p = Pattern.compile(regexp);
+      assertNotNull(regexp, p.re2().firstSet);
+      java.util.regex.Pattern jp = java.util.regex.Pattern.compile(regexp);
+      for (int n = 0; n < 300; n++) {
+        StringBuilder b = new StringBuilder();
+        for (int i = random.nextInt(40); i > 0; i--) {
+          if (random.nextInt(8) == 0) {
+            b.append("Exception");
+          } else {
+            int j = random.nextInt(alphabet.length());
+            if (Character.isLowSurrogate(alphabet.charAt(j))) {
+              j--;
+            }
+            b.appendCodePoint(alphabet.codePointAt(j));
+          }
+        }
+        String text = b.toString();
+        String what = regexp + " on " + text;
+        Matcher m = p.matcher(text);
+        java.util.regex.Matcher jm = jp.matcher(text);
+        while (jm.find()) {
+          assertTrue(what, m.find());
+          assertEquals(what, jm.start(), m.start());
+          assertEquals(what, jm.end(), m.end());
+        }
+        assertFalse(what, m.find());
+        assertEquals(what, jp.matcher(text).find(), p.re2().matchUTF8(GoTestUtils.utf8(text)));
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests of the case-insensitive prefix search and the case-fold orbits it uses. */
+public class FoldSearchTest {
+
+  private static int want(String text, String literal, int from, int to) {
+    String t = text.toLowerCase();
+    int i = t.indexOf(literal.toLowerCase(), from);
+    return i >= 0 && i + literal.length() <= to ? i : -1;
+  }
+
+  private static FoldSearch search(String literal) {
+    FoldSearch search = RE2.compile("(?i)" + literal).foldSearch;
+    assertNotNull(literal, search);
+    assertEquals(literal.length(), search.length());
+    return search;
+  }
+
+  @Test
+  public void testAgreesWithLowerCaseIndexOf() {
+    // None of these letters has a fold outside ASCII, so lower-casing
+    // both sides finds the same occurrences.
+    Random random = new Random(5);
+    String alphabet = "abAB/";
+    for (int n = 0; n < 2000; n++) {
+      StringBuilder literal = new StringBuilder("a");
+      for (int i = 1 + random.nextInt(7); i > 0; i--) {
+        literal.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      StringBuilder text = new StringBuilder();
+      for (int i = random.nextInt(40); i > 0; i--) {
+        text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String s = text.toString();
+      int from = random.nextInt(s.length() + 1);
+      int to = from + random.nextInt(s.length() - from + 1);
+      String what = literal + " in " + s + "[" + from + ":" + to + "]";
+      assertEquals(what, want(s, literal.toString(), from, to),
+          search(literal.toString()).indexOf(s, from, to));
+    }
+  }
+
+  @Test
+  public void testOrbits() {
+    assertArrayEquals(new int[] {'K', 'K', 'k', 'k', 0x212a, 0x212a}, Compiler.foldRanges('k'));
+    int[][] orbits = RE2.compile("(?i)sk").prog.foldPrefix();
+    assertArrayEquals(new int[] {'S', 's', 0x17f}, orbits[0]);
+    assertArrayEquals(new int[] {'K', 'k', 0x212a}, orbits[1]);
+    FoldSearch search = search("sk");
+    assertEquals(2, search.indexOf("..ſK", 0, 4));
+    assertEquals(-1, search.indexOf("..ſK", 0, 3));
+  }
+
+  @Test
+  public void testPrefix() {
+    // An exact prefix that goes on case-folded.
+    RE2 re2 = RE2.compile("ab(?i:cd)e");
+    assertEquals("ab", re2.prefix);
+    assertEquals(5, re2.foldSearch.length());
+    assertEquals(6, re2.foldSearch.indexOf("abCdEaabCDe", 0, 11));
+    // The whole prefix is exact, or it has fewer than two runes.
+    assertNull(RE2.compile("abc").foldSearch);
+    assertNull(RE2.compile("(?i)a\\d").foldSearch);
+    // It stops before a rune outside the BMP.
+    assertEquals(2, RE2.compile("(?i)ab𐐀c").foldSearch.length());
+    // Anchored regexps have no prefix search.
+    assertNull(RE2.compile("(?i)^abc").foldSearch);
+  }
+
+  @Test
+  public void testMatch() {
+    RE2 re2 = RE2.compile("(?i)keyword\\d*");
+    assertEquals("KeyWord12", re2.findAll("some text, KeyWord12 and keyw", -1).get(0));
+    assertEquals(3, re2.findAll("kEYWORD kKeyword KEYWORD1", -1).size());
+    RE2 utf8 = RE2.compile("(?i)keyword");
+    assertEquals(
+        1, utf8.findAllUTF8(GoTestUtils.utf8("xx KEYword yy"), -1).size());
+  }
+}
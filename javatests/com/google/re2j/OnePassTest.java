@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+// Original Go source here:
+// https://github.com/golang/go/blob/master/src/regexp/onepass_test.go
+
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class OnePassTest {
+
+  private static final Object[][] ONE_PASS_TESTS = {
+    {"^(?:a|(?:a*))$", false},
+    {"^(?:(a)|(?:a*))$", false},
+    {"^(?:(?:(?:.(?:$))?))$", true},
+    {"^abcd$", true},
+    {"^(?:(?:a{0,})*?)$", true}, // false in Go, whose compiler expands nullable x* differently
+    {"^(?:(?:a+)*)$", true},
+    {"^(?:(?:a|(?:aa)))$", true},
+    {"^(?:[^\\s\\S])$", true},
+    {"^(?:(?:a{3,4}){0,})$", false},
+    {"^(?:(?:(?:a*)+))$", true},
+    {"^[a-c]+$", true},
+    {"^[a-c]*$", true},
+    {"^(?:a*)$", true},
+    {"^(?:(?:aa)|a)$", true},
+    {"^[a-c]*", false},
+    {"^...$", true},
+    {"^(?:a|(?:aa))$", true},
+    {"^a((b))c$", true},
+    {"^a.[l-nA-Cg-j]?e$", true},
+    {"^a((b))$", true},
+    {"^a(?:(b)|(c))c$", true},
+    {"^a(?:(b*)|(c))c$", false},
+    {"^a(?:b|c)$", true},
+    {"^a(?:b?|c)$", true},
+    {"^a(?:b?|c?)$", false},
+    {"^a(?:b?|c+)$", true},
+    {"^a(?:b+|(bc))d$", false},
+    {"^a(?:bc)+$", true},
+    {"^a(?:[bcd])+$", true},
+    {"^a((?:[bcd])+)$", true},
+    {"^a(:?b|c)*d$", true},
+    {"^.bc(d|e)*$", true},
+    {"^(?:(?:aa)|.)$", false},
+    {"^(?:(?:a{1,2}){1,2})$", false},
+    {"^l" + repeat("o", 2 << 8) + "ng$", true},
+    {"^(\\w+)=(\\d+);(.*)$", true},
+    {"(\\w+)=(\\d+)$", false},
+  };
+
+  private static String repeat(String s, int n) {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      b.append(s);
+    }
+    return b.toString();
+  }
+
+  private static Prog compile(String regexp) {
+    Regexp re = Parser.parse(regexp, RE2.PERL);
+    return Compiler.compileRegexp(Simplify.simplify(re));
+  }
+
+  @Test
+  public void testCompileOnePass() {
+    for (Object[] test : ONE_PASS_TESTS) {
+      String regexp = (String) test[0];
+      assertEquals(regexp, test[1], OnePass.compile(compile(regexp)) != null);
+    }
+  }
+
+  private static final String[][] MATCH_TESTS = {
+    {"^(\\w+)=(\\d+);(.*)$", "key=42;rest", "key=42;", "key=x;", "=1;", "k=1;2;3"},
+    {"^a(?:(b)|(c))c$", "abc", "acc", "adc", "ab", "abcc"},
+    {"^a(?:b?|c+)$", "a", "ab", "acc", "abc", "b"},
+    {"^(?i)k(é+)$", "Kéé", "Ké", "kÉ", "k"},
+    {"^x(?:(a)|(b))*y$", "xy", "xaby", "xbbbay", "xaz", "xy\n"},
+    {"(?m)^a(b)$", "ab", "ab\n", "a"},
+  };
+
+  @Test
+  public void testAgreesWithMachine() {
+    for (String[] test : MATCH_TESTS) {
+      RE2 re2 = RE2.compile(test[0]);
+      OnePass onepass = OnePass.compile(re2.prog);
+      if (test[0].startsWith("(?m)")) {
+        assertEquals(test[0], null, onepass);
+        continue;
+      }
+      int ncap = 2 * (re2.numberOfCapturingGroups() + 1);
+      for (int i = 1; i < test.length; i++) {
+        for (int anchor : new int[] {RE2.UNANCHORED, RE2.ANCHOR_START, RE2.ANCHOR_BOTH}) {
+          for (MachineInput in :
+              new MachineInput[] {
+                MachineInput.fromUTF16(test[i]), MachineInput.fromUTF8(GoTestUtils.utf8(test[i]))
+              }) {
+            Machine m = new Machine(re2);
+            m.init(ncap);
+            int[] want = m.match(in, 0, anchor) ? m.submatches() : null;
+            assertArrayEquals(test[0] + " on " + test[i], want, onepass.match(in, 0, anchor, ncap));
+            m.init(ncap);
+            want = m.match(in, 1, anchor) ? m.submatches() : null;
+            assertArrayEquals(test[0] + " on " + test[i], want, onepass.match(in, 1, anchor, ncap));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests of {@link PatternSet}. */
+public class PatternSetTest {
+
+  // naiveFindAll() returns the indices of the patterns of |set| that
+  // Pattern.find() finds in |text|.
+  private static int[] naiveFindAll(PatternSet set, String text) {
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int i = 0; i < set.size(); i++) {
+      if (set.pattern(i).matcher(text).find()) {
+        ids.add(i);
+      }
+    }
+    int[] a = new int[ids.size()];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = ids.get(i);
+    }
+    return a;
+  }
+
+  @Test
+  public void testFindAll() {
+    PatternSet set = PatternSet.compile("foo", "ba+r", "^abc", "xyz$", "\\bcat\\b", "a*");
+    assertEquals(6, set.size());
+    assertEquals("ba+r", set.pattern(1).pattern());
+    assertArrayEquals(new int[] {0, 1, 5}, set.findAll("xx foo baaar"));
+    assertArrayEquals(new int[] {2, 5}, set.findAll("abcdef"));
+    assertArrayEquals(new int[] {3, 5}, set.findAll("wxyz"));
+    assertArrayEquals(new int[] {5}, set.findAll("xyzw concat"));
+    assertArrayEquals(new int[] {4, 5}, set.findAll("a cat!"));
+    assertArrayEquals(new int[] {5}, set.findAll(""));
+    assertEquals(0, set.findFirst("barfoo"));
+    assertEquals(1, PatternSet.compile("foo", "bar").findFirst("xbarx"));
+    assertEquals(-1, PatternSet.compile("foo", "bar").findFirst("fobaxr"));
+    assertArrayEquals(new int[0], PatternSet.compile().findAll("foo"));
+  }
+
+  @Test
+  public void testFlags() {
+    PatternSet set =
+        PatternSet.compile(Arrays.asList("^bar", "FOO", "a.b"), Pattern.MULTILINE | Pattern.DOTALL);
+    assertArrayEquals(new int[] {0, 2}, set.findAll("foo\nbar a\nb"));
+    set = PatternSet.compile(Arrays.asList("foo", "é"), Pattern.CASE_INSENSITIVE);
+    assertArrayEquals(new int[] {0, 1}, set.findAll("FOO É"));
+  }
+
+  @Test(expected = PatternSyntaxException.class)
+  public void testSyntaxError() {
+    PatternSet.compile("foo", "(bar");
+  }
+
+  @Test
+  public void testAgreesWithPattern() {
+    List<String> regexes = new ArrayList<String>();
+    Random random = new Random(1);
+    String alphabet = "abcde";
+    for (int i = 0; i < 200; i++) {
+      StringBuilder b = new StringBuilder();
+      for (int j = 1 + random.nextInt(4); j > 0; j--) {
+        b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        switch (random.nextInt(6)) {
+          case 0:
+            b.append('+');
+            break;
+          case 1:
+            b.append("[c-e]");
+            break;
+          default:
+            break;
+        }
+      }
+      if (random.nextInt(10) == 0) {
+        b.insert(0, '^');
+      }
+      if (random.nextInt(10) == 0) {
+        b.append('$');
+      }
+      regexes.add(b.toString());
+    }
+    regexes.add("\\bab");
+    regexes.add("(?i)cde\\B");
+    regexes.add("[^a-e]{2}");
+    regexes.add("αβ|γ");
+    PatternSet set = PatternSet.compile(regexes, 0);
+    for (int n = 0; n < 300; n++) {
+      StringBuilder b = new StringBuilder();
+      for (int i = random.nextInt(30); i > 0; i--) {
+        b.append("abcde Cαγ".charAt(random.nextInt(9)));
+      }
+      String text = b.toString();
+      int[] want = naiveFindAll(set, text);
+      assertArrayEquals(text, want, set.findAll(text));
+      assertEquals(text, want.length > 0 ? want[0] : -1, set.findFirst(text));
+    }
+  }
+
+  @Test
+  public void testManyPatterns() {
+    List<String> regexes = new ArrayList<String>();
+    for (int i = 0; i < 2000; i++) {
+      regexes.add("/api/v" + (i % 7) + "/item" + i + "(/\\d+)?$");
+    }
+    PatternSet set = PatternSet.compile(regexes, 0);
+    assertArrayEquals(new int[] {1234}, set.findAll("GET /api/v2/item1234/56"));
+    assertArrayEquals(new int[0], set.findAll("GET /api/v2/item1234/x"));
+    assertEquals(99, set.findFirst("/api/v1/item99"));
+  }
+}
@@ -7,6 +7,7 @@
 package com.google.re2j;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
@@ -142,6 +143,40 @@ public class PatternTest {
     ApiTestUtils.testSplit(regexp2, s, new String[] {"b", "", ":and:f"});
   }
 
+  @Test
+  public void testLiteral() {
+    String[] regexps = {"a.b*", "(x)", "\\Q[", "", "日本"};
+    String[] inputs = {"", "a.b*", "xa.b*ya.b*", "aab", "(x)(x)", "\\Q[", "日本語の日本"};
+    for (String regexp : regexps) {
+      for (int flags : new int[] {0, Pattern.CASE_INSENSITIVE, Pattern.DOTALL | Pattern.MULTILINE}) {
+        Pattern p = Pattern.compile(regexp, Pattern.LITERAL | flags);
+        java.util.regex.Pattern jp =
+            java.util.regex.Pattern.compile(regexp, java.util.regex.Pattern.LITERAL | flags);
+        assertEquals(0, p.groupCount());
+        for (String input : inputs) {
+          String what = regexp + " on " + input;
+          assertEquals(what, jp.matcher(input).matches(), p.matcher(input).matches());
+          assertEquals(what, jp.matcher(input).lookingAt(), p.matcher(input).lookingAt());
+          Matcher m = p.matcher(input);
+          java.util.regex.Matcher jm = jp.matcher(input);
+          while (jm.find()) {
+            assertTrue(what, m.find());
+            assertEquals(what, jm.start(), m.start());
+            assertEquals(what, jm.end(), m.end());
+          }
+          assertFalse(what, m.find());
+          assertEquals(what, jm.replaceAll("<$0>"), p.matcher(input).replaceAll("<$0>"));
+          if (!regexp.isEmpty() && !input.isEmpty()) {
+            assertArrayEquals(what, jp.split(input), p.split(input));
+          }
+          assertEquals(what, jp.matcher(input).find(), p.re2().matchUTF8(GoTestUtils.utf8(input)));
+        }
+      }
+    }
+    assertTrue(Pattern.compile("A.B", Pattern.LITERAL | Pattern.CASE_INSENSITIVE).matches("a.b"));
+    assertFalse(Pattern.compile("a.b", Pattern.LITERAL).matches("axb"));
+  }
+
   @Test
   public void testGroupCount() {
     // It is a simple delegation, but still test it.
@@ -9,7 +9,9 @@
 
 package com.google.re2j;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -116,4 +118,32 @@ public class ProgTest {
     String s = p.toString();
     assertEquals("compiled: " + input, expected, s);
   }
+
+  @Test
+  public void testFlatten() throws Exception {
+    Prog p = RE2.compile(input).prog; // (flattened by RE2)
+    Prog q = Compiler.compileRegexp(Simplify.simplify(Parser.parse(input, RE2.PERL)));
+    assertEquals(q.numInst(), p.numInst());
+    for (int pc = 0; pc < p.numInst(); pc++) {
+      Inst inst = q.getInst(pc);
+      assertEquals(inst.op, p.ops[pc]);
+      assertEquals(inst.out, p.outs[pc]);
+      assertEquals(inst.arg, p.args[pc]);
+      int[] runes = inst.runes != null ? inst.runes : Utils.EMPTY_INTS;
+      assertArrayEquals(runes, p.runes(pc));
+      assertEquals(q.instString(pc), p.instString(pc));
+      // The pool holds the runes now, not the Inst.
+      assertNull(p.getInst(pc).runes);
+      assertNull(p.getInst(pc).classes);
+      if (inst.op == Inst.RUNE) {
+        for (int r = 0; r < 0x300; r++) {
+          boolean want =
+              inst.folds != null
+                  ? Inst.matchRune(inst.folds, 0, inst.folds.length, 0, r)
+                  : Inst.matchRune(runes, 0, runes.length, inst.arg, r);
+          assertEquals(input + " " + r, want, p.matchRune(pc, r));
+        }
+      }
+    }
+  }
 }
@@ -12,8 +12,10 @@ package com.google.re2j;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.google.re2j.RE2.*;
@@ -1378,8 +1380,105 @@ public class RegexTrackTest {
         }
     }
 
+    @Test
+    public void testNoTracksByDefault() throws PatternSyntaxException {
+        for (String regexp : PARSE_TESTS.keySet()) {
+            assertTrue(regexp, Parser.parse(regexp, TEST_FLAGS).GetAllTracks().isEmpty());
+        }
+    }
+
+    @Test
+    public void testExplain() throws PatternSyntaxException {
+        for (String regexp : PARSE_TESTS.keySet()) {
+            Pattern p = Pattern.compile(regexp);
+            assertTracksEqual(regexp, Parser.parseWithTracks(regexp, TEST_FLAGS).GetAllTracks(),
+                    p.explain());
+            assertNotSame(regexp, p.explain(), p.explain());
+        }
+
+        // Changing the returned tracks does not change the cached ones.
+        Pattern p = Pattern.compile("abc");
+        List<Track> want = p.explain();
+        p.explain().get(0).Comments = "changed";
+        p.explain().clear();
+        assertTracksEqual("abc", want, p.explain());
+
+        // Flags apply without shifting the tracks off the pattern.
+        String regexp = "a.b$";
+        assertTracksEqual(regexp,
+                Parser.parseWithTracks(regexp, (TEST_FLAGS | FOLD_CASE | DOT_NL) & ~ONE_LINE)
+                        .GetAllTracks(),
+                Pattern.compile(regexp, Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+                        | Pattern.MULTILINE).explain());
+        assertTracksEqual(regexp, new ArrayList<Track>(),
+                Pattern.compile(regexp, Pattern.LITERAL).explain());
+
+        // Word boundaries in groups compile, so they must explain too.
+        String[] bounded = {"(?:\\b)", "a(?:\\b)", "^(?:\\B)", "(?:\\b)$"};
+        for (String b : bounded) {
+            List<Track> tracks = Pattern.compile(b).explain();
+            assertTracksEqual(b, Parser.parseWithTracks(b, TEST_FLAGS).GetAllTracks(), tracks);
+            assertEquals(b, 0, tracks.get(0).Start);
+            assertEquals(b, b.length(), tracks.get(0).End);
+        }
+    }
+
+    // Composition used to be cubic in the number of alternatives: this took minutes.
+    @Test(timeout = 10000)
+    public void testLargeAlternation() throws PatternSyntaxException {
+        int n = 5000;
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                b.append('|');
+            }
+            b.append("w").append(i + n).append("x");
+        }
+        String regexp = b.toString();
+        ArrayList<Track> tracks = Parser.parseWithTracks(regexp, TEST_FLAGS).GetAllTracks();
+        assertEquals(2 * n, tracks.size());
+        assertEquals(0, tracks.get(0).Start);
+        assertEquals(regexp.length(), tracks.get(0).End);
+        for (int i = 0; i < n; i++) {
+            Track word = tracks.get(2 * i + 1);
+            assertEquals(7 * i, word.Start);
+            assertEquals(7 * i + 6, word.End);
+            assertEquals("string \"w" + (i + n) + "x\"", word.Comments);
+            if (i + 1 < n) {
+                Track bar = tracks.get(2 * i + 2);
+                assertEquals(7 * i + 6, bar.Start);
+                assertEquals("alternation", bar.Comments);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveOverlapped() {
+        RegexpTracks rt = new RegexpTracks(new Regexp(Regexp.Op.EMPTY_MATCH));
+        ArrayList<Track> sorted = new ArrayList<Track>();
+        int[][] ranges = {{0, 10}, {0, 4}, {2, 3}, {5, 12}, {6, 12}, {11, 11}, {11, 12}, {13, 14}};
+        for (int[] r : ranges) {
+            sorted.add(new Track(r[0], r[1], "[" + r[0] + "," + r[1] + ")"));
+        }
+        Collections.sort(sorted);
+        rt.removeOverlapped(sorted);
+        assertEquals(3, sorted.size());
+        assertEquals("[0,10)", sorted.get(0).Comments);
+        assertEquals("[5,12)", sorted.get(1).Comments);
+        assertEquals("[13,14)", sorted.get(2).Comments);
+    }
+
+    private static void assertTracksEqual(String regexp, List<Track> want, List<Track> got) {
+        assertEquals(regexp, want.size(), got.size());
+        for (int i = 0; i < want.size(); i++) {
+            assertEquals(regexp+"@"+i+":start", want.get(i).Start, got.get(i).Start);
+            assertEquals(regexp+"@"+i+":end", want.get(i).End, got.get(i).End);
+            assertEquals(regexp+"@"+i+":info", want.get(i).Comments, got.get(i).Comments);
+        }
+    }
+
     private void testRegexpTrack(String regexp) throws PatternSyntaxException {
-        Regexp re = Parser.parse(regexp, TEST_FLAGS);
+        Regexp re = Parser.parseWithTracks(regexp, TEST_FLAGS);
         Track[] testTracks = PARSE_TESTS.get(regexp);
         ArrayList<Track> tracks = re.GetAllTracks();
         assertEquals(regexp, testTracks.length, tracks.size());
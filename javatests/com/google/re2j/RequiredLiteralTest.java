@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests of the literals that every match must contain, and searches that use them. */
+public class RequiredLiteralTest {
+
+  private static Regexp parse(String regexp) {
+    return Simplify.simplify(Parser.parse(regexp, RE2.PERL));
+  }
+
+  private static String required(String regexp) {
+    int[] s = Literals.required(parse(regexp));
+    return s == null ? null : new String(s, 0, s.length);
+  }
+
+  @Test
+  public void testRequired() {
+    assertEquals(" ERROR ", required("\\d+ ERROR [a-z]+"));
+    assertEquals(" /api/v2/", required("(GET|POST) /api/v2/"));
+    assertEquals("foobar", required("x*(foo)\\bbar"));
+    assertEquals("abc", required("(abc)+"));
+    assertEquals("é!", required("[a-z]é!"));
+    assertNull(required("(?i)error"));
+    assertNull(required("foo|bar"));
+    assertNull(required("(abc)*"));
+    assertNull(required("\\d+"));
+  }
+
+  @Test
+  public void testMaxLength() {
+    assertEquals(3, Literals.maxLength(parse("abc")));
+    assertEquals(7, Literals.maxLength(parse("a(bc)?[0-9]{2,4}")));
+    assertEquals(5, Literals.maxLength(parse("^x|hello\\b")));
+    assertEquals(-1, Literals.maxLength(parse("ab+")));
+    assertEquals(-1, Literals.maxLength(parse("(a.{500}){3}")));
+  }
+
+  @Test
+  public void testReject() {
+    RE2 re2 = RE2.compile("\\d+ ERROR [a-z]+");
+    assertEquals(" ERROR ", re2.required);
+    assertFalse(re2.match("12 WARN disk"));
+    assertTrue(re2.match("12 ERROR disk"));
+    assertFalse(re2.matchUTF8(GoTestUtils.utf8("12 WARN disk")));
+    // The literal must lie within the input bounds.
+    assertFalse(re2.match("12 ERROR disk", 0, 6, RE2.UNANCHORED, null, 0));
+    // It is already found by the prefix search.
+    assertNull(RE2.compile("abc\\d+").required);
+  }
+
+  @Test
+  public void testFindAgreesWithJDK() {
+    String[] regexps = {
+      "\\d+ ERROR [a-z]+",
+      "(GET|POST) /api/v2/",
+      "[a-z]{2}é!",
+      "\\b\\w{1,3}:(\\d\\d)\\b",
+      "^\\w+ ERROR",
+      "(?m)^\\d ERROR$",
+    };
+    String[] words = {"ERROR", " ERROR ", "GET", "POST", " /api/v2/", "é!", ":", "\n"};
+    String alphabet = "abcxyz0123 ";
+    Random random = new Random(2);
+    for (String regexp : regexps) {
+      Pattern p = Pattern.compile(regexp);
+      java.util.regex.Pattern jp = java.util.regex.Pattern.compile(regexp);
+      for (int n = 0; n < 300; n++) {
+        StringBuilder b = new StringBuilder();
+        for (int i = random.nextInt(40); i > 0; i--) {
+          if (random.nextInt(6) == 0) {
+            b.append(words[random.nextInt(words.length)]);
+          } else {
+            b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+          }
+        }
+        String text = b.toString();
+        String what = regexp + " on " + text;
+        Matcher m = p.matcher(text);
+        java.util.regex.Matcher jm = jp.matcher(text);
+        while (jm.find()) {
+          assertTrue(what, m.find());
+          assertEquals(what, jm.start(), m.start());
+          assertEquals(what, jm.end(), m.end());
+        }
+        assertFalse(what, m.find());
+        byte[] utf8 = GoTestUtils.utf8(text);
+        assertEquals(what, jp.matcher(text).find(), p.re2().matchUTF8(utf8));
+      }
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Tests of the reversed program: suffix-anchored search and {@link Matcher#findLast}. */
+public class ReverseTest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "abc",
+    "a+",
+    "(a|ab)(c|bcd)?",
+    "\\.(jpg|png)$",
+    "error: (.*)$",
+    "(a*)$",
+    "b\\z",
+    "^ab$",
+    "(?m)^b$",
+    "\\bfoo\\b",
+    "(é|ö)+$",
+    "(?i)k$",
+    "x*",
+    "",
+  };
+
+  private static final String[] INPUTS = {
+    "",
+    "a",
+    "abc",
+    "xabcx",
+    "aaab",
+    "abcd",
+    "pic.jpg",
+    "pic.png.gif",
+    "a.jpg\nb.png",
+    "error: x\nerror: disk full",
+    "aaa",
+    "ab",
+    "a\nb\nc",
+    "foo food foo",
+    "éöé",
+    "xK",
+  };
+
+  private static int[] machine(RE2 re2, MachineInput in, int pos, int anchor, int ncap) {
+    Machine m = new Machine(re2);
+    m.init(ncap);
+    return m.match(in, pos, anchor) ? m.submatches() : null;
+  }
+
+  @Test
+  public void testReverseInput() {
+    MachineInput in = MachineInput.fromUTF16("ab𐐀c").reverse(1);
+    assertEquals(4, in.endPos());
+    assertEquals('c' << 3 | 1, in.step(0));
+    assertEquals(0x10400 << 3 | 2, in.step(1));
+    assertEquals('b' << 3 | 1, in.step(3));
+    assertEquals(MachineInput.EOF, in.step(4));
+    assertEquals(Utils.EMPTY_BEGIN_TEXT | Utils.EMPTY_BEGIN_LINE, in.context(0) & 0x0f);
+    assertEquals(0, in.context(4) & 0x0f);
+
+    in = MachineInput.fromUTF8(GoTestUtils.utf8("xé")).reverse(0);
+    assertEquals('é' << 3 | 2, in.step(0));
+    assertEquals('x' << 3 | 1, in.step(2));
+    assertEquals(Utils.EMPTY_END_TEXT | Utils.EMPTY_END_LINE, in.context(3) & 0x0f);
+
+    // Begins before the end of the text, which context() still sees.
+    in = MachineInput.fromUTF16("ab\nc").reverse(0, 3);
+    assertEquals(3, in.endPos());
+    assertEquals('\n' << 3 | 1, in.step(0));
+    assertEquals('a' << 3 | 1, in.step(2));
+    assertEquals(MachineInput.EOF, in.step(3));
+    assertEquals(MachineInput.EOF, in.stepBack(0));
+    assertEquals(Utils.EMPTY_END_LINE, in.context(0) & 0x0f);
+
+    // Ends inside a rune, whose last unit is read alone.
+    in = MachineInput.fromUTF16("\uD83D\uDE00b").reverse(1);
+    assertEquals(0xDE00 << 3 | 1, in.step(1));
+    assertEquals(MachineInput.EOF, in.step(2));
+    in = MachineInput.fromUTF8(GoTestUtils.utf8("xé")).reverse(2);
+    assertEquals(0xA9 << 3 | 1, in.step(0));
+  }
+
+  @Test
+  public void testCompileReversed() {
+    Prog prog = Compiler.compileReversed(Simplify.simplify(Parser.parse("\\.(jpg|png)$", RE2.PERL)));
+    assertEquals(Utils.EMPTY_BEGIN_TEXT, prog.startCond());
+    RE2 re2 = RE2.compile("\\.(jpg|png)$");
+    assertTrue(re2.endsText);
+    assertTrue(re2.reverse().match("gpj.cip"));
+    assertFalse(re2.reverse().match("pic.jpg"));
+    assertFalse(RE2.compile("\\.(jpg|png)$|x").endsText);
+    assertTrue(RE2.compile("(a\\z)\\b").endsText);
+  }
+
+  @Test
+  public void testReverseBuiltOnFirstUse() {
+    RE2 re2 = RE2.compile("a+b");
+    assertNull(re2.reverse);
+    assertFalse(re2.match("xaab", 0, 4, RE2.ANCHOR_START, null, 0));
+    assertNull(re2.reverse);
+    int[] group = new int[2];
+    assertTrue(re2.match("xaab", 0, 4, RE2.UNANCHORED, group, 1));
+    assertArrayEquals(new int[] {1, 4}, group);
+    assertNotNull(re2.reverse);
+    assertSame(re2.reverse, re2.reverse());
+  }
+
+  @Test
+  public void testSuffixAnchoredAgreesWithMachine() {
+    for (String pattern : PATTERNS) {
+      for (boolean longest : new boolean[] {false, true}) {
+        RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+        int ncap = 2 * (1 + re2.numberOfCapturingGroups());
+        for (String input : INPUTS) {
+          for (int pos = 0; pos <= input.length(); pos++) {
+            String what = String.format("%s longest=%b on %s at %d", pattern, longest, input, pos);
+            MachineInput in = MachineInput.fromUTF16(input);
+            int[] want = machine(re2, in, pos, RE2.UNANCHORED, ncap);
+            int[] got = new int[ncap];
+            assertEquals(
+                what, want != null, re2.match(input, pos, input.length(), RE2.UNANCHORED, got, 1));
+            if (want != null) {
+              assertEquals(what, want[0], got[0]);
+              assertEquals(what, want[1], got[1]);
+              assertTrue(re2.match(input, pos, input.length(), RE2.UNANCHORED, got, ncap / 2));
+              assertArrayEquals(what, want, got);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMatchBoundsAgreeWithMachine() {
+    // The bounds of an unanchored match come from a forward DFA for the
+    // end and the reversed DFA for the start; these patterns have matches
+    // that would start earlier if the text ended where the match does.
+    String[] patterns = {"b|ab\\z", "b|ab$", "b|ab\\b", "c|(?:ab)+\\B", "[ab]+|xab"};
+    String[] inputs = {"ab", "abc", "ab ab", "xabab", "xababx", "abab\n"};
+    for (String pattern : patterns) {
+      for (boolean longest : new boolean[] {false, true}) {
+        RE2 re2 = RE2.compileImpl(pattern, RE2.PERL, longest);
+        for (String input : inputs) {
+          for (int pos = 0; pos <= input.length(); pos++) {
+            String what = pattern + " longest=" + longest + " on " + input + " at " + pos;
+            int[] want = machine(re2, MachineInput.fromUTF16(input), pos, RE2.UNANCHORED, 2);
+            int[] got = new int[2];
+            assertEquals(
+                what, want != null, re2.match(input, pos, input.length(), RE2.UNANCHORED, got, 1));
+            if (want != null) {
+              assertArrayEquals(what, want, got);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMatchBoundsFromInsidePair() {
+    // A search that starts between the halves of a surrogate pair can
+    // match the low half alone; the reversed scan must see it too.
+    String[] patterns = {"\\A|[^a]+", "[^a]+", "x*([^a]+)", "\\B.b"};
+    String[] inputs = {"\uD83D\uDE00b", "c\uD83D\uDE00b"};
+    for (String pattern : patterns) {
+      RE2 re2 = RE2.compile(pattern);
+      for (String input : inputs) {
+        for (int pos = 0; pos <= input.length(); pos++) {
+          String what = pattern + " on " + input + " at " + pos;
+          int[] want = machine(re2, MachineInput.fromUTF16(input), pos, RE2.UNANCHORED, 2);
+          int[] got = new int[2];
+          assertEquals(
+              what, want != null, re2.match(input, pos, input.length(), RE2.UNANCHORED, got, 1));
+          if (want != null) {
+            assertArrayEquals(what, want, got);
+          }
+        }
+      }
+    }
+
+    Matcher m = Pattern.compile("x*([^a]+)").matcher("c\uD83D\uDE00b");
+    assertTrue(m.find(2));
+    assertEquals(2, m.start());
+    assertEquals(2, m.start(1));
+    assertEquals(4, m.end(1));
+    m = Pattern.compile("\\A|[^a]+").matcher("\uD83D\uDE00b");
+    assertTrue(m.find());
+    assertEquals(0, m.end());
+    assertTrue(m.find());
+    assertEquals(1, m.start());
+  }
+
+  // lastMatch() returns the last match by brute force: the rightmost end,
+  // then the leftmost start, of an anchored Machine match on the input
+  // bounded by those positions.
+  private static int[] lastMatch(RE2 re2, String input) {
+    for (int end = input.length(); end >= 0; end--) {
+      for (int start = 0; start <= end; start++) {
+        int[] m = machine(re2, MachineInput.fromUTF16(input, start, end), 0, RE2.ANCHOR_BOTH, 2);
+        if (m != null) {
+          return new int[] {start, end};
+        }
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testFindLast() {
+    for (String pattern : PATTERNS) {
+      Pattern p = Pattern.compile(pattern);
+      for (String input : INPUTS) {
+        String what = pattern + " on " + input;
+        int[] want = lastMatch(p.re2(), input);
+        Matcher m = p.matcher(input);
+        assertEquals(what, want != null, m.findLast());
+        if (want != null) {
+          assertEquals(what, want[0], m.start());
+          assertEquals(what, want[1], m.end());
+          for (int i = 1; i <= m.groupCount(); i++) {
+            m.group(i); // consistent with the match bounds
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFindLastGroups() {
+    Matcher m = Pattern.compile("(\\w+)\\.(jpg|png)").matcher("a.jpg b.png c.gif");
+    assertTrue(m.findLast());
+    assertEquals("b.png", m.group());
+    assertEquals("b", m.group(1));
+    assertEquals("png", m.group(2));
+    assertFalse(m.find());
+
+    m = Pattern.compile("a|ab").matcher("xabx");
+    assertTrue(m.findLast());
+    assertEquals("ab", m.group());
+
+    assertFalse(Pattern.compile("z").matcher("abc").findLast());
+  }
+}
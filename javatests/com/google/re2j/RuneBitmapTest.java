@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Tests of the bitmaps with which RUNE instructions match runes. */
+public class RuneBitmapTest {
+
+  // check() asserts that the bitmaps of each RUNE instruction of |expr|,
+  // and the flat form of the program, agree with a search of its runes.
+  private static void check(String expr, boolean wide) {
+    Prog prog = RE2.compile(expr).prog;
+    Prog orig = Compiler.compileRegexp(Simplify.simplify(Parser.parse(expr, RE2.PERL)));
+    RuneBitmap.compute(orig);
+    int rune = 0;
+    for (int pc = 0; pc < orig.numInst(); pc++) {
+      Inst inst = orig.getInst(pc);
+      if (inst.op != Inst.RUNE) {
+        continue;
+      }
+      rune++;
+      assertNotNull(expr, inst.bitmap);
+      assertEquals(expr, wide, inst.bitmap.hasTable());
+      // Flattening keeps only the bitmaps with a table.
+      assertEquals(expr, wide, prog.getInst(pc).bitmap != null);
+      for (int r = -1; r <= 0x30000; r++) {
+        boolean want = Inst.matchRune(inst.runes, 0, inst.runes.length, inst.arg, r);
+        if (r < 0x100 || wide) {
+          assertEquals(expr + " " + r, want, inst.bitmap.contains(r));
+        }
+        assertEquals(expr + " " + r, want, prog.matchRune(pc, r));
+      }
+    }
+    assertTrue(expr, rune > 0);
+  }
+
+  @Test
+  public void testNarrowClasses() {
+    check("[A-Za-z0-9_.-]", false);
+    check("(?i)k", false);
+    check("[^a\\x{100}-\\x{2000}]", false);
+  }
+
+  @Test
+  public void testWideClasses() {
+    check("\\pL", true);
+    check("\\PL", true);
+    check("\\p{Greek}", true);
+    check("\\p{Han}", true);
+  }
+
+  @Test
+  public void testMatch() {
+    RE2 re2 = RE2.compile("[\\p{Greek}\\d]+");
+    assertTrue(re2.match("abc αβγ123"));
+    assertFalse(re2.match("abc xyz"));
+    assertEquals("αβγ123", RE2.compile("\\p{Greek}[\\p{Greek}\\d]*").findAll("αβγ123 x", -1).get(0));
+  }
+}
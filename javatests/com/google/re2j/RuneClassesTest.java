@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+/** Tests that rune classes agree with the instructions they summarize. */
+public class RuneClassesTest {
+
+  private static final String[] PATTERNS = {
+    "a",
+    "(?i)k",
+    "(?i)σ+",
+    "[α-ω]+x",
+    "\\pL\\pN*",
+    "[^a-z\\x{10000}]",
+    "(?i)[a-f]|\\p{Greek}",
+    "[\\x{0}-\\x{10FFFF}]",
+  };
+
+  @Test
+  public void testAgreesWithRunes() {
+    for (String pattern : PATTERNS) {
+      RE2 re2 = RE2.compile(pattern);
+      RuneClasses classes = re2.classes;
+      assertNotNull(pattern, classes);
+      for (int pc = 0; pc < re2.prog.numInst(); pc++) {
+        if (re2.prog.getInst(pc).op != Inst.RUNE) {
+          continue;
+        }
+        for (int r = 0; r <= Unicode.MAX_RUNE; r += r < 0x20000 ? 1 : 0x101) {
+          assertEquals(
+              pattern + " at " + Integer.toHexString(r),
+              re2.prog.matchRune(pc, r),
+              re2.prog.matchClass(pc, classes.classOf(r)));
+        }
+        assertFalse(re2.prog.matchClass(pc, classes.classOf(-1)));
+      }
+    }
+  }
+
+  @Test
+  public void testSize() {
+    // The context runes \n, 0-9, A-Z, _ and a-z, and what lies between
+    // them, are classes of their own.
+    assertEquals(11, RE2.compile("\\d").classes.size());
+    // α-ω and the runes before and after it.
+    assertEquals(13, RE2.compile("[α-ω]+").classes.size());
+    assertEquals(11, RE2.compile("[0-9a-z]+").classes.size());
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 The Go Authors. All rights reserved.
+ *
+ * Use of this source code is governed by a BSD-style
+ * license that can be found in the LICENSE file.
+ */
+package com.google.re2j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests that StringSearch agrees with String.indexOf. */
+public class StringSearchTest {
+
+  private static int want(String text, String literal, int from, int to) {
+    int i = text.indexOf(literal, from);
+    return i >= 0 && i + literal.length() <= to ? i : -1;
+  }
+
+  private static int utf8Index(String text, int i) {
+    return i < 0 ? i : GoTestUtils.utf8(text.substring(0, i)).length;
+  }
+
+  @Test
+  public void testAgreesWithIndexOf() {
+    Random random = new Random(3);
+    String alphabet = "aabéÿǿ/";
+    for (int n = 0; n < 2000; n++) {
+      StringBuilder literal = new StringBuilder();
+      for (int i = 1 + random.nextInt(8); i > 0; i--) {
+        literal.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      StringBuilder text = new StringBuilder();
+      for (int i = random.nextInt(40); i > 0; i--) {
+        if (random.nextInt(8) == 0) {
+          text.append(literal);
+        } else {
+          text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+      }
+      String s = text.toString();
+      StringSearch search = new StringSearch(literal.toString());
+      int from = random.nextInt(s.length() + 1);
+      int to = from + random.nextInt(s.length() - from + 1);
+      int want = want(s, literal.toString(), from, to);
+      String what = literal + " in " + s + "[" + from + ":" + to + "]";
+      assertEquals(what, want, search.indexOf(s, from, to));
+      assertEquals(what, want, search.indexOf(text, from, to));
+      assertEquals(what, want, search.indexOf(CharBuffer.wrap(s), from, to));
+      byte[] b = GoTestUtils.utf8(s);
+      int bto = utf8Index(s, to);
+      assertEquals(what, utf8Index(s, want), search.indexOf(b, utf8Index(s, from), bto));
+    }
+  }
+
+  @Test
+  public void testLongPrefix() {
+    String prefix = "/api/v2/users/profile/";
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      b.append("/api/v2/users/list/ ");
+    }
+    b.append(prefix).append("42");
+    Pattern p = Pattern.compile(prefix + "(\\d+)");
+    assertEquals(prefix, p.re2().prefix);
+    Matcher m = p.matcher(CharBuffer.wrap(b));
+    assertTrue(m.find());
+    assertEquals("42", m.group(1));
+    assertEquals(b.length() - prefix.length() - 2, m.start());
+    assertTrue(p.re2().matchUTF8(GoTestUtils.utf8(b.toString())));
+    assertFalse(p.matcher(b.substring(0, b.length() - 2)).find());
+  }
+}
@@ -6,6 +6,10 @@
  */
 package com.google.re2j;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
@@ -29,12 +33,46 @@ public class UnicodeTest {
     }
   }
 
+  @Test
+  public void testLookup() {
+    assertSame(UnicodeTables.category("Lu"), UnicodeTables.category("Lu"));
+    assertEquals(0x41, UnicodeTables.category("Lu")[0][0]);
+    assertNotNull(UnicodeTables.category("L"));
+    assertNotNull(UnicodeTables.script("Greek"));
+    assertNotNull(UnicodeTables.script("Yi"));
+    assertNotNull(UnicodeTables.foldCategory("Lu"));
+    assertNotNull(UnicodeTables.foldScript("Greek"));
+    assertNull(UnicodeTables.category("Greek"));
+    assertNull(UnicodeTables.script("Lu"));
+    assertNull(UnicodeTables.foldScript("Han"));
+    assertNull(UnicodeTables.category("Xx"));
+  }
+
+  // in() reports whether |r| is in one of the Unicode |categories|.
+  private static boolean in(int r, String... categories) {
+    for (String category : categories) {
+      for (int[] range : UnicodeTables.category(category)) { // [lo, hi, stride]
+        if (range[0] <= r && r <= range[1] && (r - range[0]) % range[2] == 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Test
+  public void testIsUpperAndIsPrint() {
+    for (int r = 0x100; r <= Unicode.MAX_RUNE; r += r < 0x20000 ? 1 : 61) {
+      String what = Integer.toHexString(r);
+      assertEquals(what, in(r, "Lu"), Unicode.isUpper(r));
+      assertEquals(what, in(r, "L", "M", "N", "P", "S"), Unicode.isPrint(r));
+    }
+  }
+
   // TODO(adonovan): tests for:
   //
-  // boolean isUpper(int r);
   // boolean isLower(int r);
   // boolean isTitle(int r);
-  // boolean isPrint(int r);
   // int to(int _case, int r, int[][] caseRange);
   // int toUpper(int r);
   // int toLower(int r);
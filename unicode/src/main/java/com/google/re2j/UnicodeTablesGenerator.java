@@ -14,21 +14,18 @@ import com.google.googlejavaformat.java.FormatterException;
 import com.ibm.icu.impl.UPropertyAliases;
 import com.ibm.icu.lang.UCharacter;
 import com.ibm.icu.lang.UCharacterCategory;
-import com.ibm.icu.lang.UCharacterEnums;
 import com.ibm.icu.lang.UProperty;
 import com.ibm.icu.lang.UScript;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
-import com.squareup.javapoet.ParameterizedTypeName;
-import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
 import javax.lang.model.element.Modifier;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -40,13 +37,12 @@ import java.util.TreeSet;
 /**
  * Generates Unicode data tables for RE2J. The output of this program should be written to
  * {@code UnicodeTables.java}. Code is google-java-formatted before being emitted.
+ *
+ * <p>Each table is the field of its own holder class, so that it is built only when it is first
+ * looked up: a program that uses only {@code \d} and {@code \w} builds none. Tables are looked up
+ * by name through a sorted array of the names and a switch on the index.
  */
 public class UnicodeTablesGenerator {
-  private static final TypeName RANGE_MAP_TYPE =
-      ParameterizedTypeName.get(Map.class, String.class, int[][].class);
-  private static final TypeName RANGE_HASHMAP_TYPE =
-      ParameterizedTypeName.get(HashMap.class, String.class, int[][].class);
-
   // Represents the final output type.
   private final TypeSpec.Builder unicodeTables =
       TypeSpec.classBuilder("UnicodeTables").addModifiers(Modifier.FINAL);
@@ -58,9 +54,6 @@ public class UnicodeTablesGenerator {
   }
 
   public UnicodeTablesGenerator() {
-    Map<Byte, String> aliases = new HashMap<>();
-    aliases.put(UCharacterEnums.ECharacterCategory.UPPERCASE_LETTER, "Upper");
-
     Map<String, CodepointRange> containers = new HashMap<>();
 
     // Maps category (e.g. Punctuation, dash) to ranges of codepoints in that category.
@@ -124,143 +117,48 @@ public class UnicodeTablesGenerator {
       unicodeTables.addStaticBlock(staticInitBlock.build());
     }
 
-    // Emit range maps (e.g. Lu -> ranges of lowercase symbols).
+    // Emit range tables (e.g. Lu -> ranges of lowercase symbols).
+    SortedMap<String, String> categories = new TreeMap<>();
     for (CodepointRange r : ranges.values()) {
       r.finish();
-
-      FieldSpec fieldSpec =
-          FieldSpec.builder(int[][].class, r.getName(), Modifier.STATIC, Modifier.FINAL)
-              .initializer("$N()", addMakeMethod(r))
-              .build();
-
-      unicodeTables.addField(fieldSpec);
+      categories.put(r.getName(), addTable(r.getName(), r));
     }
 
-    // Emit container maps (e.g. L = Ll + Lm + Lo + Lu) to ranges of codepoints in that container.
+    // Emit container tables (e.g. L = Ll + Lm + Lo + Lu) of ranges of codepoints in that container.
     for (Map.Entry<String, CodepointRange> container : containers.entrySet()) {
       container.getValue().finish();
-
-      FieldSpec fieldSpec =
-          FieldSpec.builder(int[][].class, container.getKey(), Modifier.STATIC, Modifier.FINAL)
-              .initializer("$N()", addMakeMethod(container.getValue()))
-              .build();
-
-      unicodeTables.addField(fieldSpec);
+      categories.put(container.getKey(), addTable(container.getKey(), container.getValue()));
     }
 
-    // Emit script maps (e.g. Latin -> ranges of Latin codepoints).
+    // Emit script tables (e.g. Latin -> ranges of Latin codepoints).
+    SortedMap<String, String> scripts = new TreeMap<>();
     for (Map.Entry<Integer, CodepointRange> script : scriptRanges.entrySet()) {
       script.getValue().finish();
-
-      FieldSpec fieldSpec =
-          FieldSpec.builder(
-                  int[][].class, UScript.getName(script.getKey()), Modifier.STATIC, Modifier.FINAL)
-              .initializer("$N()", addMakeMethod(script.getValue()))
-              .build();
-
-      unicodeTables.addField(fieldSpec);
+      String name = UScript.getName(script.getKey());
+      scripts.put(name, addTable(name, script.getValue()));
     }
 
-    for (Map.Entry<Byte, String> alias : aliases.entrySet()) {
-      FieldSpec fieldSpec =
-          FieldSpec.builder(int[][].class, alias.getValue(), Modifier.STATIC, Modifier.FINAL)
-              .initializer("$N", getShortName(alias.getKey()))
-              .build();
-      unicodeTables.addField(fieldSpec);
-    }
-
-    // Add Categories map (e.g. "Lm" -> Lm).
-    {
-      MethodSpec.Builder categoryMethod =
-          MethodSpec.methodBuilder("Categories")
-              .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
-              .returns(RANGE_MAP_TYPE)
-              .addStatement("$T map = new $T()", RANGE_MAP_TYPE, RANGE_HASHMAP_TYPE);
-
-      for (int category : ranges.keySet()) {
-        String shortName = getShortName(category);
-        categoryMethod.addStatement("map.put($S, $L)", shortName, shortName);
+    SortedMap<String, String> foldScripts = new TreeMap<>();
+    for (Integer script : scriptMap.keySet()) {
+      String name = UScript.getName(script);
+      if (addFoldExceptions("fold" + name, scriptMap.get(script))) {
+        foldScripts.put(name, "fold" + name);
       }
-      for (Map.Entry<String, CodepointRange> container : containers.entrySet()) {
-        categoryMethod.addStatement("map.put($S, $L)", container.getKey(), container.getKey());
-      }
-      categoryMethod.addStatement("return $T.unmodifiableMap(map)", Collections.class);
-      unicodeTables.addMethod(categoryMethod.build());
-
-      unicodeTables.addField(
-          FieldSpec.builder(RANGE_MAP_TYPE, "CATEGORIES", Modifier.STATIC, Modifier.FINAL)
-              .initializer("Categories()")
-              .build());
     }
 
-    // Add scripts map (e.g. "Katakana" -> Katakana).
-    {
-      MethodSpec.Builder scriptsMethod =
-          MethodSpec.methodBuilder("Scripts")
-              .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
-              .returns(RANGE_MAP_TYPE)
-              .addStatement("$T map = new $T()", RANGE_MAP_TYPE, RANGE_HASHMAP_TYPE);
-
-      for (int script : scriptRanges.keySet()) {
-        String scriptName = UScript.getName(script);
-        scriptsMethod.addStatement("map.put($S, $L)", scriptName, scriptName);
+    SortedMap<String, String> foldCategories = new TreeMap<>();
+    for (Integer category : categoryMap.keySet()) {
+      String name = getShortName(category);
+      if (addFoldExceptions("fold" + name, categoryMap.get(category))) {
+        foldCategories.put(name, "fold" + name);
       }
-      scriptsMethod.addStatement("return $T.unmodifiableMap(map)", Collections.class);
-
-      unicodeTables.addMethod(scriptsMethod.build());
-      unicodeTables.addField(
-          FieldSpec.builder(RANGE_MAP_TYPE, "SCRIPTS", Modifier.STATIC, Modifier.FINAL)
-              .initializer("Scripts()")
-              .build());
-    }
-
-    {
-      MethodSpec.Builder foldScriptSpec =
-          MethodSpec.methodBuilder("FoldScript")
-              .returns(RANGE_MAP_TYPE)
-              .addModifiers(Modifier.PRIVATE, Modifier.STATIC);
-      foldScriptSpec.addCode("$T map = new $T();", RANGE_MAP_TYPE, RANGE_HASHMAP_TYPE);
-
-      for (Integer script : scriptMap.keySet()) {
-        String name = UScript.getName(script);
-        if (addFoldExceptions("fold" + name, scriptMap.get(script))) {
-          foldScriptSpec.addCode("map.put($S, $L);", name, "fold" + name);
-        }
-      }
-
-      foldScriptSpec.addCode("return map;");
-      unicodeTables.addMethod(foldScriptSpec.build());
-
-      unicodeTables.addField(
-          FieldSpec.builder(RANGE_MAP_TYPE, "FOLD_SCRIPT")
-              .addModifiers(Modifier.STATIC, Modifier.FINAL)
-              .initializer("FoldScript()")
-              .build());
     }
 
-    {
-      MethodSpec.Builder foldScriptSpec =
-          MethodSpec.methodBuilder("FoldCategory")
-              .returns(RANGE_MAP_TYPE)
-              .addModifiers(Modifier.PRIVATE, Modifier.STATIC);
-      foldScriptSpec.addCode("$T map = new $T();", RANGE_MAP_TYPE, RANGE_HASHMAP_TYPE);
-
-      for (Integer category : categoryMap.keySet()) {
-        String name = getShortName(category);
-        if (addFoldExceptions("fold" + name, categoryMap.get(category))) {
-          foldScriptSpec.addCode("map.put($S, $L);", name, "fold" + name);
-        }
-      }
-
-      foldScriptSpec.addCode("return map;");
-      unicodeTables.addMethod(foldScriptSpec.build());
-
-      unicodeTables.addField(
-          FieldSpec.builder(RANGE_MAP_TYPE, "FOLD_CATEGORIES")
-              .addModifiers(Modifier.STATIC, Modifier.FINAL)
-              .initializer("FoldCategory()")
-              .build());
-    }
+    // Add the lookups by name (e.g. category("Lm") -> Lm).
+    addLookup("category", "CATEGORY_NAMES", categories);
+    addLookup("script", "SCRIPT_NAMES", scripts);
+    addLookup("foldCategory", "FOLD_CATEGORY_NAMES", foldCategories);
+    addLookup("foldScript", "FOLD_SCRIPT_NAMES", foldScripts);
 
     // No instantiating this class!
     unicodeTables.addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
@@ -306,6 +204,55 @@ public class UnicodeTablesGenerator {
     return name;
   }
 
+  // Adds the table |r| as the TABLE field of a holder class called |name|, and returns |name|.
+  private String addTable(String name, CodepointRange r) {
+    unicodeTables.addType(
+        TypeSpec.classBuilder(name)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addField(
+                FieldSpec.builder(int[][].class, "TABLE", Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$N()", addMakeMethod(r))
+                    .build())
+            .build());
+    return name;
+  }
+
+  // Adds a method |method|(String name) that returns the table of the holder class |tables| maps
+  // name to, or null, and the sorted array |namesField| of the names that it searches.
+  private void addLookup(String method, String namesField, SortedMap<String, String> tables) {
+    CodeBlock.Builder names = CodeBlock.builder().add("{");
+    for (String name : tables.keySet()) {
+      names.add("$S, ", name);
+    }
+    unicodeTables.addField(
+        FieldSpec.builder(
+                String[].class, namesField, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .initializer(names.add("}").build())
+            .build());
+
+    unicodeTables.addMethod(
+        MethodSpec.methodBuilder(method)
+            .returns(int[][].class)
+            .addModifiers(Modifier.STATIC)
+            .addParameter(String.class, "name")
+            .addStatement("int i = $T.binarySearch($N, name)", Arrays.class, namesField)
+            .addStatement("return i < 0 ? null : $NTable(i)", method)
+            .build());
+
+    MethodSpec.Builder table =
+        MethodSpec.methodBuilder(method + "Table")
+            .returns(int[][].class)
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+            .addParameter(int.class, "i")
+            .beginControlFlow("switch (i)");
+    int i = 0;
+    for (String holder : tables.values()) {
+      table.addCode("case $L:\n", i++).addStatement("$>return $N.TABLE$<", holder);
+    }
+    table.addCode("default:\n").addStatement("$>return null$<").endControlFlow();
+    unicodeTables.addMethod(table.build());
+  }
+
   private SortedMap<Integer, Integer> generateCaseFoldOrbits() {
     SortedSetMultimap<Integer, Integer> orbits = TreeMultimap.create();
 
@@ -386,12 +333,7 @@ public class UnicodeTablesGenerator {
       CodepointRange range = new CodepointRange(name);
       range.addAll(diff);
       range.finish();
-
-      FieldSpec field =
-          FieldSpec.builder(int[][].class, name, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
-              .initializer("$N()", addMakeMethod(range))
-              .build();
-      unicodeTables.addField(field);
+      addTable(name, range);
       return true;
     }
 